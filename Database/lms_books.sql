@@ -24,11 +24,13 @@ DROP TABLE IF EXISTS `books`;
 /*!50503 SET character_set_client = utf8mb4 */;
 CREATE TABLE `books` (
   `barcode` int NOT NULL,
-  `title` varchar(255) DEFAULT NULL,
+  `title` varchar(255) NOT NULL,
   `author` varchar(255) DEFAULT NULL,
   `status` tinyint(1) DEFAULT NULL,
   `dueDate` varchar(10) DEFAULT NULL,
-  PRIMARY KEY (`barcode`)
+  PRIMARY KEY (`barcode`),
+  KEY `idx_books_title_barcode` (`title`,`barcode`),
+  KEY `idx_books_status_due` (`status`,`dueDate`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
 /*!40101 SET character_set_client = @saved_cs_client */;
 
@@ -0,0 +1,446 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * BatchRunner
+ * The BatchRunner class runs the Library Management System without a window,
+ * for scheduled jobs such as nightly bulk loads and reconciliation. Main hands
+ * it the command line when arguments are given. Each command prints one line
+ * of JSON to standard output with its counts, timing and errors, and the
+ * process exit code tells a scheduler how the command went:
+ *
+ *   0  the command succeeded
+ *   1  the command ran, but some records were rejected or not found
+ *   2  the command line was not understood
+ *   3  the command failed, for example the database or file was unavailable
+ *
+ * Anything else the library prints goes to standard error, so standard output
+ * stays machine readable.
+ */
+public class BatchRunner {
+    static final int EXIT_OK = 0;
+    static final int EXIT_PARTIAL = 1;
+    static final int EXIT_USAGE = 2;
+    static final int EXIT_FAILED = 3;
+
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+    private static final int EXPORT_PAGE_SIZE = 1000;
+    private static final int MAX_LISTED_BARCODES = 100;
+
+    private static final String USAGE = String.join("\n",
+            "Usage: java Main <command> [arguments]",
+            "  import <file> [--batch-size N]        Add books from a barcode,title,author file",
+            "  export <file> [--with-status]         Write every book to a CSV file",
+            "  checkout <barcodes...|--file F|->     Check out books, from arguments, a file or stdin",
+            "  checkin <barcodes...|--file F|->      Check in books",
+            "  remove <barcodes...|--file F|->       Remove books",
+            "  stats                                 Print the totals of books",
+            "  help                                  Print this message");
+
+    private final Library library;
+    private final PrintStream out;
+    private final PrintStream err;
+    private final InputStream in;
+
+    /**
+     * Creates a runner.
+     *
+     * @param library The Library instance to run commands against.
+     * @param out     Where to print the JSON result lines.
+     * @param err     Where to print usage and diagnostics.
+     * @param in      Where to read barcodes from when a command is given "-".
+     */
+    public BatchRunner(Library library, PrintStream out, PrintStream err, InputStream in) {
+        this.library = library;
+        this.out = out;
+        this.err = err;
+        this.in = in;
+    }
+
+    /**
+     * Runs a command line against a new Library, made by {@link Main#createLibrary()},
+     * with the JSON results on standard output and everything else on standard error.
+     *
+     * @param args The command and its arguments.
+     * @return The exit code.
+     */
+    public static int runCommandLine(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        PrintStream results = System.out;
+        System.setOut(System.err); // The library reports SQL errors with println
+        Library library;
+        try {
+            library = Main.createLibrary();
+        } catch (IOException e) {
+            Map<String, Object> result = result(args.length == 0 ? "" : args[0].toLowerCase());
+            result.put("error", e.toString());
+            result.put("exitCode", EXIT_FAILED);
+            results.println(toJson(result));
+            return EXIT_FAILED;
+        }
+        try {
+            return new BatchRunner(library, results, System.err, System.in).run(args);
+        } finally {
+            library.close();
+        }
+    }
+
+    /**
+     * Runs one command.
+     *
+     * @param args The command and its arguments.
+     * @return The exit code.
+     */
+    public int run(String[] args) {
+        if (args.length == 0) {
+            return usage("No command given.");
+        }
+        String command = args[0].toLowerCase();
+        String[] rest = new String[args.length - 1];
+        System.arraycopy(args, 1, rest, 0, rest.length);
+        try {
+            switch (command) {
+                case "import":
+                    return runImport(rest);
+                case "export":
+                    return runExport(rest);
+                case "checkout":
+                    return runBulk("checkout", rest, library::checkOutAll);
+                case "checkin":
+                    return runBulk("checkin", rest, library::checkInAll);
+                case "remove":
+                    return runBulk("remove", rest, library::removeAll);
+                case "stats":
+                    return runStats();
+                case "help":
+                case "--help":
+                case "-h":
+                    err.println(USAGE);
+                    return EXIT_OK;
+                default:
+                    return usage("Unknown command '" + args[0] + "'.");
+            }
+        } catch (UsageException e) {
+            return usage(e.getMessage());
+        } catch (IOException e) {
+            Map<String, Object> result = result(command);
+            result.put("error", e.toString());
+            return finish(result, EXIT_FAILED);
+        }
+    }
+
+    /**
+     * Imports a file of books.
+     */
+    private int runImport(String[] args) throws UsageException {
+        String file = null;
+        int batchSize = DEFAULT_BATCH_SIZE;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--batch-size")) {
+                batchSize = parsePositive(valueOf(args, ++i, "--batch-size"), "--batch-size");
+            } else if (file == null) {
+                file = args[i];
+            } else {
+                throw new UsageException("import takes one file.");
+            }
+        }
+        if (file == null) {
+            throw new UsageException("import needs a file.");
+        }
+
+        ImportResult imported = library.importBooksFromFile(file, batchSize);
+        Map<String, Object> result = result("import");
+        result.put("file", file);
+        result.put("rowsRead", imported.getRowsRead());
+        result.put("rowsInserted", imported.getRowsInserted());
+        result.put("rowsSkipped", imported.getRowsSkipped());
+        result.put("rowsRejected", imported.getRowsRejected());
+        result.put("validBooks", imported.getValidBooks());
+        result.put("elapsedMillis", imported.getElapsedMillis());
+        result.put("rowsPerSecond", Math.round(imported.getRowsPerSecond()));
+        result.put("resumedFromLine", imported.getResumedFromLine());
+        result.put("errors", imported.getErrorSummary());
+        if (imported.isFailed()) {
+            return finish(result, EXIT_FAILED);
+        }
+        return finish(result, imported.getRowsRejected() > 0 ? EXIT_PARTIAL : EXIT_OK);
+    }
+
+    /**
+     * Writes every book to a CSV file, a page at a time, in (title, barcode)
+     * order. Without --with-status the file has the columns the importer
+     * reads, so it can be loaded back. If the books cannot all be read the
+     * partial file is deleted and the export fails.
+     */
+    private int runExport(String[] args) throws UsageException, IOException {
+        String file = null;
+        boolean withStatus = false;
+        for (String arg : args) {
+            if (arg.equals("--with-status")) {
+                withStatus = true;
+            } else if (file == null) {
+                file = arg;
+            } else {
+                throw new UsageException("export takes one file.");
+            }
+        }
+        if (file == null) {
+            throw new UsageException("export needs a file.");
+        }
+
+        long start = System.nanoTime();
+        long rows = 0;
+        Path path = Paths.get(file);
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write(withStatus ? "barcode,title,author,status,dueDate" : "barcode,title,author");
+            writer.newLine();
+            String token = null;
+            do {
+                BookPage page = library.fetchBooksPage(token, EXPORT_PAGE_SIZE);
+                for (Book book : page.getBooks()) {
+                    writer.write(book.getId() + "," + csv(book.getTitle()) + "," + csv(book.getAuthor()));
+                    if (withStatus) {
+                        writer.write("," + book.getStatus() + "," + csv(book.getDueDate()));
+                    }
+                    writer.newLine();
+                    rows++;
+                }
+                token = page.getNextPageToken();
+            } while (token != null);
+        } catch (SQLException e) {
+            Files.deleteIfExists(path); // Never leave a short file that looks complete
+            Map<String, Object> result = result("export");
+            result.put("file", file);
+            result.put("rowsWritten", 0);
+            result.put("error", "SQL Error: " + e.getMessage());
+            return finish(result, EXIT_FAILED);
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        Map<String, Object> result = result("export");
+        result.put("file", file);
+        result.put("rowsWritten", rows);
+        result.put("elapsedMillis", elapsedNanos / 1_000_000);
+        result.put("rowsPerSecond", elapsedNanos <= 0 ? 0 : Math.round(rows * 1_000_000_000.0 / elapsedNanos));
+        return finish(result, EXIT_OK);
+    }
+
+    /**
+     * Runs a bulk check out, check in or removal.
+     */
+    private int runBulk(String command, String[] args, Function<int[], BulkResult> operation)
+            throws UsageException, IOException {
+        int[] barcodes = readBarcodes(args);
+        if (barcodes.length == 0) {
+            throw new UsageException(command + " needs at least one barcode.");
+        }
+
+        long start = System.nanoTime();
+        BulkResult bulk = operation.apply(barcodes);
+        long elapsedNanos = System.nanoTime() - start;
+
+        Map<String, Object> result = result(command);
+        result.put("barcodes", barcodes.length);
+        if (bulk.getErrorMessage() != null) {
+            result.put("error", bulk.getErrorMessage());
+            return finish(result, EXIT_FAILED);
+        }
+        List<Integer> notFound = bulk.barcodesWith(BulkResult.Outcome.NOT_FOUND);
+        result.put("changed", bulk.count(BulkResult.Outcome.CHANGED));
+        result.put("unchanged", bulk.count(BulkResult.Outcome.UNCHANGED));
+        result.put("notFound", notFound.size());
+        result.put("notFoundBarcodes", notFound.subList(0, Math.min(MAX_LISTED_BARCODES, notFound.size())));
+        if (bulk.getDueDate() != null) {
+            result.put("dueDate", bulk.getDueDate());
+        }
+        result.put("elapsedMillis", elapsedNanos / 1_000_000);
+        result.put("barcodesPerSecond", elapsedNanos <= 0 ? 0 : Math.round(barcodes.length * 1_000_000_000.0 / elapsedNanos));
+        return finish(result, notFound.isEmpty() ? EXIT_OK : EXIT_PARTIAL);
+    }
+
+    /**
+     * Prints the totals of books, recounted from the database on first use.
+     */
+    private int runStats() {
+        LibraryStats.Snapshot stats = library.getStatistics();
+        ConnectionPool.Stats pool = library.getPoolStats();
+        Map<String, Object> result = result("stats");
+        result.put("total", stats.getTotal());
+        result.put("available", stats.getAvailable());
+        result.put("checkedOut", stats.getCheckedOut());
+        result.put("overdue", stats.getOverdue());
+        result.put("reconciledMillis", library.getStatisticsReconciledMillis());
+        if (pool != null) {
+            result.put("poolAcquisitions", pool.getAcquisitions());
+            result.put("poolAverageWaitMillis", pool.getAverageWaitMillis());
+            result.put("poolStatementHitRate", pool.getStatementHitRate());
+        }
+        // Totals that were never counted from the database are only this process's own changes
+        return finish(result, library.getStatisticsReconciledMillis() == 0 ? EXIT_FAILED : EXIT_OK);
+    }
+
+    /**
+     * Reads barcodes from the arguments, from a file after --file, or from
+     * standard input when an argument is "-". Barcodes may be separated by
+     * whitespace, commas or semicolons.
+     */
+    private int[] readBarcodes(String[] args) throws UsageException, IOException {
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String text;
+            if (args[i].equals("--file")) {
+                text = new String(Files.readAllBytes(Paths.get(valueOf(args, ++i, "--file"))), StandardCharsets.UTF_8);
+            } else if (args[i].equals("-")) {
+                text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            } else {
+                text = args[i];
+            }
+            for (String token : text.trim().split("[\\s,;]+")) {
+                if (!token.isEmpty()) {
+                    tokens.add(token);
+                }
+            }
+        }
+        int[] barcodes = new int[tokens.size()];
+        for (int i = 0; i < barcodes.length; i++) {
+            try {
+                barcodes[i] = Integer.parseInt(tokens.get(i));
+            } catch (NumberFormatException e) {
+                throw new UsageException("Invalid barcode '" + tokens.get(i) + "'.");
+            }
+        }
+        return barcodes;
+    }
+
+    private static String valueOf(String[] args, int index, String option) throws UsageException {
+        if (index >= args.length) {
+            throw new UsageException(option + " needs a value.");
+        }
+        return args[index];
+    }
+
+    private static int parsePositive(String value, String option) throws UsageException {
+        try {
+            int number = Integer.parseInt(value);
+            if (number > 0) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new UsageException(option + " must be a positive whole number.");
+    }
+
+    private int usage(String message) {
+        err.println(message);
+        err.println(USAGE);
+        return EXIT_USAGE;
+    }
+
+    private static Map<String, Object> result(String command) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("command", command);
+        return result;
+    }
+
+    private int finish(Map<String, Object> result, int exitCode) {
+        result.put("exitCode", exitCode);
+        out.println(toJson(result));
+        out.flush();
+        return exitCode;
+    }
+
+    /**
+     * Writes a flat map of strings, numbers, booleans and lists as one line of JSON.
+     *
+     * @param values The values, in the order to write them.
+     * @return The JSON object.
+     */
+    static String toJson(Map<String, Object> values) {
+        StringBuilder sb = new StringBuilder("{");
+        for (Map.Entry<String, Object> e : values.entrySet()) {
+            if (sb.length() > 1) {
+                sb.append(',');
+            }
+            appendJson(sb, e.getKey());
+            sb.append(':');
+            appendJson(sb, e.getValue());
+        }
+        return sb.append('}').toString();
+    }
+
+    private static void appendJson(StringBuilder sb, Object value) {
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof Number || value instanceof Boolean) {
+            sb.append(value);
+        } else if (value instanceof List) {
+            sb.append('[');
+            List<?> list = (List<?>) value;
+            for (int i = 0; i < list.size(); i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                appendJson(sb, list.get(i));
+            }
+            sb.append(']');
+        } else {
+            String text = value.toString();
+            sb.append('"');
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '"': sb.append("\\\""); break;
+                    case '\\': sb.append("\\\\"); break;
+                    case '\n': sb.append("\\n"); break;
+                    case '\r': sb.append("\\r"); break;
+                    case '\t': sb.append("\\t"); break;
+                    default:
+                        if (c < 0x20) {
+                            sb.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            sb.append(c);
+                        }
+                }
+            }
+            sb.append('"');
+        }
+    }
+
+    /**
+     * Quotes a CSV field when it holds a comma, quote or line break.
+     */
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Thrown when the command line cannot be understood.
+     */
+    private static final class UsageException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private UsageException(String message) {
+            super(message);
+        }
+    }
+}
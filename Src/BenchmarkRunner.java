@@ -0,0 +1,215 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * BenchmarkRunner
+ * The BenchmarkRunner class measures one operation at a time: it runs the
+ * operation for a warm-up period so the JIT compiler settles, then for a
+ * measurement period in which every call is timed. It reports throughput,
+ * latency percentiles, and the bytes allocated per call as counted by the
+ * JVM for the measuring thread.
+ *
+ * Latencies are kept in a fixed size reservoir sample, so a long run of very
+ * fast calls does not grow memory or disturb the allocation figures.
+ */
+public class BenchmarkRunner {
+    private static final int RESERVOIR_SIZE = 1 << 16;
+
+    private final long warmupNanos;
+    private final long measureNanos;
+    private final int minMeasuredCalls;
+    private volatile Object sink; // Results land here so the JIT cannot drop the work
+
+    /**
+     * Creates a runner.
+     *
+     * @param warmupMillis     How long to run each operation before measuring.
+     * @param measureMillis    How long to measure each operation.
+     * @param minMeasuredCalls The fewest calls to measure, however long they take.
+     */
+    public BenchmarkRunner(long warmupMillis, long measureMillis, int minMeasuredCalls) {
+        this.warmupNanos = warmupMillis * 1_000_000;
+        this.measureNanos = measureMillis * 1_000_000;
+        this.minMeasuredCalls = minMeasuredCalls;
+    }
+
+    /**
+     * Warms up and measures an operation.
+     *
+     * @param name          The name to report the operation under.
+     * @param catalogueSize The number of books the operation runs against.
+     * @param operation     The operation.
+     * @return The measurements.
+     * @throws Exception If the operation fails.
+     */
+    public Result run(String name, long catalogueSize, Operation operation) throws Exception {
+        int call = 0;
+        long warmupEnd = System.nanoTime() + warmupNanos;
+        while (System.nanoTime() < warmupEnd) {
+            sink = operation.run(call++);
+        }
+
+        long[] reservoir = new long[RESERVOIR_SIZE];
+        Random random = new Random(call);
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long measureEnd = start + measureNanos;
+        long calls = 0;
+        long now = start;
+        while (now < measureEnd || calls < minMeasuredCalls) {
+            long before = now;
+            sink = operation.run(call++);
+            now = System.nanoTime();
+            long latency = now - before;
+            if (calls < RESERVOIR_SIZE) {
+                reservoir[(int) calls] = latency;
+            } else {
+                long slot = (long) (random.nextDouble() * (calls + 1));
+                if (slot < RESERVOIR_SIZE) {
+                    reservoir[(int) slot] = latency;
+                }
+            }
+            calls++;
+        }
+        long elapsed = now - start;
+        long allocatedAfter = allocatedBytes();
+
+        long[] sample = Arrays.copyOf(reservoir, (int) Math.min(calls, RESERVOIR_SIZE));
+        Arrays.sort(sample);
+        long bytesPerCall = allocatedBefore < 0 ? -1 : (allocatedAfter - allocatedBefore) / calls;
+        return new Result(name, catalogueSize, calls, elapsed, sample, bytesPerCall);
+    }
+
+    /**
+     * Gets the bytes allocated so far by the current thread.
+     *
+     * @return The byte count, or -1 if the JVM does not count allocations.
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+            if (sunThreads.isThreadAllocatedMemorySupported() && sunThreads.isThreadAllocatedMemoryEnabled()) {
+                return sunThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * An operation to measure.
+     */
+    @FunctionalInterface
+    public interface Operation {
+        /**
+         * Runs the operation once.
+         *
+         * @param call The number of the call, for picking inputs.
+         * @return The result of the work, so it is not optimised away.
+         * @throws Exception If the operation fails.
+         */
+        Object run(int call) throws Exception;
+    }
+
+    /**
+     * The measurements of one operation at one catalogue size.
+     */
+    public static final class Result {
+        private final String name;
+        private final long catalogueSize;
+        private final long calls;
+        private final long elapsedNanos;
+        private final long[] sortedLatencies;
+        private final long bytesPerCall;
+
+        private Result(String name, long catalogueSize, long calls, long elapsedNanos,
+                       long[] sortedLatencies, long bytesPerCall) {
+            this.name = name;
+            this.catalogueSize = catalogueSize;
+            this.calls = calls;
+            this.elapsedNanos = elapsedNanos;
+            this.sortedLatencies = sortedLatencies;
+            this.bytesPerCall = bytesPerCall;
+        }
+
+        /** @return The name of the operation. */
+        public String getName() { return name; }
+
+        /** @return The number of books the operation ran against. */
+        public long getCatalogueSize() { return catalogueSize; }
+
+        /** @return The number of measured calls. */
+        public long getCalls() { return calls; }
+
+        /** @return The number of calls per second. */
+        public double getCallsPerSecond() {
+            return elapsedNanos <= 0 ? 0 : calls * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        /**
+         * Gets a latency percentile.
+         *
+         * @param percentile The percentile, between 0 and 100.
+         * @return The latency in microseconds.
+         */
+        public double getLatencyMicros(double percentile) {
+            int index = (int) Math.ceil(percentile / 100.0 * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(0, Math.min(sortedLatencies.length - 1, index))] / 1000.0;
+        }
+
+        /** @return The bytes allocated per call, or -1 if unknown. */
+        public long getBytesPerCall() { return bytesPerCall; }
+
+        /** @return The allocation rate in megabytes per second, or -1 if unknown. */
+        public double getAllocationMegabytesPerSecond() {
+            return bytesPerCall < 0 ? -1 : bytesPerCall * getCallsPerSecond() / (1024.0 * 1024.0);
+        }
+
+        /**
+         * Gets the measurements as one line of JSON.
+         *
+         * @return The JSON object.
+         */
+        public String toJson() {
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("benchmark", name);
+            values.put("catalogueSize", catalogueSize);
+            values.put("calls", calls);
+            values.put("callsPerSecond", round(getCallsPerSecond()));
+            values.put("p50Micros", round(getLatencyMicros(50)));
+            values.put("p90Micros", round(getLatencyMicros(90)));
+            values.put("p99Micros", round(getLatencyMicros(99)));
+            values.put("p999Micros", round(getLatencyMicros(99.9)));
+            values.put("maxMicros", round(getLatencyMicros(100)));
+            values.put("bytesPerCall", bytesPerCall);
+            values.put("allocMBPerSecond", round(getAllocationMegabytesPerSecond()));
+            return BatchRunner.toJson(values);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-28s %,12d %,14.1f %10.1f %10.1f %10.1f %10.1f %,12d %10.1f",
+                    name, catalogueSize, getCallsPerSecond(), getLatencyMicros(50), getLatencyMicros(90),
+                    getLatencyMicros(99), getLatencyMicros(99.9), bytesPerCall, getAllocationMegabytesPerSecond());
+        }
+
+        /**
+         * Gets the column headings matching {@link #toString()}.
+         *
+         * @return The heading line.
+         */
+        public static String header() {
+            return String.format("%-28s %12s %14s %10s %10s %10s %10s %12s %10s",
+                    "benchmark", "books", "calls/s", "p50 us", "p90 us", "p99 us", "p99.9 us", "bytes/call", "alloc MB/s");
+        }
+
+        private static double round(double value) {
+            return Math.round(value * 10.0) / 10.0;
+        }
+    }
+}
@@ -111,11 +111,11 @@ public class Book
      public HashMap<String, String> toDict()
      {
           HashMap<String, String> dict = new HashMap<>();
-          dict.put("barcode", String.valueOf(barcode));
-          dict.put("title", title);
-          dict.put("author", author);
-          dict.put("status", String.valueOf(status));
-          dict.put("dueDate", String.valueOf(dueDate));
+          dict.put("barcode", String.valueOf(getId()));
+          dict.put("title", getTitle());
+          dict.put("author", getAuthor());
+          dict.put("status", String.valueOf(getStatus()));
+          dict.put("dueDate", String.valueOf(getDueDate()));
           return dict;
      }
 
@@ -126,8 +126,8 @@ public class Book
       */
      @Override public String toString()
      {
-          return "barcode: " + barcode + ", Title: " + title + ", Author: " + author +
-            ", Checked Out? :" + status + "Due on : " + dueDate;
+          return "barcode: " + getId() + ", Title: " + getTitle() + ", Author: " + getAuthor() +
+            ", Checked Out? :" + getStatus() + "Due on : " + getDueDate();
      }
 
      /**
@@ -136,5 +136,5 @@ public class Book
       * @param other The other book to compare with.
       * @return True if the IDs are equal, otherwise false.
       */
-     public boolean equals(Book other) { return this.barcode == other.barcode; }
+     public boolean equals(Book other) { return getId() == other.getId(); }
 }
@@ -0,0 +1,305 @@
+import java.util.Arrays;
+
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * BookCache
+ * The BookCache class keeps recently read books in memory keyed by their
+ * barcode. Keys are stored as primitive ints in an open addressing table, so a
+ * lookup never boxes an Integer. When the cache is full it evicts with a
+ * generalized CLOCK: every entry carries a small use counter that each hit
+ * raises and the sweeping clock hand lowers, so books that are read often
+ * survive a burst of one-off lookups that would flush a plain LRU cache.
+ */
+public class BookCache {
+    private static final int MAX_FREQUENCY = 3;
+    private static final int EMPTY = 0;
+
+    private final int capacity;
+    private final int[] keys;
+    private final Book[] values;
+    private final byte[] frequency;
+    private final int[] freeSlots;
+    private int freeCount;
+    private int hand;
+
+    // Maps a barcode to its slot + 1, 0 meaning empty; linear probing
+    private final int[] table;
+    private final int mask;
+
+    private int size;
+    private long invalidations;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param capacity The maximum number of books to hold.
+     */
+    public BookCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Cache capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.keys = new int[capacity];
+        this.values = new Book[capacity];
+        this.frequency = new byte[capacity];
+        this.freeSlots = new int[capacity];
+        int tableSize = Integer.highestOneBit(Math.max(2, capacity * 2 - 1)) << 1; // Load factor at most 0.5
+        this.table = new int[tableSize];
+        this.mask = tableSize - 1;
+        clear();
+    }
+
+    /**
+     * Looks up a book.
+     *
+     * @param barcode The barcode of the book.
+     * @return The cached book, or {@code null} if it is not cached. The returned
+     *         book is shared and must not be modified.
+     */
+    public synchronized Book get(int barcode) {
+        int slot = findSlot(barcode);
+        if (slot < 0) {
+            misses++;
+            return null;
+        }
+        hits++;
+        if (frequency[slot] < MAX_FREQUENCY) {
+            frequency[slot]++;
+        }
+        return values[slot];
+    }
+
+    /**
+     * Adds or replaces a book, evicting a rarely used one if the cache is full.
+     *
+     * @param book The book to cache.
+     */
+    public synchronized void put(Book book) {
+        int barcode = book.getId();
+        int slot = findSlot(barcode);
+        if (slot >= 0) {
+            values[slot] = book;
+            return;
+        }
+        if (freeCount == 0) {
+            evict();
+        }
+        slot = freeSlots[--freeCount];
+        keys[slot] = barcode;
+        values[slot] = book;
+        frequency[slot] = 0; // Must be read again before the hand comes round to survive
+        insertIndex(barcode, slot);
+        size++;
+    }
+
+    /**
+     * Gets a stamp that changes whenever a book is invalidated. A reader takes
+     * the stamp before going to the database and passes it to
+     * {@link #putIfUnchanged(Book, long)}, so a row read before a concurrent
+     * update is never cached after that update's invalidation.
+     *
+     * @return The current invalidation stamp.
+     */
+    public synchronized long getStamp() {
+        return invalidations;
+    }
+
+    /**
+     * Caches a book read from the database unless some book was invalidated
+     * since the stamp was taken.
+     *
+     * @param book  The book that was read.
+     * @param stamp The stamp taken before the read.
+     */
+    public synchronized void putIfUnchanged(Book book, long stamp) {
+        if (stamp == invalidations) {
+            put(book);
+        }
+    }
+
+    /**
+     * Replaces the status and due date of a cached book, leaving the cache
+     * untouched if the book is not cached.
+     *
+     * @param barcode The barcode of the book.
+     * @param status  The new status.
+     * @param dueDate The new due date.
+     * @return The book as it was cached before the update, or {@code null} if it was not cached.
+     */
+    public synchronized Book updateStatus(int barcode, boolean status, String dueDate) {
+        invalidations++; // A read that started before the update must not be cached
+        int slot = findSlot(barcode);
+        if (slot < 0) {
+            return null;
+        }
+        Book old = values[slot];
+        values[slot] = new Book(barcode, old.getTitle(), old.getAuthor(), status, dueDate);
+        return old;
+    }
+
+    /**
+     * Removes a book from the cache if it is there.
+     *
+     * @param barcode The barcode of the book.
+     */
+    public synchronized void invalidate(int barcode) {
+        invalidations++;
+        int slot = findSlot(barcode);
+        if (slot >= 0) {
+            removeSlot(slot);
+        }
+    }
+
+    /**
+     * Removes every book from the cache.
+     */
+    public synchronized void clear() {
+        invalidations++;
+        Arrays.fill(table, EMPTY);
+        Arrays.fill(values, null);
+        for (int i = 0; i < capacity; i++) {
+            freeSlots[i] = capacity - 1 - i;
+        }
+        freeCount = capacity;
+        size = 0;
+        hand = 0;
+    }
+
+    /**
+     * Takes a snapshot of the cache counters.
+     *
+     * @return The size, hits, misses and evictions of the cache.
+     */
+    public synchronized Stats getStats() {
+        return new Stats(size, capacity, hits, misses, evictions);
+    }
+
+    /**
+     * Sweeps the clock hand over the slots, lowering use counters, until it
+     * finds an entry that has not been used since the last sweep, and evicts it.
+     */
+    private void evict() {
+        while (true) {
+            int slot = hand;
+            hand = (hand + 1) % capacity;
+            if (values[slot] == null) {
+                continue;
+            }
+            if (frequency[slot] > 0) {
+                frequency[slot]--;
+            } else {
+                removeSlot(slot);
+                evictions++;
+                return;
+            }
+        }
+    }
+
+    private void removeSlot(int slot) {
+        deleteIndex(keys[slot]);
+        values[slot] = null;
+        frequency[slot] = 0;
+        freeSlots[freeCount++] = slot;
+        size--;
+    }
+
+    private int findSlot(int barcode) {
+        int i = hash(barcode) & mask;
+        int entry;
+        while ((entry = table[i]) != EMPTY) {
+            if (keys[entry - 1] == barcode) {
+                return entry - 1;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insertIndex(int barcode, int slot) {
+        int i = hash(barcode) & mask;
+        while (table[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        table[i] = slot + 1;
+    }
+
+    /**
+     * Removes a key from the index, shifting later entries of the probe
+     * sequence back so lookups never stop at a hole.
+     *
+     * @param barcode The key to remove.
+     */
+    private void deleteIndex(int barcode) {
+        int i = hash(barcode) & mask;
+        while (keys[table[i] - 1] != barcode) {
+            i = (i + 1) & mask;
+        }
+        int hole = i;
+        i = (i + 1) & mask;
+        while (table[i] != EMPTY) {
+            int home = hash(keys[table[i] - 1]) & mask;
+            // Move the entry back if its home position is not between the hole and i
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                table[hole] = table[i];
+                hole = i;
+            }
+            i = (i + 1) & mask;
+        }
+        table[hole] = EMPTY;
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Stats
+     * An immutable snapshot of the cache counters.
+     */
+    public static final class Stats {
+        private final int size;
+        private final int capacity;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+
+        private Stats(int size, int capacity, long hits, long misses, long evictions) {
+            this.size = size;
+            this.capacity = capacity;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        /** @return The number of cached books. */
+        public int getSize() { return size; }
+
+        /** @return The maximum number of cached books. */
+        public int getCapacity() { return capacity; }
+
+        /** @return The number of lookups that found the book. */
+        public long getHits() { return hits; }
+
+        /** @return The number of lookups that did not find the book. */
+        public long getMisses() { return misses; }
+
+        /** @return The number of books dropped to make room. */
+        public long getEvictions() { return evictions; }
+
+        /** @return The fraction of lookups that found the book. */
+        public double getHitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("size=%d capacity=%d hits=%d misses=%d evictions=%d hitRate=%.3f",
+                    size, capacity, hits, misses, evictions, getHitRate());
+        }
+    }
+}
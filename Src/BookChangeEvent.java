@@ -0,0 +1,112 @@
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * BookChangeEvent
+ * The BookChangeEvent class describes one change made through a
+ * {@link Library}: a book added, removed or checked in or out. Changes too
+ * many to list one by one, such as a file import, are reported as a single
+ * {@link Type#RELOADED} event, after which every book should be read again.
+ */
+public class BookChangeEvent {
+
+    /**
+     * The kinds of change.
+     */
+    public enum Type { INSERTED, DELETED, STATUS_CHANGED, RELOADED }
+
+    private static final BookChangeEvent RELOADED = new BookChangeEvent(Type.RELOADED, 0, null, false, null);
+
+    private final Type type;
+    private final int barcode;
+    private final Book book;
+    private final boolean checkedOut;
+    private final String dueDate;
+
+    private BookChangeEvent(Type type, int barcode, Book book, boolean checkedOut, String dueDate) {
+        this.type = type;
+        this.barcode = barcode;
+        this.book = book;
+        this.checkedOut = checkedOut;
+        this.dueDate = dueDate;
+    }
+
+    /**
+     * Reports a book that was added.
+     *
+     * @param book The book as it was added; it must not be changed afterwards.
+     * @return The event.
+     */
+    public static BookChangeEvent inserted(Book book) {
+        return new BookChangeEvent(Type.INSERTED, book.getId(), book, book.getStatus(), book.getDueDate());
+    }
+
+    /**
+     * Reports a book that was removed.
+     *
+     * @param book The book as it was removed.
+     * @return The event.
+     */
+    public static BookChangeEvent deleted(Book book) {
+        return new BookChangeEvent(Type.DELETED, book.getId(), book, book.getStatus(), book.getDueDate());
+    }
+
+    /**
+     * Reports a book that was checked in or out.
+     *
+     * @param barcode    The barcode of the book.
+     * @param checkedOut True if the book is now checked out.
+     * @param dueDate    The new due date, or {@code null} if the book was checked in.
+     * @return The event.
+     */
+    public static BookChangeEvent statusChanged(int barcode, boolean checkedOut, String dueDate) {
+        return new BookChangeEvent(Type.STATUS_CHANGED, barcode, null, checkedOut, dueDate);
+    }
+
+    /**
+     * Reports that many books changed at once.
+     *
+     * @return The event.
+     */
+    public static BookChangeEvent reloaded() {
+        return RELOADED;
+    }
+
+    /**
+     * Gets the kind of change.
+     *
+     * @return The type of the event.
+     */
+    public Type getType() { return type; }
+
+    /**
+     * Gets the barcode of the book that changed.
+     *
+     * @return The barcode, or 0 for a {@link Type#RELOADED} event.
+     */
+    public int getBarcode() { return barcode; }
+
+    /**
+     * Gets the book that was added or removed.
+     *
+     * @return The book, or {@code null} for other events.
+     */
+    public Book getBook() { return book; }
+
+    /**
+     * Tells whether the book is checked out after the change.
+     *
+     * @return True if it is checked out.
+     */
+    public boolean isCheckedOut() { return checkedOut; }
+
+    /**
+     * Gets the due date of the book after the change.
+     *
+     * @return The due date, or {@code null} if it is not checked out.
+     */
+    public String getDueDate() { return dueDate; }
+
+    @Override
+    public String toString() {
+        return type + " barcode: " + barcode + ", Checked Out? :" + checkedOut + " Due on : " + dueDate;
+    }
+}
@@ -0,0 +1,706 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.zip.CRC32;
+
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * BookImporter
+ * The BookImporter class streams books from a "barcode,title,author" file into
+ * a {@link BookRepository}. Records are validated one at a time, collected into
+ * batches of a fixed size and stored with one transaction per batch, so memory
+ * use does not grow with the size of the file. Large files are parsed on
+ * several threads by a {@link ParallelCsvReader} while this thread validates
+ * and stores the books in file order.
+ *
+ * Repeated barcodes are found in memory with {@link IntBitmap}s, about two
+ * bytes per barcode. For files of lms.import.seedMinBytes (1 MB by default)
+ * or more the barcodes already in the library are streamed into one first,
+ * so those books are skipped without being sent to the repository at all.
+ *
+ * Files of lms.import.bulkMinBytes (32 MB by default) or more going into
+ * MySQL take a faster path: the valid books are written to a staging file
+ * instead, which {@link MySqlBookRepository#loadStaged(Path)} bulk loads and
+ * merges in one transaction, so such an import adds all of its books or none.
+ * If the database does not allow the bulk load, the staged books are
+ * inserted in batches as usual. The result is summarized the same way.
+ *
+ * An import into a durable repository writes a checkpoint next to the file,
+ * named after it with ".checkpoint" added, after every committed batch: which
+ * file it is, the byte offset and line to carry on from, and the counters and
+ * errors so far. The checkpoint is replaced atomically, so it always
+ * describes a batch that is in the repository. If the import stops part way,
+ * importing the same, unchanged file again resumes from the checkpoint, and
+ * the checkpoint is deleted once an import finishes. Books from a batch that
+ * committed just before the program stopped, and books repeating a barcode
+ * from before the checkpoint, are then found in the library and skipped.
+ *
+ * A staged import is checkpointed too. While the file is being validated the
+ * staging file is forced to disk and checkpointed every few megabytes read,
+ * and the staging file is kept if the import stops, so a rerun appends to it
+ * instead of validating the whole file again. If the books then have to be
+ * inserted in batches, each batch is checkpointed by how many staged books
+ * are in, and a rerun carries on with the next one.
+ */
+public class BookImporter {
+    /** Longest title or author the books table can hold. */
+    public static final int MAX_TEXT_LENGTH = 255;
+
+    private static final int MAX_REPORTED_ERRORS = 20;
+    private static final long PARALLEL_MIN_BYTES = 16 * 1024 * 1024;
+    private static final long BULK_MIN_BYTES = Long.getLong("lms.import.bulkMinBytes", 32L * 1024 * 1024);
+    private static final long SEED_MIN_BYTES = Long.getLong("lms.import.seedMinBytes", 1024L * 1024);
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+    private static final int IDENTITY_HEAD_BYTES = 64 * 1024;
+    private static final long STAGING_CHECKPOINT_BYTES = 4 * 1024 * 1024;
+
+    private final BookRepository repository;
+    private final int batchSize;
+
+    private final int[] pendingBarcodes;
+    private final String[] pendingTitles;
+    private final String[] pendingAuthors;
+    private int pendingCount;
+
+    private Path stagingFile;
+    private FileOutputStream stagingOut;
+    private Writer staging; // Open while valid books are being staged for a bulk load
+    private long stagedCount;
+    private long stagedBytes; // Length of the staging file at the checkpoint resumed from
+    private long stagedLoaded; // Staged books already inserted in batches
+    private boolean stagingCheckpointed; // The staging file is needed to resume
+
+    private Path checkpointFile; // Set for an import into a durable repository
+    private boolean checkpointing;
+    private String fileIdentity;
+    private long resumeOffset;
+    private long resumeLine = 1;
+    private long resumedRowsRead;
+    private long resumedRowsInserted;
+    private long checkpointOffset;
+
+    private final IntBitmap uniqueBookIds = new IntBitmap();
+    private final IntBitmap libraryBookIds = new IntBitmap(); // Filled before large imports only
+    private final StringBuilder errorSummary = new StringBuilder();
+    private int bookBarcode; // The book readBook last found
+    private String bookTitle;
+    private String bookAuthor;
+    private long rowsRead;
+    private long rowsInserted;
+    private long rowsSkipped;
+    private long rowsRejected;
+    private long validBooks;
+    private int reportedErrors;
+    private boolean failed;
+
+    /**
+     * Creates an importer that stores books in the given repository.
+     *
+     * @param repository The repository to store the books in.
+     * @param batchSize  The number of books to store per transaction.
+     */
+    public BookImporter(BookRepository repository, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.repository = repository;
+        this.batchSize = batchSize;
+        this.pendingBarcodes = new int[batchSize];
+        this.pendingTitles = new String[batchSize];
+        this.pendingAuthors = new String[batchSize];
+    }
+
+    /**
+     * Imports every valid book in the file.
+     *
+     * @param inputFile The file containing book information.
+     * @return A summary of the import.
+     */
+    public ImportResult importFile(File inputFile) {
+        long start = System.nanoTime();
+        try (CsvSource reader = open(inputFile)) {
+            if (resumeOffset > 0 && stagingFile == null) {
+                seedUniqueBookIds(inputFile); // A staged import reads them back from the staging file instead
+            }
+            if (inputFile.length() - resumeOffset >= SEED_MIN_BYTES) {
+                repository.forEachBarcode(libraryBookIds::add);
+            }
+            if (stagingFile == null && repository instanceof MySqlBookRepository
+                    && inputFile.length() >= BULK_MIN_BYTES) {
+                stagingFile = MySqlBookRepository.createStagingFile();
+            }
+            if (stagingFile != null) {
+                openStaging();
+            }
+            while (reader.next()) {
+                rowsRead++;
+                processRecord(reader);
+                if (pendingCount == batchSize) {
+                    flush();
+                    if (checkpointing && (staging == null
+                            || reader.getByteOffset() - checkpointOffset >= STAGING_CHECKPOINT_BYTES)) {
+                        writeCheckpoint(reader);
+                    }
+                }
+            }
+            flush(); // Send the final, partial batch
+            if (staging != null) {
+                loadStaged(reader);
+            }
+            deleteCheckpoint();
+            stagingCheckpointed = false;
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            failed = true;
+            errorSummary.append("Error: File not found - ").append(inputFile.getPath());
+        } catch (SecurityException e) {
+            failed = true;
+            errorSummary.append("Error: Insufficient permissions to read the file.");
+        } catch (IOException e) {
+            failed = true;
+            errorSummary.append("Error: Could not read the file - ").append(e.getMessage());
+        } catch (SQLException e) {
+            failed = true;
+            errorSummary.append("SQL Error: ").append(e.getMessage()); // Only the batch in flight is lost
+        } finally {
+            discardStaging();
+        }
+
+        if (reportedErrors < rowsRejected) {
+            errorSummary.append("\n... and ").append(rowsRejected - reportedErrors).append(" more rejected lines");
+        }
+        if (!failed && validBooks == 0) {
+            errorSummary.insert(0, errorSummary.length() > 0 ? "No Valid Books Added\n" : "No Valid Books Added");
+        }
+        return new ImportResult(rowsRead, rowsInserted, rowsSkipped, rowsRejected, validBooks,
+                System.nanoTime() - start, errorSummary.toString(), failed,
+                resumedRowsRead > 0 ? resumeLine : 0, resumedRowsRead, resumedRowsInserted);
+    }
+
+    /**
+     * Opens a reader over the file, from the checkpoint of an interrupted
+     * import if there is one, parsing it on several threads if what is left
+     * is large enough for that to pay off.
+     *
+     * @param inputFile The file containing book information.
+     * @return The reader.
+     * @throws IOException If the file cannot be opened.
+     */
+    private CsvSource open(File inputFile) throws IOException {
+        if (repository.isDurable()) {
+            resume(inputFile);
+        }
+        int processors = Runtime.getRuntime().availableProcessors();
+        if (processors > 1 && inputFile.length() - resumeOffset >= PARALLEL_MIN_BYTES) {
+            return new ParallelCsvReader(inputFile.toPath(), processors, resumeOffset, resumeLine);
+        }
+        FileInputStream in = new FileInputStream(inputFile);
+        try {
+            in.getChannel().position(resumeOffset);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return new CsvReader(new BufferedInputStream(in), resumeOffset, resumeLine);
+    }
+
+    /**
+     * Starts checkpointing the import and, if an interrupted import of the
+     * same file left a checkpoint, carries on from it: the counters and errors
+     * are restored and reading starts at the record after its last batch. A
+     * checkpoint for a file that has changed since is ignored.
+     *
+     * @param inputFile The file containing book information.
+     * @throws IOException If the file cannot be read.
+     */
+    private void resume(File inputFile) throws IOException {
+        fileIdentity = identify(inputFile.toPath());
+        checkpointFile = Paths.get(inputFile.getPath() + CHECKPOINT_SUFFIX);
+        checkpointing = true;
+        Properties checkpoint = new Properties();
+        try (Reader in = Files.newBufferedReader(checkpointFile, StandardCharsets.UTF_8)) {
+            checkpoint.load(in);
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Import Error: Ignoring unreadable checkpoint - " + e.getMessage());
+            return;
+        }
+        if (!fileIdentity.equals(checkpoint.getProperty("file"))) {
+            return;
+        }
+        try {
+            long offset = Long.parseLong(checkpoint.getProperty("byteOffset"));
+            long line = Long.parseLong(checkpoint.getProperty("nextLine"));
+            long read = Long.parseLong(checkpoint.getProperty("rowsRead"));
+            long inserted = Long.parseLong(checkpoint.getProperty("rowsInserted"));
+            long skipped = Long.parseLong(checkpoint.getProperty("rowsSkipped"));
+            long rejected = Long.parseLong(checkpoint.getProperty("rowsRejected"));
+            long valid = Long.parseLong(checkpoint.getProperty("validBooks"));
+            int reported = Integer.parseInt(checkpoint.getProperty("reportedErrors"));
+            String errors = checkpoint.getProperty("errors", "");
+            if (offset < 0 || offset > inputFile.length() || line < 1) {
+                throw new NumberFormatException("position out of range");
+            }
+            String stagingPath = checkpoint.getProperty("stagingFile");
+            Path staged = null;
+            long stagedLength = 0;
+            long stagedBooks = 0;
+            long loaded = 0;
+            if (stagingPath != null) {
+                staged = Paths.get(stagingPath).toAbsolutePath().normalize();
+                stagedLength = Long.parseLong(checkpoint.getProperty("stagedBytes"));
+                stagedBooks = Long.parseLong(checkpoint.getProperty("stagedCount"));
+                loaded = Long.parseLong(checkpoint.getProperty("stagedLoaded"));
+                if (!staged.startsWith(MySqlBookRepository.STAGING_DIRECTORY) || !Files.isRegularFile(staged)
+                        || Files.size(staged) < stagedLength || loaded < 0 || loaded > stagedBooks) {
+                    System.out.println("Import Error: Ignoring checkpoint - staging file " + staged + " is missing or changed");
+                    return;
+                }
+            }
+            resumeOffset = offset;
+            resumeLine = line;
+            rowsRead = resumedRowsRead = read;
+            rowsInserted = resumedRowsInserted = inserted;
+            rowsSkipped = skipped;
+            rowsRejected = rejected;
+            validBooks = valid;
+            reportedErrors = reported;
+            errorSummary.append(errors);
+            checkpointOffset = offset;
+            if (staged != null) {
+                stagingFile = staged;
+                stagedBytes = stagedLength;
+                stagedCount = stagedBooks;
+                stagedLoaded = loaded;
+                stagingCheckpointed = true;
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Import Error: Ignoring unreadable checkpoint - " + e.getMessage());
+        }
+    }
+
+    /**
+     * Describes a file well enough to tell whether it changed between an
+     * interrupted import and a later one: its full path, size, last modified
+     * time and a checksum of its first bytes.
+     *
+     * @param file The file.
+     * @return The description.
+     * @throws IOException If the file cannot be read.
+     */
+    private static String identify(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] head = new byte[IDENTITY_HEAD_BYTES];
+        try (InputStream in = Files.newInputStream(file)) {
+            int length = in.readNBytes(head, 0, head.length);
+            crc.update(head, 0, length);
+        }
+        return file.toAbsolutePath() + "|" + Files.size(file) + "|"
+                + Files.getLastModifiedTime(file).toMillis() + "|" + Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * Records that everything up to the current record is in the repository,
+     * or in the staging file, which is forced to disk first. The checkpoint is
+     * written to a temporary file, forced to disk and moved over the last one,
+     * so a crash leaves either the old or the new one. If it cannot be written
+     * the import carries on without checkpoints.
+     *
+     * @param reader The reader positioned on the last record of the committed batch.
+     */
+    private void writeCheckpoint(CsvSource reader) {
+        Properties checkpoint = new Properties();
+        try {
+            if (staging != null) {
+                staging.flush();
+                stagingOut.getFD().sync();
+            }
+            if (stagingFile != null) {
+                checkpoint.setProperty("stagingFile", stagingFile.toString());
+                checkpoint.setProperty("stagedBytes", Long.toString(Files.size(stagingFile)));
+                checkpoint.setProperty("stagedCount", Long.toString(stagedCount));
+                checkpoint.setProperty("stagedLoaded", Long.toString(stagedLoaded));
+            }
+        } catch (IOException e) {
+            System.out.println("Import Error: Could not write checkpoint - " + e.getMessage());
+            checkpointing = false;
+            return;
+        }
+        checkpoint.setProperty("file", fileIdentity);
+        checkpoint.setProperty("byteOffset", Long.toString(reader.getByteOffset()));
+        checkpoint.setProperty("nextLine", Long.toString(reader.getNextLineNumber()));
+        checkpoint.setProperty("rowsRead", Long.toString(rowsRead));
+        checkpoint.setProperty("rowsInserted", Long.toString(rowsInserted));
+        checkpoint.setProperty("rowsSkipped", Long.toString(rowsSkipped));
+        checkpoint.setProperty("rowsRejected", Long.toString(rowsRejected));
+        checkpoint.setProperty("validBooks", Long.toString(validBooks));
+        checkpoint.setProperty("reportedErrors", Integer.toString(reportedErrors));
+        checkpoint.setProperty("errors", errorSummary.toString());
+        Path temp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp.toFile())) {
+                checkpoint.store(new OutputStreamWriter(out, StandardCharsets.UTF_8), "Book import checkpoint");
+                out.getFD().sync();
+            }
+            try {
+                Files.move(temp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, checkpointFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            checkpointOffset = reader.getByteOffset();
+            stagingCheckpointed |= stagingFile != null;
+        } catch (IOException | SecurityException e) {
+            System.out.println("Import Error: Could not write checkpoint - " + e.getMessage());
+            checkpointing = false;
+        }
+    }
+
+    /**
+     * Deletes the checkpoint of a finished import, if there is one.
+     */
+    private void deleteCheckpoint() {
+        if (checkpointFile == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(checkpointFile);
+        } catch (IOException | SecurityException e) {
+            System.out.println("Import Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads back the barcodes of the books before the checkpoint of a resumed
+     * import, so a repeat of one of them after the checkpoint is still
+     * rejected as a duplicate.
+     *
+     * @param inputFile The file containing book information.
+     * @throws IOException If the file cannot be read.
+     */
+    private void seedUniqueBookIds(File inputFile) throws IOException {
+        try (CsvReader reader = new CsvReader(new BufferedInputStream(new FileInputStream(inputFile)))) {
+            while (reader.getByteOffset() < resumeOffset && reader.next()) {
+                if (readBook(reader, false)) {
+                    uniqueBookIds.add(bookBarcode);
+                }
+            }
+        }
+    }
+
+    /**
+     * Validates the current record and queues it for insertion if it is a valid book.
+     *
+     * @param reader The reader positioned on the record.
+     */
+    private void processRecord(CsvSource reader) {
+        if (!readBook(reader, true)) {
+            return;
+        }
+        if (!uniqueBookIds.add(bookBarcode)) {
+            reject(reader.getLineNumber(), "duplicate barcode " + bookBarcode);
+            return;
+        }
+        validBooks++;
+        if (libraryBookIds.contains(bookBarcode)) {
+            rowsSkipped++; // Already in the library
+            return;
+        }
+
+        pendingBarcodes[pendingCount] = bookBarcode;
+        pendingTitles[pendingCount] = bookTitle;
+        pendingAuthors[pendingCount] = bookAuthor;
+        pendingCount++;
+    }
+
+    /**
+     * Checks that the current record is a book, apart from whether its barcode
+     * is a repeat, and leaves it in bookBarcode, bookTitle and bookAuthor.
+     *
+     * @param reader The reader positioned on the record.
+     * @param count  True to count a record that is not a book as skipped or rejected.
+     * @return True if the record is a book.
+     */
+    private boolean readBook(CsvSource reader, boolean count) {
+        long line = reader.getLineNumber();
+        if (reader.getFieldCount() == 1 && reader.getField(0).isBlank()) {
+            rowsSkipped += count ? 1 : 0; // Blank line
+            return false;
+        }
+        if (reader.isTruncated()) {
+            return notABook(count, line, "field is too long");
+        }
+        if (reader.getFieldCount() != 3) {
+            return notABook(count, line, "expected 3 fields but found " + reader.getFieldCount());
+        }
+
+        String idField = reader.getField(0).trim();
+        try {
+            bookBarcode = Integer.parseInt(idField);
+        } catch (NumberFormatException e) {
+            if (line == 1) {
+                rowsSkipped += count ? 1 : 0; // Header row such as "ID,Book Title,Author"
+                return false;
+            }
+            return notABook(count, line, "barcode '" + idField + "' is not a number");
+        }
+        if (bookBarcode < 0) {
+            return notABook(count, line, "barcode " + bookBarcode + " is negative");
+        }
+
+        bookTitle = normalizeText(reader.getField(1));
+        bookAuthor = normalizeText(reader.getField(2));
+        if (bookTitle.isEmpty() || bookAuthor.isEmpty()) {
+            return notABook(count, line, "title and author are required");
+        }
+        if (bookTitle.length() > MAX_TEXT_LENGTH || bookAuthor.length() > MAX_TEXT_LENGTH) {
+            return notABook(count, line, "title or author is longer than " + MAX_TEXT_LENGTH + " characters");
+        }
+        return true;
+    }
+
+    private boolean notABook(boolean count, long line, String reason) {
+        if (count) {
+            reject(line, reason);
+        }
+        return false;
+    }
+
+    /**
+     * Trims a field and collapses every run of whitespace, including line breaks
+     * from quoted multi-line fields, to a single space.
+     *
+     * @param text The raw field.
+     * @return The normalized field.
+     */
+    static String normalizeText(String text) {
+        StringBuilder sb = null;
+        boolean pendingSpace = false;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c) || Character.isISOControl(c)) {
+                if (sb == null) {
+                    sb = new StringBuilder(length).append(text, 0, i);
+                }
+                pendingSpace = sb.length() > 0;
+                continue;
+            }
+            if (sb != null) {
+                if (pendingSpace) {
+                    sb.append(' ');
+                    pendingSpace = false;
+                }
+                sb.append(c);
+            }
+        }
+        return sb == null ? text : sb.toString();
+    }
+
+    /**
+     * Counts a rejected record and adds it to the error summary.
+     *
+     * @param line   The line the record started on.
+     * @param reason Why the record was rejected.
+     */
+    private void reject(long line, String reason) {
+        rowsRejected++;
+        if (reportedErrors < MAX_REPORTED_ERRORS) {
+            if (errorSummary.length() > 0) {
+                errorSummary.append('\n');
+            }
+            errorSummary.append("Line ").append(line).append(": ").append(reason);
+            reportedErrors++;
+        }
+    }
+
+    /**
+     * Stores the queued books in one transaction, or appends them to the
+     * staging file during a bulk load. Books whose barcode is already in the
+     * library are left untouched and counted as skipped.
+     *
+     * @throws SQLException If the batch could not be written.
+     * @throws IOException  If the staging file could not be written.
+     */
+    private void flush() throws SQLException, IOException {
+        if (pendingCount == 0) {
+            return;
+        }
+        if (staging != null) {
+            for (int i = 0; i < pendingCount; i++) {
+                staging.write(Integer.toString(pendingBarcodes[i]));
+                staging.write('\t');
+                staging.write(escape(pendingTitles[i]));
+                staging.write('\t');
+                staging.write(escape(pendingAuthors[i]));
+                staging.write('\n');
+            }
+            stagedCount += pendingCount;
+        } else {
+            int inserted = repository.insertAll(pendingBarcodes, pendingTitles, pendingAuthors, pendingCount);
+            rowsInserted += inserted;
+            rowsSkipped += pendingCount - inserted; // Already in the library
+        }
+        Arrays.fill(pendingTitles, 0, pendingCount, null);
+        Arrays.fill(pendingAuthors, 0, pendingCount, null);
+        pendingCount = 0;
+    }
+
+    /**
+     * Opens the staging file for appending. When resuming, whatever was
+     * written after the checkpoint is cut off, and the barcodes staged before
+     * it are read back so repeats further on are still rejected.
+     *
+     * @throws IOException If the staging file could not be opened or read.
+     */
+    private void openStaging() throws IOException {
+        if (stagedCount > 0) {
+            try (FileChannel channel = FileChannel.open(stagingFile, StandardOpenOption.WRITE)) {
+                channel.truncate(stagedBytes);
+            }
+            try (BufferedReader staged = Files.newBufferedReader(stagingFile, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = staged.readLine()) != null) {
+                    uniqueBookIds.add(Integer.parseInt(line.substring(0, line.indexOf('\t'))));
+                }
+            }
+        }
+        stagingOut = new FileOutputStream(stagingFile.toFile(), stagedCount > 0);
+        staging = new BufferedWriter(new OutputStreamWriter(stagingOut, StandardCharsets.UTF_8), 1 << 20);
+    }
+
+    /**
+     * Bulk loads the staging file. If the database refuses the bulk load the
+     * staged books are read back and inserted in batches instead, which is
+     * also how a resumed import carries on once some of them are in.
+     *
+     * @param reader The reader, at the end of the file.
+     * @throws SQLException If the books could not be stored.
+     * @throws IOException  If the staging file could not be written or read.
+     */
+    private void loadStaged(CsvSource reader) throws SQLException, IOException {
+        if (checkpointing) {
+            writeCheckpoint(reader); // A rerun after a failed load starts with the load
+        }
+        staging.close();
+        staging = null;
+        if (stagedLoaded == 0) {
+            try {
+                int inserted = ((MySqlBookRepository) repository).loadStaged(stagingFile);
+                rowsInserted += inserted;
+                rowsSkipped += stagedCount - inserted; // Already in the library
+                return;
+            } catch (SQLFeatureNotSupportedException e) {
+                System.out.println("SQL Error: " + e.getMessage());
+            }
+        }
+        try (BufferedReader staged = Files.newBufferedReader(stagingFile, StandardCharsets.UTF_8)) {
+            String line;
+            long lines = 0;
+            while ((line = staged.readLine()) != null) {
+                if (lines++ < stagedLoaded) {
+                    continue; // Inserted before the checkpoint
+                }
+                int titleStart = line.indexOf('\t') + 1;
+                int authorStart = line.indexOf('\t', titleStart) + 1;
+                pendingBarcodes[pendingCount] = Integer.parseInt(line.substring(0, titleStart - 1));
+                pendingTitles[pendingCount] = unescape(line.substring(titleStart, authorStart - 1));
+                pendingAuthors[pendingCount] = unescape(line.substring(authorStart));
+                if (++pendingCount == batchSize) {
+                    flush();
+                    stagedLoaded = lines;
+                    if (checkpointing) {
+                        writeCheckpoint(reader);
+                    }
+                }
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Closes the staging file, if there is one, and deletes it unless a
+     * checkpoint still needs it to resume the import.
+     */
+    private void discardStaging() {
+        try {
+            if (staging != null) {
+                staging.close();
+                staging = null;
+            }
+            if (stagingFile != null && !stagingCheckpointed) {
+                Files.deleteIfExists(stagingFile);
+            }
+            stagingFile = null;
+        } catch (IOException e) {
+            System.out.println("Import Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Escapes a field for the staging file, where backslash, tab and line
+     * break are written with a backslash in front.
+     *
+     * @param text The field.
+     * @return The escaped field.
+     */
+    static String escape(String text) {
+        StringBuilder sb = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' || c == '\t' || c == '\n') {
+                if (sb == null) {
+                    sb = new StringBuilder(text.length() + 8).append(text, 0, i);
+                }
+                sb.append('\\').append(c == '\t' ? 't' : c == '\n' ? 'n' : '\\');
+            } else if (sb != null) {
+                sb.append(c);
+            }
+        }
+        return sb == null ? text : sb.toString();
+    }
+
+    /**
+     * Reverses {@link #escape(String)}.
+     *
+     * @param text The escaped field.
+     * @return The field.
+     */
+    static String unescape(String text) {
+        if (text.indexOf('\\') < 0) {
+            return text;
+        }
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < text.length()) {
+                char next = text.charAt(++i);
+                sb.append(next == 't' ? '\t' : next == 'n' ? '\n' : next);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,124 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import org.junit.jupiter.api.Test;
+
+class BookImporterTest {
+
+    @Test
+    void testResumesFromCheckpoint() throws IOException, SQLException {
+        Path csv = Files.createTempFile("lms-import-test", ".csv");
+        Path checkpoint = Paths.get(csv + ".checkpoint");
+        Path log = Files.createTempFile("lms-import-test", ".log");
+        try {
+            StringBuilder text = new StringBuilder("ID,Book Title,Author\n");
+            for (int i = 1; i <= 1_000; i++) {
+                if (i % 97 == 0) {
+                    text.append("x").append(i).append(",Bad Barcode,Someone\n");
+                } else if (i % 101 == 0) {
+                    text.append(i - 1).append(",\"Repeated, Again\",Someone\n");
+                } else {
+                    text.append(i).append(",\"Title ").append(i).append("\",Author ").append(i).append('\n');
+                }
+            }
+            Files.write(csv, text.toString().getBytes(StandardCharsets.UTF_8));
+            ImportResult clean = new BookImporter(new InMemoryBookRepository(), 50).importFile(csv.toFile());
+
+            ImportResult first;
+            try (LogBookRepository failing = new FailingRepository(log, 6)) {
+                first = new BookImporter(failing, 50).importFile(csv.toFile());
+            }
+            assertTrue(first.isFailed());
+            assertEquals(300, first.getRowsInserted());
+            assertTrue(Files.exists(checkpoint));
+
+            try (LogBookRepository repository = new LogBookRepository(log)) {
+                ImportResult second = new BookImporter(repository, 50).importFile(csv.toFile());
+                assertFalse(second.isFailed());
+                assertTrue(second.getResumedFromLine() > 300);
+                assertEquals(300, second.getResumedRowsInserted());
+                assertEquals(clean.getRowsRead(), second.getRowsRead());
+                assertEquals(clean.getRowsInserted(), second.getRowsInserted());
+                assertEquals(clean.getRowsSkipped(), second.getRowsSkipped());
+                assertEquals(clean.getRowsRejected(), second.getRowsRejected());
+                assertEquals(clean.getValidBooks(), second.getValidBooks());
+                assertEquals(clean.getErrorSummary(), second.getErrorSummary());
+                assertFalse(Files.exists(checkpoint));
+
+                assertEquals(clean.getRowsInserted(), repository.count(LocalDate.now()).getTotal());
+                Book book = repository.findByBarcode(999);
+                assertNotNull(book);
+                assertEquals("Title 999", book.getTitle());
+            }
+        } finally {
+            Files.deleteIfExists(csv);
+            Files.deleteIfExists(checkpoint);
+            Files.deleteIfExists(log);
+        }
+    }
+
+    @Test
+    void testRejectsRepeatFromBeforeCheckpoint() throws IOException, SQLException {
+        Path csv = Files.createTempFile("lms-import-test", ".csv");
+        Path checkpoint = Paths.get(csv + ".checkpoint");
+        Path log = Files.createTempFile("lms-import-test", ".log");
+        try {
+            StringBuilder text = new StringBuilder("ID,Book Title,Author\n");
+            for (int i = 1; i <= 600; i++) {
+                // Rows after the checkpoint repeat barcodes from well before it
+                int barcode = i > 400 && i % 10 == 0 ? i - 350 : i;
+                text.append(barcode).append(",Title ").append(i).append(",Author ").append(i).append('\n');
+            }
+            Files.write(csv, text.toString().getBytes(StandardCharsets.UTF_8));
+            ImportResult clean = new BookImporter(new InMemoryBookRepository(), 50).importFile(csv.toFile());
+            assertEquals(20, clean.getRowsRejected());
+
+            try (LogBookRepository failing = new FailingRepository(log, 6)) {
+                assertTrue(new BookImporter(failing, 50).importFile(csv.toFile()).isFailed());
+            }
+            try (LogBookRepository repository = new LogBookRepository(log)) {
+                ImportResult second = new BookImporter(repository, 50).importFile(csv.toFile());
+                assertEquals(302, second.getResumedFromLine());
+                assertEquals(clean.getRowsInserted(), second.getRowsInserted());
+                assertEquals(clean.getRowsSkipped(), second.getRowsSkipped());
+                assertEquals(clean.getRowsRejected(), second.getRowsRejected());
+                assertEquals(clean.getValidBooks(), second.getValidBooks());
+                assertEquals(clean.getErrorSummary(), second.getErrorSummary());
+                assertEquals("Title 60", repository.findByBarcode(60).getTitle());
+            }
+        } finally {
+            Files.deleteIfExists(csv);
+            Files.deleteIfExists(checkpoint);
+            Files.deleteIfExists(log);
+        }
+    }
+
+    /**
+     * A log repository whose connection drops after a number of batches.
+     */
+    private static class FailingRepository extends LogBookRepository {
+        private int batchesLeft;
+
+        FailingRepository(Path file, int batches) throws IOException {
+            super(file);
+            this.batchesLeft = batches;
+        }
+
+        @Override
+        public int insertAll(int[] barcodes, String[] titles, String[] authors, int count) throws SQLException {
+            if (batchesLeft-- == 0) {
+                throw new SQLException("Connection lost");
+            }
+            return super.insertAll(barcodes, titles, authors, count);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * BookPage
+ * The BookPage class holds one page of books in (title, barcode) order together
+ * with the continuation token that fetches the page after it. Tokens encode the
+ * sort key of the last book on the page, so the next page is found by seeking
+ * past that key instead of counting rows from the start of the catalogue.
+ */
+public class BookPage {
+    private final List<Book> books;
+    private final String nextPageToken;
+
+    /**
+     * Creates a page.
+     *
+     * @param books         The books on the page, in (title, barcode) order.
+     * @param nextPageToken The token of the following page, or {@code null} if this is the last page.
+     */
+    public BookPage(List<Book> books, String nextPageToken) {
+        this.books = books;
+        this.nextPageToken = nextPageToken;
+    }
+
+    /**
+     * Gets the books on this page.
+     *
+     * @return The books, in (title, barcode) order.
+     */
+    public List<Book> getBooks() { return books; }
+
+    /**
+     * Gets the token that fetches the page after this one.
+     *
+     * @return The continuation token, or {@code null} if this is the last page.
+     */
+    public String getNextPageToken() { return nextPageToken; }
+
+    /**
+     * Tells whether there are more books after this page.
+     *
+     * @return True if {@link #getNextPageToken()} can be used to fetch another page.
+     */
+    public boolean hasNextPage() { return nextPageToken != null; }
+
+    /**
+     * Converts the page to rows for a table with the columns
+     * ID, Title, Author, Status and DueDate.
+     *
+     * @return One row per book.
+     */
+    public Object[][] toTableData() {
+        Object[][] tableData = new Object[books.size()][5];
+        for (int i = 0; i < books.size(); i++) {
+            Book book = books.get(i);
+            tableData[i][0] = book.getId();
+            tableData[i][1] = book.getTitle();
+            tableData[i][2] = book.getAuthor();
+            tableData[i][3] = book.getStatus();
+            tableData[i][4] = book.getDueDate();
+        }
+        return tableData;
+    }
+
+    /**
+     * Encodes the sort key of a book as a continuation token.
+     *
+     * @param title   The title of the last book on a page.
+     * @param barcode The barcode of the last book on a page.
+     * @return An opaque, URL safe token.
+     */
+    public static String encodeToken(String title, int barcode) {
+        String key = barcode + ":" + (title == null ? "" : title);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes the title from a continuation token.
+     *
+     * @param token The token.
+     * @return The title of the last book on the previous page.
+     * @throws IllegalArgumentException If the token is malformed.
+     */
+    public static String decodeTitle(String token) {
+        String key = decode(token);
+        return key.substring(key.indexOf(':') + 1);
+    }
+
+    /**
+     * Decodes the barcode from a continuation token.
+     *
+     * @param token The token.
+     * @return The barcode of the last book on the previous page.
+     * @throws IllegalArgumentException If the token is malformed.
+     */
+    public static int decodeBarcode(String token) {
+        String key = decode(token);
+        return Integer.parseInt(key.substring(0, key.indexOf(':')));
+    }
+
+    private static String decode(String token) {
+        String key = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        if (key.indexOf(':') < 1) {
+            throw new IllegalArgumentException("Malformed page token: " + token);
+        }
+        return key;
+    }
+}
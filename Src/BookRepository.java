@@ -0,0 +1,144 @@
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * BookRepository
+ * The BookRepository interface is where the {@link Library} keeps its books.
+ * The Library owns the caches, search indexes and running totals; a repository
+ * only stores books and answers the reads and writes below, each of which must
+ * be atomic on its own. {@link MySqlBookRepository} keeps the books in the
+ * MySQL books table and {@link InMemoryBookRepository} keeps them on the heap.
+ *
+ * Storage errors are reported as {@link SQLException}, the error type the rest
+ * of the program already handles, whatever the storage really is.
+ */
+public interface BookRepository {
+    /**
+     * Stores a new book.
+     *
+     * @param book The book. The repository keeps its own copy.
+     * @throws SQLException If a book with the barcode already exists or the book cannot be stored.
+     */
+    void insert(Book book) throws SQLException;
+
+    /**
+     * Stores many new, checked in books in one transaction. Barcodes that
+     * already exist are left untouched.
+     *
+     * @param barcodes The barcodes of the books.
+     * @param titles   The titles of the books.
+     * @param authors  The authors of the books.
+     * @param count    The number of books, from the start of the arrays.
+     * @return The number of books stored.
+     * @throws SQLException If the books cannot be stored; none of them are then.
+     */
+    int insertAll(int[] barcodes, String[] titles, String[] authors, int count) throws SQLException;
+
+    /**
+     * Reads a book.
+     *
+     * @param barcode The barcode of the book.
+     * @return The book, or {@code null} if there is none. It must not be modified.
+     * @throws SQLException If the book cannot be read.
+     */
+    Book findByBarcode(int barcode) throws SQLException;
+
+    /**
+     * Removes a book.
+     *
+     * @param barcode The barcode of the book.
+     * @return The book as it was before it was removed, or {@code null} if there was none.
+     * @throws SQLException If the book cannot be removed.
+     */
+    Book delete(int barcode) throws SQLException;
+
+    /**
+     * Checks a book out if it is in, or in if it is out, so that two callers
+     * toggling the same book cannot both see the old status.
+     *
+     * @param barcode The barcode of the book.
+     * @param dueDate The due date to give the book if it is checked out.
+     * @return The new status and due date, or {@code null} if there is no such book.
+     * @throws SQLException If the book cannot be changed.
+     */
+    StatusChange toggleStatus(int barcode, String dueDate) throws SQLException;
+
+    /**
+     * Sets the status of many books in one transaction. Books already in the
+     * requested state are left alone.
+     *
+     * @param distinct   The sorted, distinct barcodes.
+     * @param checkedOut True to check the books out, false to check them in.
+     * @param dueDate    The due date for checked out books, or {@code null}.
+     * @return For each barcode, the book as it was before, or {@code null} if there is none.
+     * @throws SQLException If the books cannot be changed; none of them are then.
+     */
+    Book[] setStatusAll(int[] distinct, boolean checkedOut, String dueDate) throws SQLException;
+
+    /**
+     * Removes many books in one transaction.
+     *
+     * @param distinct The sorted, distinct barcodes.
+     * @return For each barcode, the book as it was before it was removed, or {@code null} if there was none.
+     * @throws SQLException If the books cannot be removed; none of them are then.
+     */
+    Book[] deleteAll(int[] distinct) throws SQLException;
+
+    /**
+     * Reads one page of books in (title, barcode) order, seeking past the key
+     * in the token.
+     *
+     * @param pageToken The token from the previous page, or {@code null} for the first page.
+     * @param pageSize  The maximum number of books on the page.
+     * @return The page and the token of the page after it.
+     * @throws SQLException If the books cannot be read.
+     */
+    BookPage listPage(String pageToken, int pageSize) throws SQLException;
+
+    /**
+     * Gets the token of the page that starts at a row.
+     *
+     * @param offset The zero based row, greater than zero.
+     * @return The token for {@link #listPage(String, int)}, or {@code null} if the offset is past the last book.
+     * @throws SQLException If the books cannot be read.
+     */
+    String getPageToken(int offset) throws SQLException;
+
+    /**
+     * Counts all, checked out and overdue books.
+     *
+     * @param today The first day on which a due date is not yet overdue.
+     * @return The counts.
+     * @throws SQLException If the books cannot be counted.
+     */
+    LibraryStats.Snapshot count(LocalDate today) throws SQLException;
+
+    /**
+     * Hands every book to an action, one at a time, in no particular order.
+     * The books are streamed, so they need not all fit in memory at once.
+     *
+     * @param action The action to run for each book.
+     * @throws SQLException If the books cannot be read.
+     */
+    void forEach(Consumer<Book> action) throws SQLException;
+
+    /**
+     * Hands every barcode to an action, in no particular order, without
+     * reading the rest of the books.
+     *
+     * @param action The action to run for each barcode.
+     * @throws SQLException If the barcodes cannot be read.
+     */
+    void forEachBarcode(IntConsumer action) throws SQLException;
+
+    /**
+     * Tells whether stored books outlive the program, so work recorded as
+     * done, such as an import checkpoint, is still done after a restart.
+     *
+     * @return True if the books are kept on disk.
+     */
+    boolean isDurable();
+}
@@ -0,0 +1,488 @@
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * BookTableModel
+ * The BookTableModel class is a virtual table model for the books table. It
+ * knows how many books there are but only loads the pages of rows that are on
+ * screen, plus a small prefetch margin, through {@link Library#listBooksPage}.
+ * Loaded pages are kept in a bounded LRU cache, so memory stays flat however
+ * far the user scrolls. Rows are in (title, barcode) order.
+ *
+ * Pages are read through a {@link LibraryService}, never on the event thread:
+ * a row whose page is not loaded yet shows as loading, and the table is told
+ * to repaint those rows once the page arrives. The model itself is only
+ * touched on the event thread.
+ *
+ * Changes reported by the Library are applied to the loaded pages in place:
+ * a status change repaints its one row, and an insert or removal adds or
+ * deletes its row and shifts the loaded rows after it, so the table keeps its
+ * selection and scroll position. A book whose row is not loaded is placed by
+ * comparing its (title, barcode) key with the loaded rows; if it falls in a
+ * part of the table that is not loaded, only the row count and the loaded
+ * rows after that part change. Only a book whose place cannot be told falls
+ * back to {@link #refresh()}.
+ */
+public class BookTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    static final int PAGE_SIZE = 100;
+    private static final int MAX_CACHED_PAGES = 50;
+    private static final int MAX_CACHED_TOKENS = 10_000;
+    private static final int PREFETCH_PAGES = 1;
+    private static final String[] COLUMN_NAMES = {"ID", "Title", "Author", "Status", "DueDate"};
+    private static final String LOADING_TEXT = "Loading...";
+    private static final Collator LOOSE_ORDER = Collator.getInstance(Locale.ROOT);
+
+    static {
+        LOOSE_ORDER.setStrength(Collator.PRIMARY); // Ignores case and accents, as the database does
+    }
+
+    private final LibraryService libraryService;
+    private int rowCount;
+    private int generation; // Bumped by refresh, so a count read before it is dropped
+    private int loadGeneration; // Bumped when loaded rows move, so pages read before are dropped
+
+    // Pages being read, so scrolling over a page does not ask for it twice
+    private final Map<Integer, CompletableFuture<BookPage>> loading = new HashMap<>();
+
+    // Access ordered, so the least recently viewed page is evicted first
+    private final Map<Integer, Object[][]> pages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Object[][]> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+
+    // Continuation tokens of pages we have seen the start of, so scrolling on
+    // from a loaded page never needs an offset lookup
+    private final Map<Integer, String> pageTokens = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+            return size() > MAX_CACHED_TOKENS;
+        }
+    };
+
+    /**
+     * Creates a model over the books in the library and starts reading the row count.
+     *
+     * @param libraryService The LibraryService to fetch book data through.
+     */
+    public BookTableModel(LibraryService libraryService) {
+        this.libraryService = libraryService;
+        refresh();
+    }
+
+    /**
+     * Re-reads the row count and then drops every loaded page, for when the
+     * catalogue has changed. The old rows stay on screen until the new count
+     * arrives.
+     */
+    public void refresh() {
+        int refreshGeneration = ++generation;
+        loadGeneration++;
+        loading.values().forEach(future -> future.cancel(true));
+        loading.clear();
+        libraryService.getStatistics().thenAcceptAsync(stats -> {
+            if (refreshGeneration != generation) {
+                return; // A later refresh is under way
+            }
+            pages.clear();
+            pageTokens.clear();
+            rowCount = (int) stats.getTotal();
+            fireTableDataChanged();
+        }, LibraryService.ON_EDT);
+    }
+
+    /**
+     * Applies a change made through the Library. Call on the event thread.
+     *
+     * @param event The change.
+     */
+    public void bookChanged(BookChangeEvent event) {
+        switch (event.getType()) {
+            case STATUS_CHANGED:
+                updateStatus(event.getBarcode(), event.isCheckedOut(), event.getDueDate());
+                break;
+            case INSERTED:
+                insertRow(event.getBook());
+                break;
+            case DELETED:
+                removeRow(event.getBook());
+                break;
+            default:
+                refresh();
+                break;
+        }
+    }
+
+    /**
+     * Starts loading the pages covering the given rows and the prefetch margin
+     * around them, so they are ready before the table asks for them.
+     *
+     * @param firstRow The first visible row.
+     * @param lastRow  The last visible row.
+     */
+    public void prefetch(int firstRow, int lastRow) {
+        if (rowCount == 0) {
+            return;
+        }
+        int firstPage = Math.max(0, firstRow / PAGE_SIZE - PREFETCH_PAGES);
+        int lastPage = Math.min((rowCount - 1) / PAGE_SIZE, lastRow / PAGE_SIZE + PREFETCH_PAGES);
+        for (int page = firstPage; page <= lastPage; page++) {
+            if (!pages.containsKey(page)) {
+                requestPage(page);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of pages currently held in memory.
+     *
+     * @return The number of cached pages.
+     */
+    public int getCachedPageCount() {
+        return pages.size();
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int columnIndex) {
+        // Define the data type for each column
+        if (columnIndex == 0) {
+            return Integer.class;
+        } else if (columnIndex == 3) {
+            return Boolean.class;
+        } else {
+            return String.class;
+        }
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;  // Make table cells non-editable
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        Object[][] page = pages.get(rowIndex / PAGE_SIZE);
+        if (page == null) {
+            requestPage(rowIndex / PAGE_SIZE);
+            return columnIndex == 1 ? LOADING_TEXT : null;
+        }
+        int offset = rowIndex % PAGE_SIZE;
+        return offset < page.length ? page[offset][columnIndex] : null;
+    }
+
+    /**
+     * Shows a book's new status if its row is loaded. A page still being read
+     * may have been read before the change, so it is asked for again.
+     *
+     * @param barcode    The barcode of the book.
+     * @param checkedOut Its new status.
+     * @param dueDate    Its new due date.
+     */
+    private void updateStatus(int barcode, boolean checkedOut, String dueDate) {
+        restartLoading();
+        int row = findRow(barcode);
+        if (row < 0) {
+            return; // Read fresh when its page is loaded
+        }
+        Object[] cells = pages.get(row / PAGE_SIZE)[row % PAGE_SIZE];
+        cells[3] = checkedOut;
+        cells[4] = dueDate;
+        fireTableRowsUpdated(row, row);
+    }
+
+    /**
+     * Adds a new book's row where its key sorts among the loaded rows. If it
+     * sorts into a part of the table that is not loaded, the loaded rows after
+     * that part move down one and the page that now starts there is dropped.
+     *
+     * @param book The added book.
+     */
+    private void insertRow(Book book) {
+        List<Run> runs = loadedRuns();
+        int row = -1;
+        int gapStart = 0; // The first unloaded row before where it goes
+        boolean known = false;
+        for (Run run : runs) {
+            int point = insertionPoint(run.rows, book);
+            if (point < 0) {
+                refresh(); // Cannot tell where it goes
+                return;
+            }
+            if (point < run.rows.size()) {
+                row = run.start + point;
+                known = point > 0 || run.start == 0; // Else it goes somewhere in the unloaded rows before the run
+                break;
+            }
+            gapStart = run.end();
+        }
+        if (row < 0) {
+            row = rowCount; // After every loaded row
+            known = gapStart == rowCount && !runs.isEmpty();
+        }
+        Object[] cells = {book.getId(), book.getTitle(), book.getAuthor(), book.getStatus(), book.getDueDate()};
+        moveRows(runs, row, 1, known ? cells : null, known ? row : gapStart);
+        fireTableRowsInserted(row, row);
+    }
+
+    /**
+     * Deletes a book's row. The loaded rows after it move up one; a page left
+     * with a row that is not loaded is dropped and read again when shown. If
+     * its row is not loaded, its key tells which part of the table it was in.
+     *
+     * @param book The removed book.
+     */
+    private void removeRow(Book book) {
+        List<Run> runs = loadedRuns();
+        int row = findRow(book.getId());
+        int firstMoved = row;
+        if (row < 0) {
+            row = rowCount - 1; // After every loaded row
+            firstMoved = 0;
+            for (Run run : runs) {
+                int point = insertionPoint(run.rows, book);
+                if (point == 0 && run.start > 0) {
+                    row = run.start - 1; // Any unloaded row before the run moves the rows after it the same
+                    break;
+                }
+                if (point < run.rows.size()) {
+                    refresh(); // It should have been loaded, or its place cannot be told
+                    return;
+                }
+                firstMoved = run.end();
+            }
+            if (firstMoved == rowCount && !runs.isEmpty()) {
+                refresh(); // The last row is loaded, so it should have been
+                return;
+            }
+        }
+        moveRows(runs, row, -1, null, firstMoved);
+        fireTableRowsDeleted(row, row);
+    }
+
+    /**
+     * Inserts or deletes one row and moves the loaded rows after it. The rows
+     * of each run of loaded pages are shifted, then cut back into pages; a
+     * page is kept only if every one of its rows is known. Page tokens after
+     * the first row that may have changed no longer start where their page
+     * number says, so they are dropped.
+     *
+     * @param runs       The loaded rows, from {@link #loadedRuns()}.
+     * @param row        The row inserted or deleted.
+     * @param delta      1 for an insert, -1 for a delete.
+     * @param cells      The inserted row, or {@code null} if it is not known.
+     * @param firstMoved {@code row} if the change is known to be there, else
+     *                   the first row of the unloaded rows it is somewhere in.
+     */
+    private void moveRows(List<Run> runs, int row, int delta, Object[] cells, int firstMoved) {
+        rowCount += delta;
+        List<Integer> recent = new ArrayList<>(pages.keySet()); // Least recently viewed first
+        Map<Integer, Object[][]> kept = new HashMap<>();
+        for (Run run : runs) {
+            if (row < run.start) {
+                run.start += delta;
+            } else if (delta < 0 && row < run.end()) {
+                run.rows.remove(row - run.start);
+            } else if (delta > 0 && row <= run.end()) {
+                run.rows.add(row - run.start, cells);
+            }
+            for (int page = (run.start + PAGE_SIZE - 1) / PAGE_SIZE; page * PAGE_SIZE < run.end(); page++) {
+                int from = page * PAGE_SIZE - run.start;
+                int to = Math.min(page * PAGE_SIZE + PAGE_SIZE, rowCount) - run.start;
+                if (to > run.rows.size() || run.rows.subList(from, to).contains(null)) {
+                    continue;
+                }
+                kept.put(page, run.rows.subList(from, to).toArray(new Object[0][]));
+            }
+        }
+        pages.clear();
+        for (Integer page : recent) {
+            if (kept.containsKey(page)) {
+                pages.put(page, kept.remove(page));
+            }
+        }
+        pages.putAll(kept); // Pages that were only partly loaded before
+        pageTokens.keySet().removeIf(page -> page * PAGE_SIZE > firstMoved);
+        restartLoading();
+    }
+
+    /**
+     * Gathers the loaded pages into runs of rows with no unloaded row between
+     * them, in row order.
+     *
+     * @return The runs.
+     */
+    private List<Run> loadedRuns() {
+        List<Run> runs = new ArrayList<>();
+        Run run = null;
+        for (Map.Entry<Integer, Object[][]> entry : new TreeMap<>(pages).entrySet()) {
+            Object[][] page = entry.getValue();
+            if (page.length == 0) {
+                continue;
+            }
+            int start = entry.getKey() * PAGE_SIZE;
+            if (run == null || run.end() != start) {
+                run = new Run(start);
+                runs.add(run);
+            }
+            run.rows.addAll(List.of(page));
+        }
+        return runs;
+    }
+
+    /**
+     * Finds how many rows of a run sort before a book.
+     *
+     * @param rows The rows of the run.
+     * @param book The book.
+     * @return The number of rows before it, or -1 if its place cannot be told.
+     */
+    private static int insertionPoint(List<Object[]> rows, Book book) {
+        int low = 0;
+        int high = rows.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int compare = compareKeys(book, rows.get(middle));
+            if (compare == 0) {
+                return -1;
+            }
+            if (compare > 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compares a book with a loaded row by (title, barcode). The rows are in
+     * the repository's order, which is by character in memory and in the log
+     * but ignores case and accents in the database, so only an answer that
+     * both orders give is trusted.
+     *
+     * @param book  The book.
+     * @param cells The row.
+     * @return Below zero if the book sorts first, above zero if it sorts after,
+     *         or zero if the two orders disagree.
+     */
+    private static int compareKeys(Book book, Object[] cells) {
+        String title = book.getTitle() == null ? "" : book.getTitle();
+        String rowTitle = cells[1] == null ? "" : (String) cells[1];
+        int byBarcode = Integer.compare(book.getId(), (Integer) cells[0]);
+        int exact = title.compareTo(rowTitle);
+        int loose = LOOSE_ORDER.compare(title, rowTitle);
+        exact = exact != 0 ? Integer.signum(exact) : byBarcode;
+        loose = loose != 0 ? Integer.signum(loose) : byBarcode;
+        return exact == loose ? exact : 0;
+    }
+
+    /**
+     * Finds the row of a book among the loaded pages.
+     *
+     * @param barcode The barcode of the book.
+     * @return The row, or -1 if its page is not loaded.
+     */
+    private int findRow(int barcode) {
+        for (Map.Entry<Integer, Object[][]> entry : pages.entrySet()) {
+            Object[][] page = entry.getValue();
+            for (int offset = 0; offset < page.length; offset++) {
+                if ((Integer) page[offset][0] == barcode) {
+                    return entry.getKey() * PAGE_SIZE + offset;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Drops the pages being read, which may have been read before a change,
+     * and asks for them again.
+     */
+    private void restartLoading() {
+        if (loading.isEmpty()) {
+            return;
+        }
+        loadGeneration++;
+        List<Integer> pending = new ArrayList<>(loading.keySet());
+        loading.values().forEach(future -> future.cancel(true));
+        loading.clear();
+        pending.forEach(this::requestPage);
+    }
+
+    /**
+     * Starts reading one page in the background, from a remembered token when
+     * we have one and from an offset lookup when the user jumped straight to
+     * it. When the page arrives its rows are repainted.
+     *
+     * @param pageIndex The zero based page number.
+     */
+    private void requestPage(int pageIndex) {
+        if (loading.containsKey(pageIndex)) {
+            return;
+        }
+        int requestGeneration = loadGeneration;
+        String token = pageIndex > 0 ? pageTokens.get(pageIndex) : null;
+        CompletableFuture<BookPage> future = libraryService.listBooksPage(token, pageIndex * PAGE_SIZE, PAGE_SIZE);
+        loading.put(pageIndex, future);
+        future.whenCompleteAsync((bookPage, error) -> {
+            if (requestGeneration != loadGeneration) {
+                return; // Read before a change; the rows may have moved
+            }
+            loading.remove(pageIndex);
+            if (error != null) {
+                return; // Left unloaded, so it is asked for again when next shown
+            }
+            pages.put(pageIndex, bookPage.toTableData());
+            if (bookPage.hasNextPage()) {
+                pageTokens.put(pageIndex + 1, bookPage.getNextPageToken());
+            }
+            int firstRow = pageIndex * PAGE_SIZE;
+            int lastRow = Math.min(rowCount, firstRow + PAGE_SIZE) - 1;
+            if (firstRow <= lastRow) {
+                fireTableRowsUpdated(firstRow, lastRow);
+            }
+        }, LibraryService.ON_EDT);
+    }
+
+    /**
+     * Rows of consecutive loaded pages, starting at a row of the table.
+     */
+    private static final class Run {
+        private int start;
+        private final List<Object[]> rows = new ArrayList<>();
+
+        private Run(int start) {
+            this.start = start;
+        }
+
+        private int end() {
+            return start + rows.size();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * BulkResult
+ * The BulkResult class reports the outcome of a bulk check out, check in or
+ * removal, with one {@link Outcome} per barcode in the order they were given.
+ */
+public class BulkResult {
+
+    /**
+     * Outcome
+     * What happened to one barcode of a bulk operation.
+     */
+    public enum Outcome {
+        /** The book was checked out, checked in or removed. */
+        CHANGED,
+        /** The book was already in the requested state and was left alone. */
+        UNCHANGED,
+        /** No book has the barcode. */
+        NOT_FOUND,
+        /** The operation failed and was rolled back. */
+        FAILED
+    }
+
+    private final int[] barcodes;
+    private final Outcome[] outcomes;
+    private final String dueDate;
+    private final String errorMessage;
+
+    /**
+     * Creates a bulk result.
+     *
+     * @param barcodes     The barcodes, in the order they were given.
+     * @param outcomes     The outcome of each barcode.
+     * @param dueDate      The due date given to checked out books, or {@code null}.
+     * @param errorMessage Why the operation failed, or {@code null} if it did not.
+     */
+    public BulkResult(int[] barcodes, Outcome[] outcomes, String dueDate, String errorMessage) {
+        this.barcodes = barcodes;
+        this.outcomes = outcomes;
+        this.dueDate = dueDate;
+        this.errorMessage = errorMessage;
+    }
+
+    /**
+     * Creates a result in which every barcode failed.
+     *
+     * @param barcodes     The barcodes, in the order they were given.
+     * @param errorMessage Why the operation failed.
+     * @return The failed result.
+     */
+    public static BulkResult failed(int[] barcodes, String errorMessage) {
+        Outcome[] outcomes = new Outcome[barcodes.length];
+        Arrays.fill(outcomes, Outcome.FAILED);
+        return new BulkResult(barcodes, outcomes, null, errorMessage);
+    }
+
+    /** @return The number of barcodes in the request. */
+    public int size() { return barcodes.length; }
+
+    /** @return The barcode at the given position of the request. */
+    public int getBarcode(int index) { return barcodes[index]; }
+
+    /** @return The outcome of the barcode at the given position of the request. */
+    public Outcome getOutcome(int index) { return outcomes[index]; }
+
+    /** @return The due date given to checked out books, or {@code null}. */
+    public String getDueDate() { return dueDate; }
+
+    /** @return Why the operation failed, or {@code null} if it did not. */
+    public String getErrorMessage() { return errorMessage; }
+
+    /**
+     * Counts the barcodes with the given outcome.
+     *
+     * @param outcome The outcome to count.
+     * @return The number of barcodes with that outcome.
+     */
+    public int count(Outcome outcome) {
+        int count = 0;
+        for (Outcome o : outcomes) {
+            if (o == outcome) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets the barcodes with the given outcome.
+     *
+     * @param outcome The outcome to look for.
+     * @return The matching barcodes, in request order.
+     */
+    public List<Integer> barcodesWith(Outcome outcome) {
+        List<Integer> matches = new ArrayList<>();
+        for (int i = 0; i < barcodes.length; i++) {
+            if (outcomes[i] == outcome) {
+                matches.add(barcodes[i]);
+            }
+        }
+        return matches;
+    }
+
+    @Override
+    public String toString() {
+        return "changed=" + count(Outcome.CHANGED) + " unchanged=" + count(Outcome.UNCHANGED)
+                + " notFound=" + count(Outcome.NOT_FOUND) + " failed=" + count(Outcome.FAILED);
+    }
+}
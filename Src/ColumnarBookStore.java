@@ -0,0 +1,623 @@
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * ColumnarBookStore
+ * The ColumnarBookStore class holds books as columns instead of objects: one
+ * int array each for barcodes, title ids, author ids and due dates (as epoch
+ * days), and a bitset for the status. Titles and authors are interned in
+ * {@link StringDictionary}s, so a title shared by many copies is stored once.
+ * A book costs a few ints, against a Book, two or three Strings and their byte
+ * arrays when books are held as objects.
+ *
+ * Books are found by barcode through an open addressing index of row numbers.
+ * Removing a book moves the last row into its place, so row numbers are only
+ * good until the next removal. For paging, the store also keeps the barcodes
+ * sorted by (title, barcode); changes are collected and merged in on the next
+ * call to {@link #order()}, so a bulk load sorts once instead of per book,
+ * while a few changes are placed by binary search without a rebuild.
+ *
+ * The store is not thread safe; callers must lock around it.
+ */
+public class ColumnarBookStore {
+    private static final float LOAD_FACTOR = 0.6f;
+    private static final int NO_DUE_DATE = Integer.MIN_VALUE;
+    private static final int NO_STRING = -1;
+    private static final int INSERTION_RATIO = 32; // Changes up to 1/32 of the order are placed one by one
+    private static final byte[] EMPTY = new byte[0];
+
+    private final StringDictionary titles = new StringDictionary();
+    private final StringDictionary authors = new StringDictionary();
+
+    private int[] barcodes = new int[16];
+    private int[] titleIds = new int[16];
+    private int[] authorIds = new int[16];
+    private int[] dueDays = new int[16];
+    private long[] status = new long[1];
+    private int size;
+    private int checkedOutCount;
+
+    private int[] index = new int[32]; // row + 1, or 0 for an empty slot
+    private int mask = 31;
+
+    private int[] order = new int[0];
+    private int orderSize;
+    private int[] added = new int[16]; // Barcodes since the last order(), possibly repeated
+    private int addedCount;
+    private int[] removed = new int[16];
+    private int removedCount;
+
+    /**
+     * Gets the number of books.
+     *
+     * @return The number of books.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of checked out books.
+     *
+     * @return The number of checked out books.
+     */
+    public int checkedOutCount() {
+        return checkedOutCount;
+    }
+
+    /**
+     * Finds the row of a book.
+     *
+     * @param barcode The barcode of the book.
+     * @return Its row, or -1 if there is no such book.
+     */
+    public int rowOf(int barcode) {
+        int i = hash(barcode) & mask;
+        int entry;
+        while ((entry = index[i]) != 0) {
+            if (barcodes[entry - 1] == barcode) {
+                return entry - 1;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Adds a book.
+     *
+     * @param barcode    The barcode, which must not be in the store.
+     * @param title      The title, or {@code null}.
+     * @param author     The author, or {@code null}.
+     * @param checkedOut Whether the book is checked out.
+     * @param dueDate    The due date as yyyy-MM-dd, or {@code null}.
+     * @throws IllegalArgumentException If the due date is not a date; nothing is added then.
+     */
+    public void add(int barcode, String title, String author, boolean checkedOut, String dueDate) {
+        int due = dueDate == null ? NO_DUE_DATE : toEpochDay(dueDate);
+        if (size == barcodes.length) {
+            grow();
+        }
+        int row = size++;
+        barcodes[row] = barcode;
+        titleIds[row] = title == null ? NO_STRING : titles.intern(title);
+        authorIds[row] = author == null ? NO_STRING : authors.intern(author);
+        setStatus(row, checkedOut, due);
+
+        int i = hash(barcode) & mask;
+        while (index[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        index[i] = row + 1;
+        if (size > (int) (index.length * LOAD_FACTOR)) {
+            rehash(index.length << 1);
+        }
+        added = append(added, addedCount++, barcode);
+    }
+
+    /**
+     * Removes a book, moving the last row into its place.
+     *
+     * @param row The row of the book.
+     */
+    public void remove(int row) {
+        int barcode = barcodes[row];
+        setStatus(row, false, NO_DUE_DATE);
+        release(titles, titleIds[row]);
+        release(authors, authorIds[row]);
+        shiftBack(slotOf(row));
+
+        int last = --size;
+        if (row != last) {
+            index[slotOf(last)] = row + 1;
+            barcodes[row] = barcodes[last];
+            titleIds[row] = titleIds[last];
+            authorIds[row] = authorIds[last];
+            dueDays[row] = dueDays[last];
+            if (isCheckedOut(last)) {
+                status[row >>> 6] |= 1L << row;
+            }
+        }
+        status[last >>> 6] &= ~(1L << last);
+
+        removed = append(removed, removedCount++, barcode);
+    }
+
+    /**
+     * Checks whether the book in a row is checked out.
+     *
+     * @param row The row.
+     * @return True if it is checked out.
+     */
+    public boolean isCheckedOut(int row) {
+        return (status[row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * Sets the status and due date of the book in a row.
+     *
+     * @param row        The row.
+     * @param checkedOut The new status.
+     * @param dueDate    The new due date as yyyy-MM-dd, or {@code null}.
+     * @throws IllegalArgumentException If the due date is not a date; nothing is changed then.
+     */
+    public void setStatus(int row, boolean checkedOut, String dueDate) {
+        setStatus(row, checkedOut, dueDate == null ? NO_DUE_DATE : toEpochDay(dueDate));
+    }
+
+    private void setStatus(int row, boolean checkedOut, int due) {
+        if (checkedOut != isCheckedOut(row)) {
+            status[row >>> 6] ^= 1L << row;
+            checkedOutCount += checkedOut ? 1 : -1;
+        }
+        dueDays[row] = due;
+    }
+
+    /**
+     * Gets the book in a row as a Book of its own, which stays as it is when
+     * the store changes.
+     *
+     * @param row The row.
+     * @return A new Book.
+     */
+    public Book bookAt(int row) {
+        return new Book(barcodes[row], titleOf(row), authorOf(row), isCheckedOut(row), dueDateOf(row));
+    }
+
+    /**
+     * Gets the title of the book in a row.
+     *
+     * @param row The row.
+     * @return The title, or {@code null}.
+     */
+    public String titleOf(int row) {
+        return titleIds[row] == NO_STRING ? null : titles.get(titleIds[row]);
+    }
+
+    /**
+     * Counts the checked out books due before a given day. Only the set bits
+     * of the status bitset are visited.
+     *
+     * @param today The day to compare with.
+     * @return The number of overdue books.
+     */
+    public long overdueCount(LocalDate today) {
+        int todayDay = (int) today.toEpochDay();
+        long overdue = 0;
+        for (int word = 0; word < status.length; word++) {
+            long bits = status[word];
+            while (bits != 0) {
+                int row = (word << 6) + Long.numberOfTrailingZeros(bits);
+                int due = dueDays[row];
+                if (due != NO_DUE_DATE && due < todayDay) {
+                    overdue++;
+                }
+                bits &= bits - 1;
+            }
+        }
+        return overdue;
+    }
+
+    /**
+     * Runs an action for every book, in row order. The action gets the same
+     * reused view each time, pointed at the next row; it must not keep the
+     * view or change the store.
+     *
+     * @param action The action to run for each book.
+     */
+    public void forEach(Consumer<Book> action) {
+        View view = new View();
+        for (int row = 0; row < size; row++) {
+            view.row = row;
+            action.accept(view);
+        }
+    }
+
+    /**
+     * Checks whether the title order is up to date with every change.
+     *
+     * @return True if {@link #order()} has nothing to do.
+     */
+    public boolean isOrdered() {
+        return addedCount == 0 && removedCount == 0;
+    }
+
+    /**
+     * Brings the title order up to date: removed barcodes are dropped, and
+     * barcodes added since the last call are sorted and merged in. A barcode
+     * removed and added again is dropped from its old place and merged in at
+     * its new one. A few changes are made to the order in place; only a large
+     * batch, such as a bulk load, rebuilds it.
+     */
+    public void order() {
+        if (isOrdered()) {
+            return;
+        }
+        Arrays.sort(removed, 0, removedCount);
+        if ((long) (addedCount + removedCount) * INSERTION_RATIO <= orderSize) {
+            dropRemoved();
+            insertRows(addedRows());
+            addedCount = 0;
+            removedCount = 0;
+            return;
+        }
+
+        int[] kept = new int[size];
+        int keptSize = 0;
+        for (int i = 0; i < orderSize; i++) {
+            if (Arrays.binarySearch(removed, 0, removedCount, order[i]) < 0) {
+                kept[keptSize++] = rowOf(order[i]);
+            }
+        }
+
+        int[] addedRows = addedRows();
+        int addedSize = addedRows.length;
+        int[] merged = new int[Math.max(size, 16)];
+        int k = 0;
+        int a = 0;
+        int m = 0;
+        while (k < keptSize || a < addedSize) {
+            if (a == addedSize || (k < keptSize && compareRows(kept[k], addedRows[a]) < 0)) {
+                merged[m++] = barcodes[kept[k++]];
+            } else {
+                merged[m++] = barcodes[addedRows[a++]];
+            }
+        }
+        order = merged;
+        orderSize = m;
+        added = new int[16]; // Let a bulk load's list go
+        addedCount = 0;
+        removed = new int[16];
+        removedCount = 0;
+    }
+
+    /**
+     * Gets the rows of the books added since the last {@link #order()} that
+     * are still in the store, each once, sorted by (title, barcode).
+     *
+     * @return The rows.
+     */
+    private int[] addedRows() {
+        Arrays.sort(added, 0, addedCount);
+        int[] rows = new int[addedCount];
+        int count = 0;
+        for (int i = 0; i < addedCount; i++) {
+            int row = i > 0 && added[i] == added[i - 1] ? -1 : rowOf(added[i]);
+            if (row >= 0) {
+                rows[count++] = row; // Skips repeats and books removed again
+            }
+        }
+        rows = Arrays.copyOf(rows, count);
+        sortRows(rows);
+        return rows;
+    }
+
+    /**
+     * Drops the removed barcodes from the order, sliding the rest down in one
+     * pass. The removed barcodes must be sorted.
+     */
+    private void dropRemoved() {
+        if (removedCount == 0) {
+            return;
+        }
+        int kept = 0;
+        for (int i = 0; i < orderSize; i++) {
+            if (Arrays.binarySearch(removed, 0, removedCount, order[i]) < 0) {
+                order[kept++] = order[i];
+            }
+        }
+        orderSize = kept;
+    }
+
+    /**
+     * Inserts sorted rows into the order. Each one's place is found by binary
+     * search, and the order is then opened up from the back, so every barcode
+     * moves at most once.
+     *
+     * @param rows The rows, sorted by (title, barcode).
+     */
+    private void insertRows(int[] rows) {
+        if (rows.length == 0) {
+            return;
+        }
+        int[] positions = new int[rows.length];
+        int low = 0;
+        for (int j = 0; j < rows.length; j++) {
+            int high = orderSize;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (compareRows(rowOf(order[middle]), rows[j]) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            positions[j] = low; // The rows are sorted, so the next one goes no earlier
+        }
+        if (orderSize + rows.length > order.length) {
+            order = Arrays.copyOf(order, Math.max(orderSize + rows.length, order.length + (order.length >> 1)));
+        }
+        int end = orderSize;
+        for (int j = rows.length - 1; j >= 0; j--) {
+            int position = positions[j];
+            System.arraycopy(order, position, order, position + j + 1, end - position);
+            order[position + j] = barcodes[rows[j]];
+            end = position;
+        }
+        orderSize += rows.length;
+    }
+
+    /**
+     * Gets the barcode at a position in title order. The order must be up to
+     * date.
+     *
+     * @param position The position, from 0.
+     * @return The barcode.
+     */
+    public int barcodeAt(int position) {
+        return order[position];
+    }
+
+    /**
+     * Finds the first position in title order past a given book. The order
+     * must be up to date.
+     *
+     * @param title   The title of the book, with {@code null} as "".
+     * @param barcode The barcode of the book.
+     * @return The position of the first book after it, which is {@link #size()} if there is none.
+     */
+    public int positionAfter(String title, int barcode) {
+        byte[] key = title.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = orderSize;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int row = rowOf(order[middle]);
+            int compare = titleIds[row] == NO_STRING ? Arrays.compareUnsigned(key, EMPTY) : titles.compare(key, titleIds[row]);
+            if (compare > 0 || (compare == 0 && barcode >= barcodes[row])) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Estimates the heap taken by the store's arrays, for comparing against
+     * holding the books as objects.
+     *
+     * @return The estimate in bytes.
+     */
+    public long getHeapBytes() {
+        return 4L * (barcodes.length + titleIds.length + authorIds.length + dueDays.length + index.length + order.length
+                + added.length + removed.length)
+                + 8L * status.length + titles.getHeapBytes() + authors.getHeapBytes();
+    }
+
+    private String authorOf(int row) {
+        return authorIds[row] == NO_STRING ? null : authors.get(authorIds[row]);
+    }
+
+    /**
+     * Gets the due date of the book in a row.
+     *
+     * @param row The row.
+     * @return The due date as yyyy-MM-dd, or {@code null}.
+     */
+    public String dueDateOf(int row) {
+        return dueDays[row] == NO_DUE_DATE ? null : LocalDate.ofEpochDay(dueDays[row]).toString();
+    }
+
+    /**
+     * Reads a yyyy-MM-dd date without going through a DateTimeFormatter, which
+     * is most of the cost of a status change.
+     *
+     * @param date The date.
+     * @return Its epoch day.
+     * @throws IllegalArgumentException If the text is not a yyyy-MM-dd date.
+     */
+    public static int toEpochDay(String date) {
+        try {
+            if (date.length() != 10 || date.charAt(4) != '-' || date.charAt(7) != '-') {
+                return (int) LocalDate.parse(date).toEpochDay();
+            }
+            int year = Integer.parseInt(date, 0, 4, 10);
+            int month = Integer.parseInt(date, 5, 7, 10);
+            int day = Integer.parseInt(date, 8, 10, 10);
+            return (int) LocalDate.of(year, month, day).toEpochDay();
+        } catch (DateTimeException | NumberFormatException e) {
+            throw new IllegalArgumentException("'" + date + "' is not a yyyy-MM-dd date", e);
+        }
+    }
+
+    private int compareRows(int a, int b) {
+        int titleA = titleIds[a];
+        int titleB = titleIds[b];
+        int compare;
+        if (titleA == NO_STRING || titleB == NO_STRING) {
+            compare = titleA == titleB ? 0
+                    : titleA == NO_STRING ? titles.compare(EMPTY, titleB) : -titles.compare(EMPTY, titleA);
+        } else {
+            compare = titles.compare(titleA, titleB);
+        }
+        return compare != 0 ? compare : Integer.compare(barcodes[a], barcodes[b]);
+    }
+
+    /**
+     * Sorts rows by (title, barcode) with a merge sort, which keeps them as
+     * ints instead of boxing them for a Comparator.
+     *
+     * @param rows The rows to sort.
+     */
+    private void sortRows(int[] rows) {
+        int[] buffer = new int[rows.length];
+        for (int width = 1; width < rows.length; width <<= 1) {
+            for (int from = 0; from < rows.length - width; from += width << 1) {
+                int middle = from + width;
+                int to = Math.min(middle + width, rows.length);
+                if (compareRows(rows[middle - 1], rows[middle]) <= 0) {
+                    continue; // Already in order
+                }
+                System.arraycopy(rows, from, buffer, from, to - from);
+                int left = from;
+                int right = middle;
+                for (int i = from; i < to; i++) {
+                    if (right == to || (left < middle && compareRows(buffer[left], buffer[right]) <= 0)) {
+                        rows[i] = buffer[left++];
+                    } else {
+                        rows[i] = buffer[right++];
+                    }
+                }
+            }
+        }
+    }
+
+    private static int[] append(int[] values, int count, int value) {
+        if (count == values.length) {
+            values = Arrays.copyOf(values, count * 2);
+        }
+        values[count] = value;
+        return values;
+    }
+
+    private static void release(StringDictionary dictionary, int id) {
+        if (id != NO_STRING) {
+            dictionary.release(id);
+        }
+    }
+
+    private int slotOf(int row) {
+        int i = hash(barcodes[row]) & mask;
+        while (index[i] != row + 1) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private void grow() {
+        int capacity = barcodes.length * 2;
+        barcodes = Arrays.copyOf(barcodes, capacity);
+        titleIds = Arrays.copyOf(titleIds, capacity);
+        authorIds = Arrays.copyOf(authorIds, capacity);
+        dueDays = Arrays.copyOf(dueDays, capacity);
+        status = Arrays.copyOf(status, (capacity + 63) >>> 6);
+    }
+
+    /**
+     * Fills the hole left by a removed row by moving back later rows of the
+     * same probe run, so lookups never stop early at a hole.
+     *
+     * @param hole The slot that was emptied.
+     */
+    private void shiftBack(int hole) {
+        int i = (hole + 1) & mask;
+        while (index[i] != 0) {
+            int home = hash(barcodes[index[i] - 1]) & mask;
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                index[hole] = index[i];
+                hole = i;
+            }
+            i = (i + 1) & mask;
+        }
+        index[hole] = 0;
+    }
+
+    private void rehash(int capacity) {
+        index = new int[capacity];
+        mask = capacity - 1;
+        for (int row = 0; row < size; row++) {
+            int i = hash(barcodes[row]) & mask;
+            while (index[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            index[i] = row + 1;
+        }
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * A Book that reads its fields from one row of the store, so walking the
+     * store allocates nothing per book. It cannot be changed.
+     */
+    private class View extends Book {
+        private int row;
+
+        private View() {
+            super(0, null, null);
+        }
+
+        @Override
+        public int getId() {
+            return barcodes[row];
+        }
+
+        @Override
+        public String getTitle() {
+            return titleOf(row);
+        }
+
+        @Override
+        public String getAuthor() {
+            return authorOf(row);
+        }
+
+        @Override
+        public boolean getStatus() {
+            return isCheckedOut(row);
+        }
+
+        @Override
+        public String getDueDate() {
+            return dueDateOf(row);
+        }
+
+        @Override
+        public void setTitle(String title) {
+            throw new UnsupportedOperationException("A stored book cannot be changed");
+        }
+
+        @Override
+        public void setAuthor(String author) {
+            throw new UnsupportedOperationException("A stored book cannot be changed");
+        }
+
+        @Override
+        public void setStatus(boolean status) {
+            throw new UnsupportedOperationException("A stored book cannot be changed");
+        }
+
+        @Override
+        public void setDueDate(String dueDate) {
+            throw new UnsupportedOperationException("A stored book cannot be changed");
+        }
+    }
+}
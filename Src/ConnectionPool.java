@@ -0,0 +1,576 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * ConnectionPool
+ * The ConnectionPool class keeps a bounded set of open JDBC connections so the
+ * Library does not pay for a full TCP and authentication handshake on every call.
+ * Connections handed out by {@link #borrow()} are returned to the pool when they
+ * are closed, are validated before reuse, and a caller waiting for a free
+ * connection gives up after the configured acquire timeout. Every statement
+ * run on a pooled connection is traced by {@link SqlTrace}.
+ *
+ * Every borrow gets a handle of its own, which works until it is closed, so
+ * a caller that closes twice or keeps a connection past its block cannot
+ * touch the connection once someone else has borrowed it.
+ *
+ * Each connection also keeps its most recently used prepared statements open.
+ * Preparing the same SQL again on that connection hands back the open
+ * statement, and closing it returns it to the cache with its parameters and
+ * batch cleared, so the server parses and plans each statement once per
+ * connection rather than once per call.
+ */
+public class ConnectionPool {
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private static final long IDLE_VALIDATION_MILLIS = 30_000;
+    private static final int STATEMENT_CACHE_SIZE = 32;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong statementHits = new AtomicLong();
+    private final AtomicLong statementMisses = new AtomicLong();
+    private final LatencyHistogram acquireLatency = new LatencyHistogram();
+    private final long createdAtNanos = System.nanoTime();
+    private volatile boolean closed;
+
+    /**
+     * Creates a pool for the given database.
+     *
+     * @param url                  The JDBC url of the database.
+     * @param user                 The database user.
+     * @param password             The database password.
+     * @param maxSize              The maximum number of open connections.
+     * @param acquireTimeoutMillis How long {@link #borrow()} waits for a free connection.
+     */
+    public ConnectionPool(String url, String user, String password, int maxSize, long acquireTimeoutMillis) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive: " + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Borrows a connection from the pool, opening a new one if none is idle.
+     * Closing the returned connection hands it back to the pool.
+     *
+     * @return A validated connection.
+     * @throws SQLException If no connection became free within the acquire timeout,
+     *                      or a new connection could not be opened.
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLTransientConnectionException(
+                        "Timed out after " + acquireTimeoutMillis + " ms waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            PooledConnection pooled = takeIdle();
+            if (pooled == null) {
+                pooled = new PooledConnection(SqlTrace.wrap(DriverManager.getConnection(url, user, password)));
+            }
+            active.incrementAndGet();
+            recordWait(System.nanoTime() - start);
+            return new Handle(pooled).proxy;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Takes the most recently used idle connection that is still valid,
+     * discarding any that have gone stale.
+     *
+     * @return An idle connection, or {@code null} if none is usable.
+     */
+    private PooledConnection takeIdle() {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (isUsable(pooled)) {
+                return pooled;
+            }
+            discard(pooled);
+        }
+        return null;
+    }
+
+    /**
+     * Checks an idle connection before it is handed out again. Connections that
+     * were used recently are trusted; older ones get a round trip to the server.
+     *
+     * @param pooled The connection to check.
+     * @return True if the connection can be reused.
+     */
+    private boolean isUsable(PooledConnection pooled) {
+        try {
+            if (pooled.raw.isClosed()) {
+                return false;
+            }
+            if (System.currentTimeMillis() - pooled.lastReturnedMillis < IDLE_VALIDATION_MILLIS) {
+                return true;
+            }
+            return pooled.raw.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Hands a borrowed connection back to the pool, resetting any state the
+     * borrower changed. Called once per borrow, by the handle that was closed.
+     *
+     * @param pooled The connection being returned.
+     */
+    private void release(PooledConnection pooled) {
+        active.decrementAndGet();
+        pooled.freeStatements();
+        try {
+            if (closed || pooled.raw.isClosed()) {
+                discard(pooled);
+                return;
+            }
+            if (!pooled.raw.getAutoCommit()) {
+                pooled.raw.rollback(); // Never leak an open transaction to the next borrower
+                pooled.raw.setAutoCommit(true);
+            }
+            pooled.lastReturnedMillis = System.currentTimeMillis();
+            idle.offerFirst(pooled);
+        } catch (SQLException e) {
+            discard(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes a connection that is leaving the pool for good.
+     *
+     * @param pooled The connection to close.
+     */
+    private void discard(PooledConnection pooled) {
+        try {
+            pooled.raw.close();
+        } catch (SQLException e) {
+            System.out.println("SQL Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Records how long a borrower waited for its connection.
+     *
+     * @param waitNanos The wait in nanoseconds.
+     */
+    private void recordWait(long waitNanos) {
+        acquisitions.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        acquireLatency.record(waitNanos);
+    }
+
+    /**
+     * Gets the distribution of how long borrowers waited for their connection.
+     *
+     * @return The wait times of every successful borrow so far.
+     */
+    public LatencyHistogram.Snapshot getAcquireLatency() {
+        return acquireLatency.getSnapshot();
+    }
+
+    /**
+     * Closes every idle connection and refuses further borrows. Connections that
+     * are still borrowed are closed when they are returned.
+     */
+    public void close() {
+        closed = true;
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    /**
+     * Takes a snapshot of the pool metrics.
+     *
+     * @return The current pool statistics.
+     */
+    public Stats getStats() {
+        long count = acquisitions.get();
+        double elapsedSeconds = (System.nanoTime() - createdAtNanos) / 1_000_000_000.0;
+        return new Stats(
+                active.get(),
+                idle.size(),
+                maxSize,
+                count,
+                timeouts.get(),
+                count == 0 ? 0 : totalWaitNanos.get() / count / 1_000_000.0,
+                maxWaitNanos.get() / 1_000_000.0,
+                elapsedSeconds <= 0 ? 0 : count / elapsedSeconds,
+                statementHits.get(),
+                statementMisses.get());
+    }
+
+    /**
+     * The connection handed to one borrower. Closing it returns the
+     * connection to the pool once; after that every call on it fails.
+     */
+    private final class Handle implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final Connection proxy;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Handle(PooledConnection pooled) {
+            this.pooled = pooled;
+            this.proxy = (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (closed.compareAndSet(false, true)) {
+                        release(pooled);
+                    }
+                    return null; // Closing twice is a no-op
+                case "isClosed":
+                    return closed.get() || pooled.raw.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    if (closed.get()) {
+                        throw new SQLException("Connection has already been returned to the pool");
+                    }
+                    String key = method.getName().equals("prepareStatement") ? cacheKey(args) : null;
+                    if (key != null) {
+                        return pooled.prepare(this, key, method, args);
+                    }
+                    return invokeOn(pooled.raw, method, args);
+            }
+        }
+    }
+
+    /**
+     * A connection owned by the pool, with its cache of open statements.
+     */
+    private final class PooledConnection {
+        private final Connection raw;
+        private volatile long lastReturnedMillis = System.currentTimeMillis();
+
+        // Only touched by the borrower, so it needs no lock; closing the connection closes them all
+        private final Map<String, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= STATEMENT_CACHE_SIZE) {
+                    return false;
+                }
+                eldest.getValue().evict();
+                return true;
+            }
+        };
+
+        private PooledConnection(Connection raw) {
+            this.raw = raw;
+        }
+
+        /**
+         * Hands out the cached statement for the SQL if it is free, and
+         * otherwise prepares a new one, which is cached if there was none.
+         *
+         * @param owner  The handle the statement is prepared on.
+         * @param key    The cache key of the SQL and its options.
+         * @param method The prepareStatement method called.
+         * @param args   Its arguments.
+         * @return The statement.
+         * @throws Throwable If the statement cannot be prepared.
+         */
+        private Object prepare(Handle owner, String key, Method method, Object[] args) throws Throwable {
+            CachedStatement cached = statements.get(key);
+            if (cached != null && cached.holder == null) {
+                statementHits.incrementAndGet();
+                return cached.checkOut(owner);
+            }
+            statementMisses.incrementAndGet();
+            PreparedStatement statement = (PreparedStatement) invokeOn(raw, method, args);
+            if (cached != null) {
+                return statement; // The same SQL is open twice at once; this one closes as usual
+            }
+            cached = new CachedStatement(key, statement);
+            statements.put(key, cached);
+            return cached.checkOut(owner);
+        }
+
+        /**
+         * Frees the cached statements a borrower left open, so the next one
+         * can use them. The old handles to them stop working.
+         */
+        private void freeStatements() {
+            for (CachedStatement cached : statements.values().toArray(new CachedStatement[0])) {
+                if (cached.holder != null) {
+                    cached.checkIn();
+                }
+            }
+        }
+
+        /**
+         * A prepared statement kept open on its connection. Each prepare
+         * hands out a handle of its own; closing it only clears the statement
+         * and makes it free again. The statement is really closed once it has
+         * been evicted, or if a call on it failed and left it in doubt.
+         */
+        private final class CachedStatement {
+            private final String key;
+            private final PreparedStatement raw;
+            private volatile StatementHandle holder; // The handle using it, or null if it is free
+            private boolean evicted;
+
+            private CachedStatement(String key, PreparedStatement raw) {
+                this.key = key;
+                this.raw = raw;
+            }
+
+            private PreparedStatement checkOut(Handle owner) {
+                holder = new StatementHandle(this, owner);
+                return holder.proxy;
+            }
+
+            private void checkIn() {
+                holder = null;
+                if (evicted) {
+                    closeQuietly();
+                    return;
+                }
+                try {
+                    raw.clearParameters();
+                    raw.clearBatch();
+                } catch (SQLException e) {
+                    evicted = true; // Never hand out a statement that could not be cleared
+                    statements.remove(key);
+                    closeQuietly();
+                }
+            }
+
+            /**
+             * Drops the statement from the cache, closing it now if it is
+             * free and when it is closed otherwise.
+             */
+            private void evict() {
+                evicted = true;
+                if (holder == null) {
+                    closeQuietly();
+                }
+            }
+
+            private void closeQuietly() {
+                try {
+                    raw.close();
+                } catch (SQLException e) {
+                    System.out.println("SQL Error: " + e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * One use of a cached statement. It works until it is closed or its
+         * connection is returned, whichever comes first.
+         */
+        private final class StatementHandle implements InvocationHandler {
+            private final CachedStatement cached;
+            private final Handle owner;
+            private final PreparedStatement proxy;
+            private final AtomicBoolean closed = new AtomicBoolean();
+
+            private StatementHandle(CachedStatement cached, Handle owner) {
+                this.cached = cached;
+                this.owner = owner;
+                this.proxy = (PreparedStatement) Proxy.newProxyInstance(
+                        PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, this);
+            }
+
+            private boolean isLive() {
+                return cached.holder == this && !owner.closed.get();
+            }
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close":
+                        if (closed.compareAndSet(false, true) && isLive()) {
+                            cached.checkIn();
+                        }
+                        return null;
+                    case "isClosed":
+                        return closed.get() || !isLive() || cached.raw.isClosed();
+                    case "getConnection":
+                        return owner.proxy;
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        if (closed.get() || !isLive()) {
+                            throw new SQLException("Statement has already been closed");
+                        }
+                        try {
+                            return invokeOn(cached.raw, method, args);
+                        } catch (SQLException e) {
+                            if (!cached.evicted) {
+                                cached.evicted = true; // Never hand out a statement a failure may have left half done
+                                statements.remove(cached.key);
+                            }
+                            throw e;
+                        }
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the statement cache key for the arguments of a prepareStatement
+     * call. Only the overloads taking the SQL alone, with a generated keys
+     * flag, or with a result set type and concurrency are cached.
+     *
+     * @param args The arguments of the call.
+     * @return The key, or {@code null} if the statement is not cached.
+     */
+    private static String cacheKey(Object[] args) {
+        String sql = (String) args[0];
+        switch (args.length) {
+            case 1:
+                return sql;
+            case 2:
+                return args[1] instanceof Integer ? sql + "\0keys=" + args[1] : null;
+            case 3:
+                return sql + "\0type=" + args[1] + "," + args[2];
+            default:
+                return null;
+        }
+    }
+
+    private static Object invokeOn(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Stats
+     * An immutable snapshot of the pool metrics.
+     */
+    public static final class Stats {
+        private final int active;
+        private final int idle;
+        private final int maxSize;
+        private final long acquisitions;
+        private final long timeouts;
+        private final double averageWaitMillis;
+        private final double maxWaitMillis;
+        private final double acquisitionsPerSecond;
+        private final long statementHits;
+        private final long statementMisses;
+
+        private Stats(int active, int idle, int maxSize, long acquisitions, long timeouts,
+                      double averageWaitMillis, double maxWaitMillis, double acquisitionsPerSecond,
+                      long statementHits, long statementMisses) {
+            this.active = active;
+            this.idle = idle;
+            this.maxSize = maxSize;
+            this.acquisitions = acquisitions;
+            this.timeouts = timeouts;
+            this.averageWaitMillis = averageWaitMillis;
+            this.maxWaitMillis = maxWaitMillis;
+            this.acquisitionsPerSecond = acquisitionsPerSecond;
+            this.statementHits = statementHits;
+            this.statementMisses = statementMisses;
+        }
+
+        /** @return The number of connections currently borrowed. */
+        public int getActive() { return active; }
+
+        /** @return The number of open connections waiting to be borrowed. */
+        public int getIdle() { return idle; }
+
+        /** @return The maximum number of open connections. */
+        public int getMaxSize() { return maxSize; }
+
+        /** @return The number of successful borrows since the pool was created. */
+        public long getAcquisitions() { return acquisitions; }
+
+        /** @return The number of borrows that gave up waiting. */
+        public long getTimeouts() { return timeouts; }
+
+        /** @return The average time a borrower waited, in milliseconds. */
+        public double getAverageWaitMillis() { return averageWaitMillis; }
+
+        /** @return The longest time a borrower waited, in milliseconds. */
+        public double getMaxWaitMillis() { return maxWaitMillis; }
+
+        /** @return The average borrow rate since the pool was created. */
+        public double getAcquisitionsPerSecond() { return acquisitionsPerSecond; }
+
+        /** @return The number of prepares served by an open cached statement. */
+        public long getStatementHits() { return statementHits; }
+
+        /** @return The number of prepares that had to prepare a new statement. */
+        public long getStatementMisses() { return statementMisses; }
+
+        /** @return The fraction of prepares served from the statement cache. */
+        public double getStatementHitRate() {
+            long prepares = statementHits + statementMisses;
+            return prepares == 0 ? 0 : (double) statementHits / prepares;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("active=%d idle=%d max=%d acquisitions=%d timeouts=%d avgWaitMs=%.3f maxWaitMs=%.3f acquisitionsPerSec=%.1f "
+                            + "statementHits=%d statementMisses=%d statementHitRate=%.3f",
+                    active, idle, maxSize, acquisitions, timeouts, averageWaitMillis, maxWaitMillis, acquisitionsPerSecond,
+                    statementHits, statementMisses, getStatementHitRate());
+        }
+    }
+}
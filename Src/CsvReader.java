@@ -0,0 +1,237 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * CsvReader
+ * The CsvReader class streams comma separated records from an input stream one
+ * record at a time, so files of any size are read in constant memory. It follows
+ * RFC 4180 quoting, which lets a quoted field contain commas, doubled quotes and
+ * line breaks. Each field is decoded as UTF-8, falling back to Windows-1252 for
+ * files saved by tools that do not write UTF-8.
+ */
+public class CsvReader implements CsvSource {
+    /** Fields longer than this are cut short and flagged instead of growing without bound. */
+    public static final int MAX_FIELD_BYTES = 64 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Charset FALLBACK_CHARSET = Charset.forName("windows-1252");
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int bufferLength;
+    private int bufferPosition;
+    private long bytesConsumed;
+
+    private byte[] fieldBytes = new byte[256];
+    private int fieldLength;
+    private boolean fieldHasHighBytes;
+    private final List<String> fields = new ArrayList<>();
+    private boolean truncated;
+    private long lineNumber;
+    private long recordLineNumber;
+    private final CharsetDecoder utf8Decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+
+    /**
+     * Creates a reader over the given stream. The stream is buffered internally.
+     *
+     * @param in The stream to read records from.
+     */
+    public CsvReader(InputStream in) {
+        this(in, 0, 1);
+    }
+
+    /**
+     * Creates a reader over a stream that has already been positioned part way
+     * through a file, so offsets and line numbers continue from that point.
+     *
+     * @param in              The stream to read records from.
+     * @param startOffset     The byte offset of the stream's first byte in the file.
+     * @param startLineNumber The line number of the stream's first line in the file.
+     */
+    public CsvReader(InputStream in, long startOffset, long startLineNumber) {
+        this.in = in;
+        this.bytesConsumed = startOffset;
+        this.lineNumber = startLineNumber;
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return True if a record was read, false at the end of the input.
+     * @throws IOException If the input cannot be read.
+     */
+    @Override
+    public boolean next() throws IOException {
+        fields.clear();
+        truncated = false;
+        recordLineNumber = lineNumber;
+        resetField();
+
+        int b = read();
+        if (b < 0) {
+            return false;
+        }
+
+        boolean inQuotes = false;
+        boolean fieldStart = true;
+        while (b >= 0) {
+            if (inQuotes) {
+                if (b == '"') {
+                    int peek = read();
+                    if (peek == '"') {
+                        append(b); // Doubled quote inside a quoted field
+                    } else {
+                        inQuotes = false;
+                        b = peek;
+                        continue;
+                    }
+                } else {
+                    if (b == '\n') {
+                        lineNumber++;
+                    }
+                    append(b);
+                }
+            } else if (b == '"' && fieldStart) {
+                inQuotes = true;
+            } else if (b == ',') {
+                endField();
+                fieldStart = true;
+                b = read();
+                continue;
+            } else if (b == '\n') {
+                lineNumber++;
+                break;
+            } else if (b != '\r') {
+                append(b);
+            }
+            fieldStart = false;
+            b = read();
+        }
+        endField();
+        return true;
+    }
+
+    /**
+     * Gets the number of fields in the current record.
+     *
+     * @return The field count.
+     */
+    @Override
+    public int getFieldCount() { return fields.size(); }
+
+    /**
+     * Gets a field of the current record.
+     *
+     * @param index The zero based field index.
+     * @return The decoded field, without surrounding quotes.
+     */
+    @Override
+    public String getField(int index) { return fields.get(index); }
+
+    /**
+     * Tells whether a field of the current record was longer than {@link #MAX_FIELD_BYTES}.
+     *
+     * @return True if the current record was cut short.
+     */
+    @Override
+    public boolean isTruncated() { return truncated; }
+
+    /**
+     * Gets the line on which the current record started.
+     *
+     * @return The one based line number.
+     */
+    @Override
+    public long getLineNumber() { return recordLineNumber; }
+
+    /**
+     * Gets the byte offset just past the current record, which is where the
+     * next record starts.
+     *
+     * @return The byte offset in the file.
+     */
+    @Override
+    public long getByteOffset() { return bytesConsumed; }
+
+    @Override
+    public long getNextLineNumber() { return lineNumber; }
+
+    /**
+     * Reads the next byte of input.
+     *
+     * @return The byte, or -1 at the end of the input.
+     * @throws IOException If the input cannot be read.
+     */
+    private int read() throws IOException {
+        if (bufferPosition == bufferLength) {
+            bufferLength = in.read(buffer, 0, BUFFER_SIZE);
+            bufferPosition = 0;
+            if (bufferLength <= 0) {
+                bufferLength = 0;
+                return -1;
+            }
+        }
+        bytesConsumed++;
+        return buffer[bufferPosition++] & 0xFF;
+    }
+
+    private void resetField() {
+        fieldLength = 0;
+        fieldHasHighBytes = false;
+    }
+
+    private void append(int b) {
+        if (fieldLength == MAX_FIELD_BYTES) {
+            truncated = true;
+            return;
+        }
+        if (fieldLength == fieldBytes.length) {
+            fieldBytes = Arrays.copyOf(fieldBytes, Math.min(fieldBytes.length * 2, MAX_FIELD_BYTES));
+        }
+        fieldBytes[fieldLength++] = (byte) b;
+        fieldHasHighBytes |= b >= 0x80;
+    }
+
+    private void endField() {
+        fields.add(decode(fieldBytes, fieldLength, fieldHasHighBytes));
+        resetField();
+    }
+
+    /**
+     * Decodes the bytes of one field.
+     *
+     * @param bytes     The field bytes.
+     * @param length    The number of bytes in use.
+     * @param highBytes Whether any byte is outside the ASCII range.
+     * @return The decoded field.
+     */
+    private String decode(byte[] bytes, int length, boolean highBytes) {
+        if (!highBytes) {
+            return new String(bytes, 0, length, StandardCharsets.ISO_8859_1); // Plain ASCII
+        }
+        try {
+            CharBuffer chars = utf8Decoder.reset().decode(ByteBuffer.wrap(bytes, 0, length));
+            return chars.toString();
+        } catch (CharacterCodingException e) {
+            return new String(bytes, 0, length, FALLBACK_CHARSET);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
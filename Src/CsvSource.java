@@ -0,0 +1,64 @@
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * CsvSource
+ * The CsvSource interface is a cursor over the records of a comma separated
+ * file, read in file order. {@link CsvReader} streams them on the calling
+ * thread; {@link ParallelCsvReader} parses large files on several threads.
+ */
+public interface CsvSource extends Closeable {
+    /**
+     * Moves to the next record.
+     *
+     * @return True if a record was read, false at the end of the input.
+     * @throws IOException If the input cannot be read.
+     */
+    boolean next() throws IOException;
+
+    /**
+     * Gets the number of fields in the current record.
+     *
+     * @return The field count.
+     */
+    int getFieldCount();
+
+    /**
+     * Gets a field of the current record.
+     *
+     * @param index The zero based field index.
+     * @return The decoded field, without surrounding quotes.
+     */
+    String getField(int index);
+
+    /**
+     * Tells whether a field of the current record was longer than {@link CsvReader#MAX_FIELD_BYTES}.
+     *
+     * @return True if the current record was cut short.
+     */
+    boolean isTruncated();
+
+    /**
+     * Gets the line on which the current record started.
+     *
+     * @return The one based line number.
+     */
+    long getLineNumber();
+
+    /**
+     * Gets the byte offset just past the current record, which is where the
+     * next record starts.
+     *
+     * @return The byte offset in the file.
+     */
+    long getByteOffset();
+
+    /**
+     * Gets the line on which the next record starts, which together with
+     * {@link #getByteOffset()} is where reading can pick up again later.
+     *
+     * @return The one based line number.
+     */
+    long getNextLineNumber();
+}
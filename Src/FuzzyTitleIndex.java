@@ -0,0 +1,422 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * FuzzyTitleIndex
+ * The FuzzyTitleIndex class finds titles that are spelled almost like a query,
+ * so a typo such as "Hobit" still finds "The Hobbit". Every distinct folded
+ * title is broken into trigrams (runs of three characters), and each trigram
+ * maps to the titles that contain it. Two strings within a small edit distance
+ * share most of their trigrams, so only titles that share enough of them with
+ * the query are compared with it letter by letter: first the whole title, and
+ * if that is too far, each run of as many title words as the query has, so a
+ * misspelled word or two still finds a longer title.
+ *
+ * To keep a lookup fast on a large catalogue, trigrams found in few titles are
+ * read first and reading stops after a fixed budget; only the best sharing
+ * titles are then measured, with an edit distance that gives up as soon as it
+ * passes the allowed number of typos.
+ */
+public class FuzzyTitleIndex {
+    private static final int MAX_POSTINGS_SCANNED = 250_000;
+    private static final int MAX_CANDIDATES = 2_000;
+
+    private Map<String, Integer> idsByTitle = new HashMap<>();
+    private List<Entry> entries = new ArrayList<>();
+    private ArrayDeque<Integer> freeIds = new ArrayDeque<>();
+    private Map<String, IntList> trigrams = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private boolean stale = true;
+    private long version;
+
+    /**
+     * Adds a book under its title.
+     *
+     * @param barcode The barcode of the book.
+     * @param title   The title of the book.
+     */
+    public void add(int barcode, String title) {
+        if (title == null || title.isBlank()) {
+            return;
+        }
+        String folded = TextNormalizer.fold(title);
+        lock.writeLock().lock();
+        try {
+            version++;
+            Integer id = idsByTitle.get(folded);
+            Entry entry;
+            if (id == null) {
+                id = freeIds.isEmpty() ? entries.size() : freeIds.poll();
+                entry = new Entry(title, folded);
+                if (id == entries.size()) {
+                    entries.add(entry);
+                } else {
+                    entries.set(id, entry);
+                }
+                idsByTitle.put(folded, id);
+                for (String trigram : trigramsOf(folded)) {
+                    trigrams.computeIfAbsent(trigram, key -> new IntList()).add(id);
+                }
+            } else {
+                entry = entries.get(id);
+            }
+            entry.barcodes.add(barcode);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drops a book, and its title once no book has it.
+     *
+     * @param barcode The barcode of the book.
+     * @param title   The title the book had.
+     */
+    public void remove(int barcode, String title) {
+        if (title == null) {
+            return;
+        }
+        String folded = TextNormalizer.fold(title);
+        lock.writeLock().lock();
+        try {
+            version++;
+            Integer id = idsByTitle.get(folded);
+            if (id == null) {
+                return;
+            }
+            Entry entry = entries.get(id);
+            entry.barcodes.remove(barcode);
+            if (entry.barcodes.isEmpty()) {
+                idsByTitle.remove(folded);
+                for (String trigram : trigramsOf(folded)) {
+                    IntList list = trigrams.get(trigram);
+                    if (list != null && list.remove(id) && list.isEmpty()) {
+                        trigrams.remove(trigram);
+                    }
+                }
+                entries.set(id, null);
+                freeIds.push(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets a number that changes whenever the index is changed. Take it before
+     * reading the books for {@link #replaceWith(FuzzyTitleIndex, long)}.
+     *
+     * @return The current version.
+     */
+    public long getVersion() {
+        lock.readLock().lock();
+        try {
+            return version;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Takes over the contents of an index built separately from every book. If
+     * this index was changed while the books were being read, the new contents
+     * may miss that change, so the index stays marked stale.
+     *
+     * @param built       The freshly built index, which must not be used afterwards.
+     * @param readVersion The version taken before the books were read.
+     */
+    public void replaceWith(FuzzyTitleIndex built, long readVersion) {
+        lock.writeLock().lock();
+        try {
+            boolean changedDuringRead = version != readVersion;
+            idsByTitle = built.idsByTitle;
+            entries = built.entries;
+            freeIds = built.freeIds;
+            trigrams = built.trigrams;
+            stale = changedDuringRead;
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marks the index as out of date, for changes that do not say which books
+     * they touched, such as a bulk import.
+     */
+    public void markStale() {
+        lock.writeLock().lock();
+        try {
+            stale = true;
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Tells whether the index needs rebuilding before use.
+     *
+     * @return True if the index has never been built or was marked stale.
+     */
+    public boolean isStale() {
+        lock.readLock().lock();
+        try {
+            return stale;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the titles within a few typos of the query, or with a run of
+     * words within a few typos of it, ignoring case and accents. One typo is
+     * allowed for queries of up to 4 letters, two up to 8 letters, and three
+     * beyond that.
+     *
+     * @param query The title, or words of it, as typed.
+     * @param limit The maximum number of titles to return.
+     * @return Up to {@code limit} matches, closest first, whole titles before
+     *         partial ones, then alphabetically.
+     */
+    public List<Match> closeTo(String query, int limit) {
+        String folded = TextNormalizer.fold(query);
+        List<Match> matches = new ArrayList<>();
+        if (folded.isEmpty() || limit <= 0) {
+            return matches;
+        }
+        int maxDistance = folded.length() <= 4 ? 1 : folded.length() <= 8 ? 2 : 3;
+        lock.readLock().lock();
+        try {
+            List<IntList> lists = new ArrayList<>();
+            for (String trigram : trigramsOf(folded)) {
+                IntList list = trigrams.get(trigram);
+                lists.add(list == null ? new IntList() : list);
+            }
+            lists.sort(Comparator.comparingInt(IntList::size));
+
+            // Count shared trigrams, rarest first, within the scan budget. A
+            // title within maxDistance edits misses at most 3 trigrams per edit,
+            // so it is in at least one of the first 3 * maxDistance + 1 lists:
+            // when those fit in the budget no such title can be missed.
+            IntHashMap<int[]> shared = new IntHashMap<>();
+            int read = 0;
+            int scanned = 0;
+            for (IntList list : lists) {
+                if (read > 0 && scanned + list.size() > MAX_POSTINGS_SCANNED) {
+                    break;
+                }
+                for (int i = 0; i < list.size(); i++) {
+                    int id = list.get(i);
+                    int[] count = shared.get(id);
+                    if (count == null) {
+                        shared.put(id, new int[] {1});
+                    } else {
+                        count[0]++;
+                    }
+                }
+                scanned += list.size();
+                read++;
+            }
+
+            int required = Math.max(1, read - 3 * maxDistance);
+            List<int[]> candidates = new ArrayList<>();
+            shared.forEach((id, count) -> {
+                if (count[0] >= required) {
+                    candidates.add(new int[] {id, count[0]});
+                }
+            });
+            candidates.sort((a, b) -> Integer.compare(b[1], a[1]));
+
+            for (int[] candidate : candidates.subList(0, Math.min(MAX_CANDIDATES, candidates.size()))) {
+                Entry entry = entries.get(candidate[0]);
+                int distance = editDistance(folded, entry.folded, maxDistance);
+                boolean partial = false;
+                if (distance > maxDistance) {
+                    distance = wordsDistance(folded, entry.folded, maxDistance);
+                    partial = true;
+                }
+                if (distance <= maxDistance) {
+                    matches.add(new Match(entry.title, distance, partial, entry.barcodes.toArray()));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        matches.sort(Comparator.comparingInt(Match::getDistance).thenComparing(Match::isPartial)
+                .thenComparing(Match::getTitle));
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    /**
+     * Gets the number of distinct titles in the index.
+     *
+     * @return The number of titles.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return idsByTitle.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the distinct trigrams of folded text, padded with a space at each
+     * end the way every word inside a title is, so a query shares the
+     * trigrams of a word it matches wherever the word is in the title.
+     */
+    private static Set<String> trigramsOf(String folded) {
+        String padded = " " + folded + " ";
+        Set<String> result = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            result.add(padded.substring(i, i + 3));
+        }
+        return result;
+    }
+
+    /**
+     * Computes the smallest Levenshtein distance between a query and any run
+     * of consecutive title words with as many words as the query.
+     *
+     * @param query The folded query.
+     * @param title The folded title.
+     * @param limit The largest distance of interest.
+     * @return The distance, or {@code limit + 1} if every run is further than {@code limit}.
+     */
+    static int wordsDistance(String query, String title, int limit) {
+        int queryWords = 1;
+        for (int i = 0; i < query.length(); i++) {
+            if (query.charAt(i) == ' ') {
+                queryWords++;
+            }
+        }
+        IntList starts = new IntList(); // Where each word starts; one past the end closes the last
+        starts.add(0);
+        for (int i = 0; i < title.length(); i++) {
+            if (title.charAt(i) == ' ') {
+                starts.add(i + 1);
+            }
+        }
+        starts.add(title.length() + 1);
+        int best = limit + 1;
+        for (int first = 0; first + queryWords < starts.size() && best > 0; first++) {
+            String run = title.substring(starts.get(first), starts.get(first + queryWords) - 1);
+            best = Math.min(best, editDistance(query, run, limit));
+        }
+        return best;
+    }
+
+    /**
+     * Computes the Levenshtein distance between two strings, giving up once it
+     * is certain to exceed a limit.
+     *
+     * @param a     The first string.
+     * @param b     The second string.
+     * @param limit The largest distance of interest.
+     * @return The distance, or {@code limit + 1} if it is larger than {@code limit}.
+     */
+    static int editDistance(String a, String b, int limit) {
+        if (Math.abs(a.length() - b.length()) > limit) {
+            return limit + 1;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int substitute = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitute, Math.min(previous[j], current[j - 1]) + 1);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > limit) {
+                return limit + 1; // Every path through this row already costs too much
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length()], limit + 1);
+    }
+
+    /**
+     * A title close to the query and the books that have it.
+     */
+    public static final class Match {
+        private final String title;
+        private final int distance;
+        private final boolean partial;
+        private final int[] barcodes;
+
+        private Match(String title, int distance, boolean partial, int[] barcodes) {
+            this.title = title;
+            this.distance = distance;
+            this.partial = partial;
+            this.barcodes = barcodes;
+        }
+
+        /**
+         * Gets the title as first seen.
+         *
+         * @return The title.
+         */
+        public String getTitle() {
+            return title;
+        }
+
+        /**
+         * Gets the number of single letter edits between the title, or the run
+         * of its words that matched, and the query.
+         *
+         * @return The edit distance, 0 when they differ only in case or accents.
+         */
+        public int getDistance() {
+            return distance;
+        }
+
+        /**
+         * Tells whether only a run of the title's words matched the query.
+         *
+         * @return True for a partial match, false if the whole title matched.
+         */
+        public boolean isPartial() {
+            return partial;
+        }
+
+        /**
+         * Gets the barcodes of the books with this title.
+         *
+         * @return The barcodes in ascending order.
+         */
+        public int[] getBarcodes() {
+            return barcodes;
+        }
+    }
+
+    /**
+     * A distinct title: as first seen, folded, and the books that have it.
+     */
+    private static final class Entry {
+        private final String title;
+        private final String folded;
+        private final IntList barcodes = new IntList();
+
+        private Entry(String title, String folded) {
+            this.title = title;
+            this.folded = folded;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * ImportResult
+ * The ImportResult class summarizes a bulk import of books from a file: how many
+ * records were read, inserted, skipped and rejected, how long the import took,
+ * and a readable summary of the problems that were found. An import that
+ * resumed from the checkpoint of an interrupted one counts the whole file,
+ * including the part the interrupted import got through.
+ */
+public class ImportResult {
+    private final long rowsRead;
+    private final long rowsInserted;
+    private final long rowsSkipped;
+    private final long rowsRejected;
+    private final long validBooks;
+    private final long elapsedNanos;
+    private final String errorSummary;
+    private final boolean failed;
+    private final long resumedFromLine;
+    private final long resumedRowsRead;
+    private final long resumedRowsInserted;
+
+    /**
+     * Creates an import summary.
+     *
+     * @param rowsRead     The number of records read from the file, including skipped ones.
+     * @param rowsInserted The number of books added to the library.
+     * @param rowsSkipped  The number of records ignored on purpose, such as the header,
+     *                     blank lines and books that already exist.
+     * @param rowsRejected The number of records that failed validation.
+     * @param validBooks   The number of valid books in the file, including ones that already exist.
+     * @param elapsedNanos How long the import took.
+     * @param errorSummary A readable summary of any errors, empty if there were none.
+     * @param failed       True if the import stopped early, for example because the
+     *                     file could not be read or the database failed.
+     * @param resumedFromLine     The line the import resumed from, or 0 if it read the whole file.
+     * @param resumedRowsRead     The records an interrupted import had already read.
+     * @param resumedRowsInserted The books an interrupted import had already added.
+     */
+    public ImportResult(long rowsRead, long rowsInserted, long rowsSkipped, long rowsRejected, long validBooks,
+                        long elapsedNanos, String errorSummary, boolean failed,
+                        long resumedFromLine, long resumedRowsRead, long resumedRowsInserted) {
+        this.rowsRead = rowsRead;
+        this.rowsInserted = rowsInserted;
+        this.rowsSkipped = rowsSkipped;
+        this.rowsRejected = rowsRejected;
+        this.validBooks = validBooks;
+        this.elapsedNanos = elapsedNanos;
+        this.errorSummary = errorSummary;
+        this.failed = failed;
+        this.resumedFromLine = resumedFromLine;
+        this.resumedRowsRead = resumedRowsRead;
+        this.resumedRowsInserted = resumedRowsInserted;
+    }
+
+    /** @return The number of records read from the file. */
+    public long getRowsRead() { return rowsRead; }
+
+    /** @return The number of books added to the library. */
+    public long getRowsInserted() { return rowsInserted; }
+
+    /** @return The number of records ignored on purpose. */
+    public long getRowsSkipped() { return rowsSkipped; }
+
+    /** @return The number of records that failed validation. */
+    public long getRowsRejected() { return rowsRejected; }
+
+    /** @return The number of valid books in the file, including ones that already exist. */
+    public long getValidBooks() { return validBooks; }
+
+    /**
+     * Tells whether the file was read to the end without finding a single
+     * valid book, as with a file in the wrong format.
+     *
+     * @return True if the import finished and found no valid books.
+     */
+    public boolean hasNoValidBooks() {
+        return !failed && validBooks == 0;
+    }
+
+    /** @return How long the import took, in milliseconds. */
+    public long getElapsedMillis() { return elapsedNanos / 1_000_000; }
+
+    /**
+     * Gets the import throughput.
+     *
+     * @return The number of records read per second, by this import alone if it resumed.
+     */
+    public double getRowsPerSecond() {
+        return elapsedNanos <= 0 ? 0 : (rowsRead - resumedRowsRead) * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    /** @return A readable summary of any errors, empty if there were none. */
+    public String getErrorSummary() { return errorSummary; }
+
+    /** @return True if the import stopped early rather than reading the whole file. */
+    public boolean isFailed() { return failed; }
+
+    /** @return The line the import resumed from, or 0 if it read the whole file. */
+    public long getResumedFromLine() { return resumedFromLine; }
+
+    /** @return The books an interrupted import had already added, included in the inserted count. */
+    public long getResumedRowsInserted() { return resumedRowsInserted; }
+
+    @Override
+    public String toString() {
+        return String.format("read=%d inserted=%d skipped=%d rejected=%d elapsedMs=%d rowsPerSec=%.1f%s",
+                rowsRead, rowsInserted, rowsSkipped, rowsRejected, getElapsedMillis(), getRowsPerSecond(),
+                resumedFromLine > 0 ? " resumedFromLine=" + resumedFromLine : "");
+    }
+}
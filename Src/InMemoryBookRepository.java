@@ -0,0 +1,321 @@
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * InMemoryBookRepository
+ * The InMemoryBookRepository class keeps every book on the heap, for a small
+ * branch that runs without a database and for tests and benchmarks. The books
+ * live in a {@link ColumnarBookStore}, which holds them as columns of ints
+ * rather than as Book objects, so large catalogues fit in a fraction of the
+ * heap. The store finds books by barcode, keeps them in (title, barcode)
+ * order for paging and counts the checked out ones from its status bitset.
+ *
+ * Reads share a read lock and changes take the write lock, so every operation
+ * is atomic. Books handed out are copies, so they stay as they were read.
+ * Titles are ordered by Unicode code point, which may differ from the
+ * database's collation for case and accents.
+ */
+public class InMemoryBookRepository implements BookRepository {
+    private static final int FOR_EACH_CHUNK = 1024;
+
+    private final ColumnarBookStore store = new ColumnarBookStore();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Override
+    public void insert(Book book) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            if (store.rowOf(book.getId()) >= 0) {
+                throw new SQLIntegrityConstraintViolationException("Duplicate entry '" + book.getId() + "' for key 'books.PRIMARY'");
+            }
+            store.add(book.getId(), book.getTitle(), book.getAuthor(), book.getStatus(), book.getDueDate());
+        } catch (IllegalArgumentException e) {
+            throw badDueDate(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int insertAll(int[] barcodes, String[] titles, String[] authors, int count) {
+        int inserted = 0;
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < count; i++) {
+                if (store.rowOf(barcodes[i]) < 0) {
+                    store.add(barcodes[i], titles[i], authors[i], false, null);
+                    inserted++;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return inserted;
+    }
+
+    @Override
+    public Book findByBarcode(int barcode) {
+        lock.readLock().lock();
+        try {
+            int row = store.rowOf(barcode);
+            return row < 0 ? null : store.bookAt(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Book delete(int barcode) {
+        lock.writeLock().lock();
+        try {
+            return remove(barcode);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public StatusChange toggleStatus(int barcode, String dueDate) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            int row = store.rowOf(barcode);
+            if (row < 0) {
+                return null;
+            }
+            boolean nowCheckedOut = !store.isCheckedOut(row);
+            String newDueDate = nowCheckedOut ? dueDate : null;
+            String previousDueDate = store.dueDateOf(row);
+            store.setStatus(row, nowCheckedOut, newDueDate);
+            return new StatusChange(barcode, nowCheckedOut, newDueDate, previousDueDate);
+        } catch (IllegalArgumentException e) {
+            throw badDueDate(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Book[] setStatusAll(int[] distinct, boolean checkedOut, String dueDate) throws SQLException {
+        Book[] before = new Book[distinct.length];
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < distinct.length; i++) {
+                int row = store.rowOf(distinct[i]);
+                if (row >= 0) {
+                    before[i] = store.bookAt(row);
+                    if (store.isCheckedOut(row) != checkedOut) {
+                        store.setStatus(row, checkedOut, dueDate); // One date for every book, so a bad one fails the first change
+                    }
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            throw badDueDate(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return before;
+    }
+
+    @Override
+    public Book[] deleteAll(int[] distinct) {
+        Book[] removed = new Book[distinct.length];
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < distinct.length; i++) {
+                removed[i] = remove(distinct[i]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return removed;
+    }
+
+    @Override
+    public BookPage listPage(String pageToken, int pageSize) {
+        List<Book> pageBooks = new ArrayList<>(pageSize);
+        boolean more;
+        lockOrdered();
+        try {
+            int position = pageToken == null ? 0
+                    : store.positionAfter(BookPage.decodeTitle(pageToken), BookPage.decodeBarcode(pageToken));
+            int end = Math.min(position + pageSize, store.size());
+            for (int i = position; i < end; i++) {
+                pageBooks.add(store.bookAt(store.rowOf(store.barcodeAt(i))));
+            }
+            more = end < store.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        String nextPageToken = null;
+        if (more && !pageBooks.isEmpty()) {
+            Book last = pageBooks.get(pageBooks.size() - 1);
+            nextPageToken = BookPage.encodeToken(titleKey(last.getTitle()), last.getId());
+        }
+        return new BookPage(pageBooks, nextPageToken);
+    }
+
+    /**
+     * Reads the book at the offset straight from the title order.
+     */
+    @Override
+    public String getPageToken(int offset) {
+        lockOrdered();
+        try {
+            if (offset > store.size()) {
+                return null;
+            }
+            int barcode = store.barcodeAt(offset - 1);
+            return BookPage.encodeToken(titleKey(store.titleOf(store.rowOf(barcode))), barcode);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads the totals from the store's counters; only checked out books are
+     * looked at to count the overdue ones.
+     */
+    @Override
+    public LibraryStats.Snapshot count(LocalDate today) {
+        lock.readLock().lock();
+        try {
+            return new LibraryStats.Snapshot(store.size(), store.checkedOutCount(), store.overdueCount(today));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Copies the barcodes out and runs the action outside the lock.
+     */
+    @Override
+    public void forEachBarcode(IntConsumer action) {
+        int[] barcodes;
+        lock.readLock().lock();
+        try {
+            barcodes = new int[store.size()];
+            int[] count = {0};
+            store.forEach(book -> barcodes[count[0]++] = book.getId());
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (int barcode : barcodes) {
+            action.accept(barcode);
+        }
+    }
+
+    /**
+     * The books are lost when the program exits.
+     */
+    @Override
+    public boolean isDurable() { return false; }
+
+    /**
+     * Copies the books out a chunk at a time and runs the action outside the
+     * lock, so it may change the repository. Books changed or removed during
+     * the walk are seen as they are when their chunk is reached.
+     */
+    @Override
+    public void forEach(Consumer<Book> action) {
+        int[] barcodes;
+        lock.readLock().lock();
+        try {
+            barcodes = new int[store.size()];
+            int[] count = {0};
+            store.forEach(book -> barcodes[count[0]++] = book.getId());
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Book> chunk = new ArrayList<>(FOR_EACH_CHUNK);
+        for (int from = 0; from < barcodes.length; from += FOR_EACH_CHUNK) {
+            lock.readLock().lock();
+            try {
+                for (int i = from; i < Math.min(from + FOR_EACH_CHUNK, barcodes.length); i++) {
+                    int row = store.rowOf(barcodes[i]);
+                    if (row >= 0) {
+                        chunk.add(store.bookAt(row));
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            chunk.forEach(action);
+            chunk.clear();
+        }
+    }
+
+    /**
+     * Estimates the heap taken by the books.
+     *
+     * @return The estimate in bytes.
+     */
+    public long getHeapBytes() {
+        lock.readLock().lock();
+        try {
+            return store.getHeapBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Takes the read lock with the title order up to date. If a change has
+     * been made since it was last brought up to date, that is done under the
+     * write lock, which is then downgraded. Release with
+     * {@code lock.readLock().unlock()}.
+     */
+    private void lockOrdered() {
+        lock.readLock().lock();
+        if (store.isOrdered()) {
+            return;
+        }
+        lock.readLock().unlock();
+        lock.writeLock().lock();
+        try {
+            store.order();
+            lock.readLock().lock();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a book. Call with the write lock held.
+     *
+     * @param barcode The barcode of the book.
+     * @return The removed book, or {@code null} if there was none.
+     */
+    private Book remove(int barcode) {
+        int row = store.rowOf(barcode);
+        if (row < 0) {
+            return null;
+        }
+        Book book = store.bookAt(row);
+        store.remove(row);
+        return book;
+    }
+
+    /**
+     * Reports a due date the store cannot read as a SQLException, the way
+     * the database rejects it.
+     *
+     * @param e The store's exception.
+     * @return The exception to throw.
+     */
+    private static SQLException badDueDate(IllegalArgumentException e) {
+        return new SQLException("Due date " + e.getMessage(), e);
+    }
+
+    private static String titleKey(String title) {
+        return title == null ? "" : title;
+    }
+}
@@ -0,0 +1,127 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class InMemoryLibraryTest {
+
+    @Test
+    void testAddAndRemoveBook() {
+        Library library = new Library(new InMemoryBookRepository());
+        Book book = new Book(123467890, "Test Book", "Test Author");
+        library.addBook(book);
+        assertEquals("Test Book", library.getBookByBarcode(123467890).getTitle());
+        assertTrue(library.removeBookById(123467890));
+        assertNull(library.getBookByBarcode(123467890));
+        assertFalse(library.removeBookById(123467890));
+    }
+
+    @Test
+    void testCachedBookIsNotShared() {
+        Library library = new Library(new InMemoryBookRepository());
+        library.addBook(new Book(7, "Dune", "Frank Herbert"));
+        library.getBookByBarcode(7).setTitle("Changed"); // A cache hit, as addBook writes through
+        assertEquals("Dune", library.getBookByBarcode(7).getTitle());
+    }
+
+    @Test
+    void testToggleBookStatus() {
+        Library library = new Library(new InMemoryBookRepository());
+        library.addBook(new Book(1234567890, "Test Book", "Test Author"));
+
+        StatusChange out = library.toggleBookStatus(1234567890);
+        assertTrue(out.isCheckedOut());
+        assertNotNull(library.getBookByBarcode(1234567890).getDueDate());
+        assertEquals(1, library.getCheckedOutBooksCount());
+
+        StatusChange in = library.toggleBookStatus(1234567890);
+        assertFalse(in.isCheckedOut());
+        assertNull(library.getBookByBarcode(1234567890).getDueDate());
+        assertEquals(0, library.getCheckedOutBooksCount());
+        assertNull(library.toggleBookStatus(42));
+    }
+
+    @Test
+    void testCheckInLowersOverdueCount() {
+        Library library = new Library(new InMemoryBookRepository());
+        library.addBook(new Book(1, "Dune", "Frank Herbert", true, "2000-01-01"));
+        assertEquals(1, library.getStatistics().getOverdue());
+
+        StatusChange in = library.toggleBookStatus(1);
+        assertEquals("2000-01-01", in.getPreviousDueDate());
+        assertEquals(0, library.getStatistics().getCheckedOut());
+        assertEquals(0, library.getStatistics().getOverdue());
+    }
+
+    @Test
+    void testSearchByTitle() {
+        Library library = new Library(new InMemoryBookRepository());
+        library.addBook(new Book(1, "The Hobbit", "J. R. R. Tolkien"));
+        library.addBook(new Book(2, "The Hobbit", "Another Author"));
+        library.addBook(new Book(3, "Dune", "Frank Herbert"));
+
+        Map<String, List<Integer>> results = library.searchByTitle("the hobbit");
+        assertEquals(List.of(1, 2), results.get("exact"));
+        assertTrue(library.searchByTitle("The Hobit").get("close").contains(1));
+        assertTrue(library.searchByTitle("Hobit").get("close").contains(1)); // One misspelled word of the title
+        assertTrue(library.searchByTitle("hobit").get("close").contains(2));
+        assertFalse(library.searchByTitle("Hobit").get("close").contains(3));
+    }
+
+    @Test
+    void testBulkCheckOut() {
+        Library library = new Library(new InMemoryBookRepository());
+        library.addBook(new Book(1, "Dune", "Frank Herbert"));
+        library.addBook(new Book(2, "Emma", "Jane Austen"));
+
+        BulkResult result = library.checkOutAll(new int[] {1, 2, 3});
+        assertEquals(BulkResult.Outcome.CHANGED, result.getOutcome(0));
+        assertEquals(BulkResult.Outcome.CHANGED, result.getOutcome(1));
+        assertEquals(BulkResult.Outcome.NOT_FOUND, result.getOutcome(2));
+        assertEquals(2, library.getStatistics().getCheckedOut());
+    }
+
+    @Test
+    void testPagesFollowTitleOrder() {
+        Library library = new Library(new InMemoryBookRepository());
+        String[] titles = {"Emma", "Dune", "Beloved", "Dune", "Armada"};
+        for (int i = 0; i < titles.length; i++) {
+            library.addBook(new Book(10 - i, titles[i], "Author"));
+        }
+
+        BookPage first = library.listBooksPage(null, 2);
+        assertEquals("Armada", first.getBooks().get(0).getTitle());
+        assertEquals("Beloved", first.getBooks().get(1).getTitle());
+        BookPage second = library.listBooksPage(first.getNextPageToken(), 2);
+        assertEquals(7, second.getBooks().get(0).getId()); // Two Dunes, lower barcode first
+        assertEquals(9, second.getBooks().get(1).getId());
+        assertEquals(second.getNextPageToken(), library.getPageToken(4));
+        assertEquals("Emma", library.getBookByIndex(4).getTitle());
+        assertNull(library.getBookByIndex(5));
+    }
+
+    @Test
+    void testListenersSeeEachChange() {
+        Library library = new Library(new InMemoryBookRepository());
+        List<BookChangeEvent> events = new ArrayList<>();
+        library.addLibraryListener(events::add);
+
+        library.addBook(new Book(1, "Dune", "Frank Herbert"));
+        library.toggleBookStatus(1);
+        library.removeBookById(1);
+        library.removeBookById(1); // Nothing removed, nothing reported
+
+        assertEquals(3, events.size());
+        assertEquals(BookChangeEvent.Type.INSERTED, events.get(0).getType());
+        assertEquals(BookChangeEvent.Type.STATUS_CHANGED, events.get(1).getType());
+        assertTrue(events.get(1).isCheckedOut());
+        assertEquals(BookChangeEvent.Type.DELETED, events.get(2).getType());
+        assertEquals("Dune", events.get(2).getBook().getTitle());
+    }
+}
@@ -0,0 +1,129 @@
+import java.util.Arrays;
+
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * IntBitmap
+ * The IntBitmap class is a compressed set of primitive ints in the style of a
+ * roaring bitmap, used by the {@link BookImporter} to find repeated barcodes
+ * among tens of millions of books. The values are split by their high 16 bits
+ * into containers of up to 65536 values each. A sparse container is a sorted
+ * array of the low 16 bits, two bytes per value; once it holds more than 4096
+ * values it becomes a plain bitmap of 8 KB, one bit per possible value. Both
+ * answer a lookup without boxing a single Integer, and the whole set never
+ * takes more than about two bytes per value.
+ */
+public class IntBitmap {
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 65536 / 64;
+
+    private char[][] arrays = new char[0][]; // Sparse containers, by high bits
+    private int[] arraySizes = new int[0];
+    private long[][] bitmaps = new long[0][]; // Dense containers, by high bits
+    private long size;
+
+    /**
+     * Adds a value.
+     *
+     * @param value The value to add.
+     * @return True if the value was added, false if it was already there.
+     */
+    public boolean add(int value) {
+        int high = value >>> 16;
+        char low = (char) value;
+        if (high >= bitmaps.length) {
+            grow(high + 1);
+        }
+        long[] bitmap = bitmaps[high];
+        if (bitmap != null) {
+            long bit = 1L << low;
+            if ((bitmap[low >>> 6] & bit) != 0) {
+                return false;
+            }
+            bitmap[low >>> 6] |= bit;
+            size++;
+            return true;
+        }
+
+        char[] array = arrays[high];
+        int count = arraySizes[high];
+        int index;
+        if (count == 0 || array[count - 1] < low) {
+            index = count; // Barcodes often arrive in order
+        } else {
+            index = Arrays.binarySearch(array, 0, count, low);
+            if (index >= 0) {
+                return false;
+            }
+            index = -index - 1;
+        }
+        if (count == ARRAY_MAX) {
+            toBitmap(high);
+            return add(value);
+        }
+        if (array == null || count == array.length) {
+            array = arrays[high] = Arrays.copyOf(array == null ? new char[0] : array,
+                    Math.min(ARRAY_MAX, Math.max(4, count + (count >> 1))));
+        }
+        System.arraycopy(array, index, array, index + 1, count - index);
+        array[index] = low;
+        arraySizes[high] = count + 1;
+        size++;
+        return true;
+    }
+
+    /**
+     * Tells whether a value is in the set.
+     *
+     * @param value The value to look for.
+     * @return True if the value is in the set.
+     */
+    public boolean contains(int value) {
+        int high = value >>> 16;
+        if (high >= bitmaps.length) {
+            return false;
+        }
+        char low = (char) value;
+        long[] bitmap = bitmaps[high];
+        if (bitmap != null) {
+            return (bitmap[low >>> 6] & (1L << low)) != 0;
+        }
+        return arraySizes[high] > 0 && Arrays.binarySearch(arrays[high], 0, arraySizes[high], low) >= 0;
+    }
+
+    /**
+     * Gets the number of values in the set.
+     *
+     * @return The value count.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Makes room for containers up to a given number of high bits.
+     *
+     * @param containers The number of containers needed.
+     */
+    private void grow(int containers) {
+        int capacity = Math.max(containers, Math.min(65536, bitmaps.length * 2));
+        arrays = Arrays.copyOf(arrays, capacity);
+        arraySizes = Arrays.copyOf(arraySizes, capacity);
+        bitmaps = Arrays.copyOf(bitmaps, capacity);
+    }
+
+    /**
+     * Turns a full sparse container into a bitmap.
+     *
+     * @param high The high bits of the container.
+     */
+    private void toBitmap(int high) {
+        long[] bitmap = new long[BITMAP_WORDS];
+        char[] array = arrays[high];
+        for (int i = 0; i < arraySizes[high]; i++) {
+            bitmap[array[i] >>> 6] |= 1L << array[i];
+        }
+        bitmaps[high] = bitmap;
+        arrays[high] = null;
+        arraySizes[high] = 0;
+    }
+}
@@ -0,0 +1,60 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class IntBitmapTest {
+
+    @Test
+    void testContainerBecomesBitmapPast4096Values() {
+        IntBitmap bitmap = new IntBitmap();
+        int base = 7 << 16;
+        // Every third value, added out of order so the sparse container has to insert in the middle
+        for (int i = 4095; i >= 0; i--) {
+            assertTrue(bitmap.add(base + 3 * i));
+        }
+        assertEquals(4096, bitmap.size());
+        assertFalse(bitmap.add(base + 3 * 100));
+
+        assertTrue(bitmap.add(base + 1)); // The 4097th value turns the container into a bitmap
+        assertEquals(4097, bitmap.size());
+        for (int i = 0; i < 4096; i++) {
+            assertTrue(bitmap.contains(base + 3 * i));
+            assertFalse(bitmap.contains(base + 3 * i + 2));
+        }
+        assertTrue(bitmap.contains(base + 1));
+        assertFalse(bitmap.add(base + 1));
+        assertFalse(bitmap.add(base + 3 * 4095));
+        assertEquals(4097, bitmap.size());
+
+        assertFalse(bitmap.contains(base - 1)); // Neighbouring containers stay empty
+        assertFalse(bitmap.contains(base + 65536));
+    }
+
+    @Test
+    void testMatchesHashSetAcrossWholeIntRange() {
+        IntBitmap bitmap = new IntBitmap();
+        Set<Integer> expected = new HashSet<>();
+        Random random = new Random(3);
+        for (int i = 0; i < 200_000; i++) {
+            // A few dense containers, plus values anywhere including negatives
+            int value = random.nextBoolean() ? random.nextInt(6 * 65536) : random.nextInt();
+            assertEquals(expected.add(value), bitmap.add(value));
+        }
+        assertEquals(expected.size(), bitmap.size());
+        for (int value : expected) {
+            assertTrue(bitmap.contains(value));
+        }
+        for (int i = 0; i < 200_000; i++) {
+            int value = random.nextInt();
+            assertEquals(expected.contains(value), bitmap.contains(value));
+        }
+        assertEquals(expected.add(Integer.MIN_VALUE), bitmap.add(Integer.MIN_VALUE));
+        assertTrue(bitmap.contains(Integer.MIN_VALUE));
+        assertEquals(expected.contains(Integer.MAX_VALUE), bitmap.contains(Integer.MAX_VALUE));
+    }
+}
@@ -0,0 +1,226 @@
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * IntHashMap
+ * The IntHashMap class maps primitive int keys, such as barcodes, to values.
+ * Keys live in a plain int array with open addressing and linear probing, so
+ * a lookup neither boxes the key nor follows a chain of entry objects.
+ *
+ * @param <V> The type of the values.
+ */
+public class IntHashMap<V> {
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private int[] keys;
+    private Object[] values; // null marks an empty slot
+    private int size;
+    private int mask;
+    private int resizeAt;
+
+    /**
+     * Creates an empty map.
+     */
+    public IntHashMap() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty map sized for the expected number of keys.
+     *
+     * @param expectedSize The number of keys the map should hold without growing.
+     */
+    public IntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * Gets the value of a key.
+     *
+     * @param key The key.
+     * @return The value, or {@code null} if the key is not in the map.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int i = hash(key) & mask;
+        Object value;
+        while ((value = values[i]) != null) {
+            if (keys[i] == key) {
+                return (V) value;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Tells whether a key is in the map.
+     *
+     * @param key The key.
+     * @return True if the map has a value for the key.
+     */
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Sets the value of a key.
+     *
+     * @param key   The key.
+     * @param value The value, which must not be {@code null}.
+     * @return The previous value, or {@code null} if the key was not in the map.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) {
+            throw new NullPointerException("IntHashMap values must not be null");
+        }
+        int i = hash(key) & mask;
+        Object existing;
+        while ((existing = values[i]) != null) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return (V) existing;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > resizeAt) {
+            rehash(values.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key The key.
+     * @return The removed value, or {@code null} if the key was not in the map.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int i = hash(key) & mask;
+        Object existing;
+        while ((existing = values[i]) != null) {
+            if (keys[i] == key) {
+                shiftBack(i);
+                size--;
+                return (V) existing;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the number of keys in the map.
+     *
+     * @return The size.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes every key.
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Passes every value to an action, in no particular order.
+     *
+     * @param action The action to run.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<? super V> action) {
+        for (Object value : values) {
+            if (value != null) {
+                action.accept((V) value);
+            }
+        }
+    }
+
+    /**
+     * Passes every key and its value to an action, in no particular order.
+     *
+     * @param action The action to run.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<? super V> action) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                action.accept(keys[i], (V) values[i]);
+            }
+        }
+    }
+
+    /**
+     * An action on a key and its value.
+     *
+     * @param <V> The type of the values.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        /**
+         * Runs the action.
+         *
+         * @param key   The key.
+         * @param value The value of the key.
+         */
+        void accept(int key, V value);
+    }
+
+    /**
+     * Fills the hole left by a removed entry by moving back later entries of
+     * the same probe run, so lookups never stop early at a hole.
+     *
+     * @param hole The slot that was emptied.
+     */
+    private void shiftBack(int hole) {
+        int i = (hole + 1) & mask;
+        while (values[i] != null) {
+            int home = hash(keys[i]) & mask;
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                hole = i;
+            }
+            i = (i + 1) & mask;
+        }
+        values[hole] = null;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int j = 0; j < oldValues.length; j++) {
+            if (oldValues[j] != null) {
+                int i = hash(oldKeys[j]) & mask;
+                while (values[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
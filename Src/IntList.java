@@ -0,0 +1,207 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * IntList
+ * The IntList class is a growable, sorted set of primitive ints, used for the
+ * barcode lists of the search indexes. Keeping the values sorted in one array
+ * makes membership a binary search and lets two lists be intersected in a
+ * single merge pass, without boxing a single Integer.
+ */
+public class IntList {
+    private static final int[] EMPTY = new int[0];
+
+    private int[] values;
+    private int size;
+
+    /**
+     * Creates an empty list.
+     */
+    public IntList() {
+        this.values = EMPTY;
+    }
+
+    private IntList(int[] values, int size) {
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * Adds a value, keeping the list sorted.
+     *
+     * @param value The value to add.
+     * @return True if the value was added, false if it was already there.
+     */
+    public boolean add(int value) {
+        int index;
+        if (size == 0 || values[size - 1] < value) {
+            index = size; // Appending in order is the common case
+        } else {
+            index = Arrays.binarySearch(values, 0, size, value);
+            if (index >= 0) {
+                return false;
+            }
+            index = -index - 1;
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.max(4, size + (size >> 1)));
+        }
+        System.arraycopy(values, index, values, index + 1, size - index);
+        values[index] = value;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes a value.
+     *
+     * @param value The value to remove.
+     * @return True if the value was removed, false if it was not there.
+     */
+    public boolean remove(int value) {
+        int index = Arrays.binarySearch(values, 0, size, value);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+        if (size < values.length >> 2 && values.length > 16) {
+            values = Arrays.copyOf(values, values.length >> 1); // Give back memory after bulk removals
+        }
+        return true;
+    }
+
+    /**
+     * Tells whether a value is in the list.
+     *
+     * @param value The value to look for.
+     * @return True if the value is in the list.
+     */
+    public boolean contains(int value) {
+        return Arrays.binarySearch(values, 0, size, value) >= 0;
+    }
+
+    /**
+     * Gets a value by position.
+     *
+     * @param index The zero based position.
+     * @return The value, the index-th smallest in the list.
+     */
+    public int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return values[index];
+    }
+
+    /**
+     * Gets the number of values in the list.
+     *
+     * @return The size.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Tells whether the list is empty.
+     *
+     * @return True if the list has no values.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the values that are in both this list and another.
+     *
+     * @param other The other list.
+     * @return A new list with the common values.
+     */
+    public IntList intersect(IntList other) {
+        int[] result = new int[Math.min(size, other.size)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            int a = values[i];
+            int b = other.values[j];
+            if (a == b) {
+                result[count++] = a;
+                i++;
+                j++;
+            } else if (a < b) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return new IntList(result, count);
+    }
+
+    /**
+     * Gets the values that are in this list, another, or both.
+     *
+     * @param other The other list.
+     * @return A new list with all values of both lists.
+     */
+    public IntList union(IntList other) {
+        int[] result = new int[size + other.size];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && values[i] < other.values[j])) {
+                result[count++] = values[i++];
+            } else if (i == size || other.values[j] < values[i]) {
+                result[count++] = other.values[j++];
+            } else {
+                result[count++] = values[i++];
+                j++;
+            }
+        }
+        return new IntList(result, count);
+    }
+
+    /**
+     * Gets the values that are in any of several lists. All lists are merged
+     * at once, which is much cheaper than a chain of pairwise unions when
+     * there are many of them.
+     *
+     * @param lists The lists to merge.
+     * @return A new list with every value of every list.
+     */
+    public static IntList unionAll(List<IntList> lists) {
+        if (lists.size() == 1) {
+            return lists.get(0);
+        }
+        int total = 0;
+        for (IntList list : lists) {
+            total += list.size;
+        }
+        int[] result = new int[total];
+        int count = 0;
+        for (IntList list : lists) {
+            System.arraycopy(list.values, 0, result, count, list.size);
+            count += list.size;
+        }
+        Arrays.sort(result);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || result[distinct - 1] != result[i]) {
+                result[distinct++] = result[i];
+            }
+        }
+        return new IntList(result, distinct);
+    }
+
+    /**
+     * Copies the values into an array.
+     *
+     * @return The values in ascending order.
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
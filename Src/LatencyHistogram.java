@@ -0,0 +1,158 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * LatencyHistogram
+ * The LatencyHistogram class counts durations in log-linear buckets, the way
+ * HdrHistogram does: each power of two of nanoseconds is split into 64 equal
+ * buckets, so any percentile read back is within about 1.6% of the true
+ * value, from a nanosecond up to about a minute, in a fixed 16 KB.
+ *
+ * Recording is one atomic increment of a bucket plus two striped adders, with
+ * no lock and no allocation, so it can sit on hot paths and be called from
+ * many threads at once. Reading takes a {@link Snapshot}, which copies the
+ * buckets; a snapshot taken while durations are being recorded may miss the
+ * last few of them.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 36; // 2^36 ns is about 69 seconds
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records one duration. Negative durations count as zero, and durations
+     * past the top bucket count in the top bucket, though the maximum keeps
+     * their true value.
+     *
+     * @param nanos The duration in nanoseconds.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        totalNanos.add(value);
+        maxNanos.accumulate(value);
+    }
+
+    /**
+     * Records the time since a start read from {@link System#nanoTime()}.
+     *
+     * @param startNanos When the timed work started.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Copies the counts as they are now.
+     *
+     * @return The snapshot.
+     */
+    public Snapshot getSnapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(copy, count, totalNanos.sum(), maxNanos.get());
+    }
+
+    /**
+     * Finds the bucket of a duration. Values below 64 ns get a bucket each;
+     * above that, the position of the highest bit picks the power of two and
+     * the next six bits pick the bucket within it.
+     *
+     * @param value The duration, not negative.
+     * @return The bucket index.
+     */
+    private static int bucketOf(long value) {
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent < SUB_BUCKET_BITS) {
+            return (int) value;
+        }
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    /**
+     * Gets the largest duration that falls in a bucket.
+     *
+     * @param bucket The bucket index.
+     * @return The top of the bucket in nanoseconds.
+     */
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long low = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return low + (1L << shift) - 1;
+    }
+
+    /**
+     * The counts of a histogram at one moment.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+
+        private Snapshot(long[] counts, long count, long totalNanos, long maxNanos) {
+            this.counts = counts;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        /** @return The number of durations recorded. */
+        public long getCount() { return count; }
+
+        /** @return The mean duration in microseconds, or 0 if none were recorded. */
+        public double getMeanMicros() {
+            return count == 0 ? 0 : totalNanos / 1000.0 / count;
+        }
+
+        /** @return The longest duration in microseconds. */
+        public double getMaxMicros() { return maxNanos / 1000.0; }
+
+        /**
+         * Gets a latency percentile, as the top of the bucket it falls in,
+         * capped at the longest duration recorded.
+         *
+         * @param percentile The percentile, between 0 and 100.
+         * @return The duration in microseconds, or 0 if none were recorded.
+         */
+        public double getPercentileMicros(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBoundOf(i), maxNanos) / 1000.0;
+                }
+            }
+            return getMaxMicros();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+                    count, getMeanMicros(), getPercentileMicros(50), getPercentileMicros(90),
+                    getPercentileMicros(99), getPercentileMicros(99.9), getMaxMicros());
+        }
+    }
+}
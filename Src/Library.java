@@ -1,7 +1,10 @@
 import java.io.*;
 import java.sql.*;
 import java.util.*;
+import java.time.LocalDate;
 import java.util.Date;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Pattern;
 
 
@@ -14,12 +17,114 @@ import java.util.regex.Pattern;
  * retrieving attributes of the book collection, such as the total
  * number of books, maximum book ID, maximum title length, and maximum
  * author name length.
+ *
+ * The books themselves are kept in a {@link BookRepository}: the MySQL
+ * database by default, or any other repository given to the constructor,
+ * such as an {@link InMemoryBookRepository} for a branch without a database.
  */
 public class Library
 {
-     private ArrayList<Book> books;
+     private static final int BOOK_CACHE_SIZE = 10_000;
+     private static final int LOAN_PERIOD_DAYS = 28;
+
+     // States of a barcode read by a bulk operation
+     private static final byte BULK_MISSING = 0;
+     private static final byte BULK_IN = 1;
+     private static final byte BULK_OUT = 2;
+
+     private static final int MAX_CLOSE_MATCHES = 100;
+     private static final long STATS_RECONCILE_SECONDS = 60;
+
+     private final BookRepository repository;
+     private final BookCache bookCache;
+     private final TitleIndex titleIndex;
+     private final SearchIndex searchIndex;
+     private final FuzzyTitleIndex fuzzyTitleIndex;
+     private final ReentrantLock titleRebuildLock;
+     private final ReentrantLock searchRebuildLock;
+     private final LibraryStats libraryStats;
+     private final List<LibraryListener> listeners;
+     private final LibraryMetrics metrics;
 
-     public Library() { books = new ArrayList<>(); }
+     /**
+      * Creates a library over the MySQL database. Every Library made this way
+      * shares one connection pool, book cache, set of indexes and running
+      * totals, so a change made through one of them is seen by all of them.
+      */
+     public Library() {
+          this(SharedState.INSTANCE);
+     }
+
+     /**
+      * Creates a library that keeps its books in the given repository, with
+      * its own book cache, indexes and running totals. Make one Library per
+      * repository and share it, so the caches see every change.
+      *
+      * @param repository Where the books are kept.
+      */
+     public Library(BookRepository repository) {
+          this(new State(repository));
+     }
+
+     private Library(State state) {
+          this.repository = state.repository;
+          this.bookCache = state.bookCache;
+          this.titleIndex = state.titleIndex;
+          this.searchIndex = state.searchIndex;
+          this.fuzzyTitleIndex = state.fuzzyTitleIndex;
+          this.titleRebuildLock = state.titleRebuildLock;
+          this.searchRebuildLock = state.searchRebuildLock;
+          this.libraryStats = state.libraryStats;
+          this.listeners = state.listeners;
+          this.metrics = state.metrics;
+     }
+
+     /**
+      * Gets the latency, error and row counts of this library's operations,
+      * shared with every Library over the same repository.
+      *
+      * @return The metrics.
+      */
+     public LibraryMetrics getMetrics() {
+          return metrics;
+     }
+
+     /**
+      * Stops the background work of this library and every Library sharing
+      * its repository, the statistics recount and any metrics dump, and
+      * closes the repository if it holds open files. Call it once, when the
+      * program is done with the books.
+      */
+     public void close() {
+          libraryStats.close();
+          metrics.stopDump();
+          if (repository instanceof AutoCloseable) {
+               try {
+                    ((AutoCloseable) repository).close();
+               } catch (Exception e) {
+                    System.out.println("Library Error: " + e.getMessage());
+               }
+          }
+     }
+
+     /**
+      * Registers a listener to be told about every change made through this
+      * library, or through any other Library sharing its repository.
+      *
+      * @param listener The listener to add.
+      */
+     public void addLibraryListener(LibraryListener listener) {
+          listeners.add(listener);
+     }
+
+     /**
+      * Stops telling a listener about changes.
+      *
+      * @param listener The listener to remove.
+      */
+     public void removeLibraryListener(LibraryListener listener) {
+          listeners.remove(listener);
+     }
 
      /**
       * Adds a new book to the library.
@@ -27,14 +132,20 @@ public class Library
       * @param book The book to be added to the library.
       */
      public void addBook(Book book) {
-          String sql = "INSERT INTO books (id, title, author) VALUES (?, ?, ?)";
-          try (Connection conn = getDatabaseConnection();
-               PreparedStatement pstmt = conn.prepareStatement(sql)) {
-               pstmt.setInt(1, book.getId());
-               pstmt.setString(2, book.getTitle());
-               pstmt.setString(3, book.getAuthor());
-               pstmt.executeUpdate();
+          long start = metrics.start(LibraryMetrics.Operation.ADD_BOOK);
+          long stamp = bookCache.getStamp(); // A toggle that lands after the insert must win over this copy
+          try {
+               repository.insert(book);
+               Book stored = copyOf(book); // The caller keeps its own instance
+               bookCache.putIfUnchanged(stored, stamp); // Write through
+               libraryStats.booksAdded(1, book.getStatus() ? 1 : 0);
+               titleIndex.add(book.getTitle());
+               searchIndex.add(book.getId(), book.getTitle(), book.getAuthor());
+               fuzzyTitleIndex.add(book.getId(), book.getTitle());
+               publish(BookChangeEvent.inserted(stored));
+               metrics.record(LibraryMetrics.Operation.ADD_BOOK, start, 0, 1);
           } catch (SQLException e) {
+               metrics.recordError(LibraryMetrics.Operation.ADD_BOOK, start);
                System.out.println("SQL Error: " + e.getMessage());
           }
      }
@@ -48,97 +159,83 @@ public class Library
       * @return A summary of any errors encountered during the process.
       */
      public String addBooksFromFile(String filePath, int batchSize) {
-     File inputFile = new File(filePath);
-     int skippedLineCount = 0;
-     int validBooks = 0;
-     HashSet<Integer> uniqueBookIds = new HashSet<>();
-     StringBuilder errorSummary = new StringBuilder();
-     String insertSql = "INSERT INTO books (id, title, author) VALUES (?, ?, ?)";
-     Connection conn = null;
-
-     try {
-          conn = getDatabaseConnection();
-          conn.setAutoCommit(false); // Use transaction to batch insert
-          PreparedStatement pstmt = conn.prepareStatement(insertSql);
-          Scanner fileScanner = new Scanner(inputFile, "UTF-8");
-          int currentLineNumber = 0;
-
-          while (fileScanner.hasNextLine()) {
-               // ... rest of the code to process each line ...
-
-               if (validBooks % batchSize == 0 && validBooks > 0) {
-                    pstmt.executeBatch(); // Execute batch insert
-                    conn.commit(); // Commit transaction
-               }
-          }
-
-          if (validBooks % batchSize != 0) {
-               pstmt.executeBatch(); // Execute the final batch
-               conn.commit(); // Commit the final transaction
-          }
+          return importBooksFromFile(filePath, batchSize).getErrorSummary();
+     }
 
-          pstmt.close();
-          fileScanner.close();
-     } catch (FileNotFoundException e) {
-          errorSummary.append("Error: File not found - ").append(filePath);
-     } catch (SecurityException e) {
-          errorSummary.append("Error: Insufficient permissions to read the file.");
-     } catch (SQLException e) {
-          errorSummary.append("SQL Error: ").append(e.getMessage());
-          try {
-               if (conn != null) {
-                    conn.rollback(); // Rollback in case of error
-               }
-          } catch (SQLException ex) {
-               errorSummary.append("\nFailed to rollback: ").append(ex.getMessage());
+     /**
+      * Imports books from a "barcode,title,author" file, streaming it in batches.
+      * A header row and blank lines are skipped, books that already exist are left
+      * untouched, and lines with missing fields, bad barcodes, over-long text or a
+      * barcode repeated in the file are rejected. An import into a durable
+      * repository that is interrupted resumes from its last committed batch
+      * when the same file is imported again.
+      *
+      * @param filePath  The path to the file containing book information.
+      * @param batchSize The number of books to insert per commit.
+      * @return The counts, throughput and error summary of the import.
+      */
+     public ImportResult importBooksFromFile(String filePath, int batchSize) {
+          long start = metrics.start(LibraryMetrics.Operation.IMPORT_BOOKS);
+          ImportResult result = new BookImporter(repository, batchSize).importFile(new File(filePath));
+          long inserted = result.getRowsInserted() - result.getResumedRowsInserted(); // The rest were counted when they went in
+          libraryStats.booksAdded(inserted, 0);
+          if (inserted > 0) {
+               titleIndex.markStale(); // The importer does not say which titles went in
+               searchIndex.markStale();
+               fuzzyTitleIndex.markStale();
+               publish(BookChangeEvent.reloaded());
           }
-     } catch (Exception e) {
-          errorSummary.append("An unexpected error occurred: ").append(e.getMessage());
-     } finally {
-          try {
-               if (conn != null && !conn.isClosed()) {
-                    conn.close();
-               }
-          } catch (SQLException e) {
-               errorSummary.append("\nFailed to close database connection: ").append(e.getMessage());
+          if (result.isFailed()) {
+               metrics.recordError(LibraryMetrics.Operation.IMPORT_BOOKS, start);
+          } else {
+               metrics.record(LibraryMetrics.Operation.IMPORT_BOOKS, start, result.getRowsRead(), result.getRowsInserted());
           }
+          return result;
      }
 
-     // ... handle skippedLineCount and error summary ...
-
-     return errorSummary.toString();
-}
-
 
      /**
-      * Establishes a connection to the database.
+      * Gets a snapshot of the connection pool metrics.
       *
-      * @return A Connection object to the configured database.
-      * @throws SQLException If a database access error occurs.
+      * @return The active, idle, wait time and acquisition rate of the pool, or
+      *         {@code null} if the books are not kept in MySQL.
       */
-     private Connection getDatabaseConnection() throws SQLException {
-          String url = "jdbc:mysql://127.0.0.1:3306/lms";
-          String user = "root";
-          String password = "password";
-          return DriverManager.getConnection(url, user, password);
+     public ConnectionPool.Stats getPoolStats() {
+          if (repository instanceof MySqlBookRepository) {
+               return ((MySqlBookRepository) repository).getPoolStats();
+          }
+          return null;
      }
 
 
      /**removeBookById
-      * Removes a book by its ID.
+      * Removes a book by its ID. The repository hands back the book as it was
+      * removed, so the statistics know whether a checked out book left the
+      * library.
       *
       * @param id The ID of the book to remove.
       * @return {@code true} if a book was removed, {@code false} otherwise.
       */
      public boolean removeBookById(int id) {
-          String sql = "DELETE FROM books WHERE barcode = ?";
-          try (Connection conn = getDatabaseConnection();
-               PreparedStatement pstmt = conn.prepareStatement(sql)) {
-               pstmt.setInt(1, id);
-               int affectedRows = pstmt.executeUpdate();
-               return affectedRows > 0;
+          long start = metrics.start(LibraryMetrics.Operation.REMOVE_BOOK);
+          try {
+               Book removed = repository.delete(id);
+               if (removed == null) {
+                    metrics.record(LibraryMetrics.Operation.REMOVE_BOOK, start, 0, 0);
+                    return false;
+               }
+               bookCache.invalidate(id);
+               libraryStats.bookRemoved(removed);
+               titleIndex.remove(removed.getTitle());
+               searchIndex.remove(id);
+               fuzzyTitleIndex.remove(id, removed.getTitle());
+               publish(BookChangeEvent.deleted(removed));
+               metrics.record(LibraryMetrics.Operation.REMOVE_BOOK, start, 0, 1);
+               return true;
           } catch (SQLException e) {
+               metrics.recordError(LibraryMetrics.Operation.REMOVE_BOOK, start);
                System.out.println("SQL Error: " + e.getMessage());
+               bookCache.invalidate(id);
                return false;
           }
      }
@@ -147,40 +244,193 @@ public class Library
      /**changeBookStatus
       * Changes the status of a book with the given barcode.
       *
-      * This method updates the status of a book in the library's database by specifying
-      * its barcode. If the status provided is different from the current status, it
-      * updates the status and returns true, indicating a successful status change.
-      * Otherwise, it returns false.
+      * Checks the book out if it is in, or in if it is out, and returns true if
+      * the book exists. See {@link #toggleBookStatus(int)} for the new state.
       *
       * @param barcode The barcode of the book to change the status for.
       * @return True if the status change was successful, false otherwise.
       */
      public boolean changeBookStatus(int barcode) {
-          String getStatusSql = "SELECT status FROM books WHERE barcode = ?";
-          String updateStatusSql = "UPDATE books SET status = ?, dueDate = CASE WHEN status = 1 THEN NOW() ELSE NULL END WHERE barcode = ?";
-
-          try (Connection conn = getDatabaseConnection();
-               PreparedStatement getStatusStmt = conn.prepareStatement(getStatusSql);
-               PreparedStatement updateStatusStmt = conn.prepareStatement(updateStatusSql)) {
-
-               // Check the current status of the book
-               getStatusStmt.setInt(1, barcode);
-               ResultSet rs = getStatusStmt.executeQuery();
-               if (rs.next()) {
-                    boolean currentStatus = rs.getBoolean("status");
-                    boolean newStatus = !currentStatus;
-
-                    // Update the status and due date based on the new status
-                    updateStatusStmt.setBoolean(1, newStatus);
-                    updateStatusStmt.setInt(2, barcode);
-                    int affectedRows = updateStatusStmt.executeUpdate();
-
-                    return affectedRows > 0;
+          return toggleBookStatus(barcode) != null;
+     }
+
+     /**toggleBookStatus
+      * Checks a book out if it is in, or in if it is out, in one atomic change.
+      *
+      * The status flips and the due date is set together, so two desks
+      * toggling the same book cannot both see the old status. On MySQL this is
+      * a single UPDATE; see {@link MySqlBookRepository#toggleStatus(int, String)}.
+      *
+      * @param barcode The barcode of the book to change the status for.
+      * @return The new status and due date, or {@code null} if no book has the barcode.
+      */
+     public StatusChange toggleBookStatus(int barcode) {
+          long start = metrics.start(LibraryMetrics.Operation.TOGGLE_STATUS);
+          String dueDate = LocalDate.now().plusDays(LOAN_PERIOD_DAYS).toString();
+          try {
+               StatusChange change = repository.toggleStatus(barcode, dueDate);
+               if (change == null) {
+                    metrics.record(LibraryMetrics.Operation.TOGGLE_STATUS, start, 0, 0);
+                    return null;
+               }
+               bookCache.updateStatus(barcode, change.isCheckedOut(), change.getDueDate());
+               if (change.isCheckedOut()) {
+                    libraryStats.bookCheckedOut();
+               } else {
+                    libraryStats.bookCheckedIn(change.getPreviousDueDate());
+               }
+               publish(BookChangeEvent.statusChanged(barcode, change.isCheckedOut(), change.getDueDate()));
+               metrics.record(LibraryMetrics.Operation.TOGGLE_STATUS, start, 0, 1);
+               return change;
+          } catch (SQLException e) {
+               metrics.recordError(LibraryMetrics.Operation.TOGGLE_STATUS, start);
+               System.out.println("SQL Error: " + e.getMessage());
+               bookCache.invalidate(barcode); // The outcome is unknown, re-read next time
+          }
+          return null;
+     }
+
+     /**checkOutAll
+      * Checks out every book in a list of barcodes in one transaction.
+      * Books that are already checked out are left alone.
+      *
+      * @param barcodes The barcodes of the books, for example a scanned cart.
+      * @return The outcome for each barcode.
+      */
+     public BulkResult checkOutAll(int[] barcodes) {
+          return changeStatusAll(barcodes, true);
+     }
+
+     /**checkInAll
+      * Checks in every book in a list of barcodes in one transaction.
+      * Books that are not checked out are left alone.
+      *
+      * @param barcodes The barcodes of the books, for example a returns cart.
+      * @return The outcome for each barcode.
+      */
+     public BulkResult checkInAll(int[] barcodes) {
+          return changeStatusAll(barcodes, false);
+     }
+
+     /**removeAll
+      * Removes every book in a list of barcodes in one transaction.
+      *
+      * @param barcodes The barcodes of the books to remove.
+      * @return The outcome for each barcode.
+      */
+     public BulkResult removeAll(int[] barcodes) {
+          long start = metrics.start(LibraryMetrics.Operation.REMOVE_ALL);
+          int[] distinct = Arrays.stream(barcodes).distinct().sorted().toArray();
+          try {
+               Book[] locked = repository.deleteAll(distinct);
+               byte[] found = statesOf(locked);
+               int removedCount = 0;
+               for (Book removed : locked) {
+                    if (removed != null) {
+                         removedCount++;
+                         bookCache.invalidate(removed.getId());
+                         libraryStats.bookRemoved(removed);
+                         titleIndex.remove(removed.getTitle());
+                         searchIndex.remove(removed.getId());
+                         fuzzyTitleIndex.remove(removed.getId(), removed.getTitle());
+                         publish(BookChangeEvent.deleted(removed));
+                    }
                }
+               metrics.record(LibraryMetrics.Operation.REMOVE_ALL, start, distinct.length, removedCount);
+               return toBulkResult(barcodes, distinct, found, BULK_IN, BULK_OUT, null);
           } catch (SQLException e) {
+               metrics.recordError(LibraryMetrics.Operation.REMOVE_ALL, start);
                System.out.println("SQL Error: " + e.getMessage());
+               return BulkResult.failed(barcodes, e.getMessage());
           }
-          return false;
+     }
+
+     /**
+      * Sets the status of many books in one transaction, then brings the cache
+      * and the statistics up to date for the books that changed.
+      *
+      * @param barcodes   The barcodes of the books.
+      * @param checkedOut True to check the books out, false to check them in.
+      * @return The outcome for each barcode.
+      */
+     private BulkResult changeStatusAll(int[] barcodes, boolean checkedOut) {
+          LibraryMetrics.Operation operation = checkedOut ? LibraryMetrics.Operation.CHECK_OUT_ALL : LibraryMetrics.Operation.CHECK_IN_ALL;
+          long start = metrics.start(operation);
+          int[] distinct = Arrays.stream(barcodes).distinct().sorted().toArray();
+          String dueDate = checkedOut ? LocalDate.now().plusDays(LOAN_PERIOD_DAYS).toString() : null;
+          byte wrongState = checkedOut ? BULK_IN : BULK_OUT;
+          try {
+               Book[] locked = repository.setStatusAll(distinct, checkedOut, dueDate);
+               byte[] found = statesOf(locked);
+               int changed = 0;
+               for (int i = 0; i < distinct.length; i++) {
+                    if (found[i] != wrongState) {
+                         continue;
+                    }
+                    changed++;
+                    bookCache.updateStatus(distinct[i], checkedOut, dueDate);
+                    if (checkedOut) {
+                         libraryStats.bookCheckedOut();
+                    } else {
+                         libraryStats.bookCheckedIn(locked[i].getDueDate());
+                    }
+                    publish(BookChangeEvent.statusChanged(distinct[i], checkedOut, dueDate));
+               }
+               metrics.record(operation, start, distinct.length, changed);
+               return toBulkResult(barcodes, distinct, found, wrongState, wrongState, dueDate);
+          } catch (SQLException e) {
+               metrics.recordError(operation, start);
+               System.out.println("SQL Error: " + e.getMessage());
+               return BulkResult.failed(barcodes, e.getMessage());
+          }
+     }
+
+     /**
+      * Gets the state of each book found by a bulk operation.
+      *
+      * @param locked The books as the repository found them.
+      * @return For each book, {@link #BULK_MISSING}, {@link #BULK_IN} or {@link #BULK_OUT}.
+      */
+     private static byte[] statesOf(Book[] locked) {
+          byte[] found = new byte[locked.length];
+          for (int i = 0; i < locked.length; i++) {
+               if (locked[i] == null) {
+                    found[i] = BULK_MISSING;
+               } else {
+                    found[i] = locked[i].getStatus() ? BULK_OUT : BULK_IN;
+               }
+          }
+          return found;
+     }
+
+     /**
+      * Maps the state of each distinct barcode back onto the barcodes as given.
+      * A barcode listed twice is only changed once; its second entry is unchanged.
+      *
+      * @param barcodes The barcodes as given.
+      * @param distinct The sorted, distinct barcodes.
+      * @param found    The state of each distinct barcode before the change.
+      * @param changed1 A state that was changed.
+      * @param changed2 Another state that was changed.
+      * @param dueDate  The due date given to checked out books, or {@code null}.
+      * @return The outcome for each barcode.
+      */
+     private static BulkResult toBulkResult(int[] barcodes, int[] distinct, byte[] found,
+                                            byte changed1, byte changed2, String dueDate) {
+          BulkResult.Outcome[] outcomes = new BulkResult.Outcome[barcodes.length];
+          boolean[] reported = new boolean[distinct.length];
+          for (int i = 0; i < barcodes.length; i++) {
+               int index = Arrays.binarySearch(distinct, barcodes[i]);
+               if (found[index] == BULK_MISSING) {
+                    outcomes[i] = BulkResult.Outcome.NOT_FOUND;
+               } else if ((found[index] == changed1 || found[index] == changed2) && !reported[index]) {
+                    outcomes[i] = BulkResult.Outcome.CHANGED;
+                    reported[index] = true;
+               } else {
+                    outcomes[i] = BulkResult.Outcome.UNCHANGED;
+               }
+          }
+          return new BulkResult(barcodes, outcomes, dueDate, null);
      }
 
      /**
@@ -189,58 +439,106 @@ public class Library
       * @return The total number of books.
       */
      public int getTotalBooks() {
-          String sql = "SELECT COUNT(*) FROM books";
-          try (Connection conn = getDatabaseConnection();
-               PreparedStatement pstmt = conn.prepareStatement(sql);
-               ResultSet rs = pstmt.executeQuery()) {
-
-               if (rs.next()) {
-                    return rs.getInt(1);
-               }
+          long start = metrics.start(LibraryMetrics.Operation.COUNT_BOOKS);
+          try {
+               int count = (int) repository.count(LocalDate.now()).getTotal();
+               metrics.record(LibraryMetrics.Operation.COUNT_BOOKS, start, 0, 0);
+               return count;
           } catch (SQLException e) {
+               metrics.recordError(LibraryMetrics.Operation.COUNT_BOOKS, start);
                System.out.println("SQL Error: " + e.getMessage());
           }
           return 0;
      }
 
      /**
-      * Retrieves all book titles from the database.
+      * Retrieves all book titles from the repository.
       *
       * @return A list of all book titles.
       */
      public List<String> getAllBookTitles() {
+          long start = metrics.start(LibraryMetrics.Operation.GET_ALL_TITLES);
           List<String> titles = new ArrayList<>();
-          String sql = "SELECT title FROM books";
-
-          try (Connection conn = getDatabaseConnection();
-               PreparedStatement pstmt = conn.prepareStatement(sql);
-               ResultSet rs = pstmt.executeQuery()) {
-
-               while (rs.next()) {
-                    String title = rs.getString("title");
-                    titles.add(title);
-               }
+          try {
+               repository.forEach(book -> titles.add(book.getTitle()));
+               metrics.record(LibraryMetrics.Operation.GET_ALL_TITLES, start, titles.size(), 0);
           } catch (SQLException e) {
+               metrics.recordError(LibraryMetrics.Operation.GET_ALL_TITLES, start);
                System.out.println("SQL Error: " + e.getMessage());
           }
           return titles;
      }
 
+     /**suggestTitles
+      * Suggests titles for autocomplete. The first call loads every title into
+      * an in-memory prefix index; after that the index is kept up to date by
+      * this class's own changes and each lookup is a binary search. When the
+      * index is out of date, as after an import, one caller reloads it and
+      * the others wait for that reload instead of starting their own.
+      *
+      * @param prefix The text typed so far.
+      * @param limit  The maximum number of titles to return.
+      * @return Up to {@code limit} titles starting with the prefix, ignoring case and accents.
+      */
+     public List<String> suggestTitles(String prefix, int limit) {
+          long start = metrics.start(LibraryMetrics.Operation.SUGGEST_TITLES);
+          if (titleIndex.isStale()) {
+               try {
+                    rebuildTitleIndex();
+               } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt(); // Cancelled while waiting; answer from the old index
+               }
+          }
+          List<String> suggestions = titleIndex.startingWith(prefix, limit);
+          metrics.record(LibraryMetrics.Operation.SUGGEST_TITLES, start, 0, 0);
+          return suggestions;
+     }
+
+     /**
+      * Streams every title into a new prefix index and swaps it in, unless
+      * another caller already did so while this one waited for its turn.
+      *
+      * @throws InterruptedException If the caller was cancelled while waiting.
+      */
+     private void rebuildTitleIndex() throws InterruptedException {
+          titleRebuildLock.lockInterruptibly();
+          try {
+               if (!titleIndex.isStale()) {
+                    return; // Rebuilt by the caller this one waited for
+               }
+               long start = metrics.start(LibraryMetrics.Operation.GET_ALL_TITLES);
+               long version = titleIndex.getVersion();
+               TitleIndex built = new TitleIndex();
+               long[] titlesRead = {0};
+               try {
+                    repository.forEach(book -> {
+                         built.add(book.getTitle());
+                         titlesRead[0]++;
+                    });
+                    titleIndex.replaceWith(built, version);
+                    metrics.record(LibraryMetrics.Operation.GET_ALL_TITLES, start, titlesRead[0], 0);
+               } catch (SQLException e) {
+                    metrics.recordError(LibraryMetrics.Operation.GET_ALL_TITLES, start);
+                    System.out.println("SQL Error: " + e.getMessage());
+               }
+          } finally {
+               titleRebuildLock.unlock();
+          }
+     }
+
      /**
       * Gets the count of books that are currently checked out.
       *
       * @return The number of checked out books.
       */
      public int getCheckedOutBooksCount() {
-          String sql = "SELECT COUNT(*) FROM books WHERE status = true";  // Adjust the condition based on your schema
-          try (Connection conn = getDatabaseConnection();
-               PreparedStatement pstmt = conn.prepareStatement(sql);
-               ResultSet rs = pstmt.executeQuery()) {
-
-               if (rs.next()) {
-                    return rs.getInt(1);
-               }
+          long start = metrics.start(LibraryMetrics.Operation.COUNT_BOOKS);
+          try {
+               int count = (int) repository.count(LocalDate.now()).getCheckedOut();
+               metrics.record(LibraryMetrics.Operation.COUNT_BOOKS, start, 0, 0);
+               return count;
           } catch (SQLException e) {
+               metrics.recordError(LibraryMetrics.Operation.COUNT_BOOKS, start);
                System.out.println("SQL Error: " + e.getMessage());
           }
           return 0;
@@ -248,127 +546,317 @@ public class Library
 
 
 
+     /**getStatistics
+      * Gets the running totals of books, checked out books and overdue books.
+      * The totals are kept up to date by this class's own changes and recounted
+      * in the background, so reading them does not touch the database.
+      *
+      * @return The current totals.
+      */
+     public LibraryStats.Snapshot getStatistics() {
+          return libraryStats.getSnapshot();
+     }
+
+     /**
+      * Gets when the running totals were last recounted from the database.
+      *
+      * @return The time in epoch milliseconds, or 0 if they never have been.
+      */
+     public long getStatisticsReconciledMillis() {
+          return libraryStats.getLastReconciledMillis();
+     }
+
      /**searchByTitle
-      * Searches for books by title.
+      * Searches for books by title, tolerating typos.
       *
-      * This method searches the library's database for books with titles matching the
-      * given targetTitle. It returns a map containing two lists: "exact" matches and
-      * "close" matches based on title similarity.
+      * The search runs against in-memory indexes that are loaded on first use
+      * and then kept up to date by this class's own changes. It returns a map
+      * containing two lists: "exact" matches, whose whole title equals the
+      * query ignoring case and accents, and up to 100 "close" matches. Close
+      * matches start with titles, or runs of title words, a few typos away
+      * from the query, nearest first, followed by books whose title or author contain every word of
+      * the query, best first.
       *
       * @param targetTitle The title to search for.
       * @return A map containing "exact" and "close" matches by barcode.
       */
      public Map<String, List<Integer>> searchByTitle(String targetTitle) {
+          long start = metrics.start(LibraryMetrics.Operation.SEARCH_BY_TITLE);
+          long rowsRead = 0;
+          if (searchIndex.isStale() || fuzzyTitleIndex.isStale()) {
+               try {
+                    rowsRead = rebuildSearchIndexes();
+               } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt(); // Cancelled while waiting; search the old indexes
+               }
+          }
+          SearchIndex.Result result = searchIndex.search(targetTitle, MAX_CLOSE_MATCHES);
           Map<String, List<Integer>> resultMap = new HashMap<>();
           List<Integer> exactMatches = new ArrayList<>();
-          List<Integer> closeMatches = new ArrayList<>();
-          String sql = "SELECT barcode, title FROM books WHERE title LIKE ?";
-
-          try (Connection conn = getDatabaseConnection();
-               PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-               pstmt.setString(1, "%" + targetTitle + "%");
-               ResultSet rs = pstmt.executeQuery();
-
-               while (rs.next()) {
-                    int id = rs.getInt("barcode");
-                    String title = rs.getString("title");
-
-                    if (title.equalsIgnoreCase(targetTitle)) {
-                         exactMatches.add(id);
-                    } else {
-                         closeMatches.add(id);
+          Set<Integer> closeMatches = new LinkedHashSet<>();
+          for (int barcode : result.getExact()) {
+               exactMatches.add(barcode);
+          }
+          for (FuzzyTitleIndex.Match match : fuzzyTitleIndex.closeTo(targetTitle, MAX_CLOSE_MATCHES)) {
+               if (match.getDistance() > 0 || match.isPartial()) { // A whole title at distance 0 is already exact
+                    for (int barcode : match.getBarcodes()) {
+                         closeMatches.add(barcode);
                     }
                }
-          } catch (SQLException e) {
-               System.out.println("SQL Error: " + e.getMessage());
           }
-
+          for (int barcode : result.getClose()) {
+               closeMatches.add(barcode);
+          }
           resultMap.put("exact", exactMatches);
-          resultMap.put("close", closeMatches);
+          resultMap.put("close", new ArrayList<>(closeMatches).subList(0, Math.min(MAX_CLOSE_MATCHES, closeMatches.size())));
+          if (rowsRead < 0) {
+               metrics.recordError(LibraryMetrics.Operation.SEARCH_BY_TITLE, start); // Searched the old indexes
+          } else {
+               metrics.record(LibraryMetrics.Operation.SEARCH_BY_TITLE, start, rowsRead, 0);
+          }
           return resultMap;
      }
 
+     /**
+      * Reads the barcode, title and author of every book into new search
+      * indexes and swaps them in. The books are streamed, so only the indexes
+      * themselves have to fit in memory. Only one rebuild runs at a time;
+      * a caller that waited for another's rebuild uses its result.
+      *
+      * @return The number of books read, or -1 if they could not be read.
+      * @throws InterruptedException If the caller was cancelled while waiting.
+      */
+     private long rebuildSearchIndexes() throws InterruptedException {
+          searchRebuildLock.lockInterruptibly();
+          try {
+               if (!searchIndex.isStale() && !fuzzyTitleIndex.isStale()) {
+                    return 0; // Rebuilt by the caller this one waited for
+               }
+               return readSearchIndexes();
+          } finally {
+               searchRebuildLock.unlock();
+          }
+     }
+
+     /**
+      * Builds the search indexes from every book, for {@link #rebuildSearchIndexes()}.
+      *
+      * @return The number of books read, or -1 if they could not be read.
+      */
+     private long readSearchIndexes() {
+          long searchVersion = searchIndex.getVersion();
+          long fuzzyVersion = fuzzyTitleIndex.getVersion();
+          SearchIndex builtSearch = new SearchIndex();
+          FuzzyTitleIndex builtFuzzy = new FuzzyTitleIndex();
+          long[] booksRead = {0};
+          try {
+               repository.forEach(book -> {
+                    builtSearch.add(book.getId(), book.getTitle(), book.getAuthor());
+                    builtFuzzy.add(book.getId(), book.getTitle());
+                    booksRead[0]++;
+               });
+               searchIndex.replaceWith(builtSearch, searchVersion);
+               fuzzyTitleIndex.replaceWith(builtFuzzy, fuzzyVersion);
+               return booksRead[0];
+          } catch (SQLException e) {
+               System.out.println("SQL Error: " + e.getMessage());
+               return -1;
+          }
+     }
+
 
      /**listAllBooks
-      * Lists all books with pagination.
+      * Lists all books with pagination. Kept for callers that think in page
+      * numbers; it finds where the page starts and then reads it with
+      * {@link #listBooksPage(String, int)}.
       *
       * @param page       The page number.
       * @param pageSize   The number of books to display per page.
       */
      public Object[][] listAllBooks(int page, int pageSize) {
-          String sql = "SELECT * FROM books ORDER BY title LIMIT ? OFFSET ?";
-          ArrayList<Book> pageBooks = new ArrayList<>();
-          try (Connection conn = getDatabaseConnection();
-               PreparedStatement pstmt = conn.prepareStatement(sql)) {
-               pstmt.setInt(1, pageSize);
-               pstmt.setInt(2, page * pageSize);
-               ResultSet rs = pstmt.executeQuery();
-               while (rs.next()) {
-                    int id = rs.getInt("barcode");
-                    String title = rs.getString("title");
-                    String author = rs.getString("author");
-                    boolean status = rs.getBoolean("status"); // Assuming there's a status column
-                    String dueDate = String.valueOf(rs.getDate("dueDate"));    // Assuming there's a due_date column
-
-                    pageBooks.add(new Book(id, title, author, status, dueDate));
-               }
+          String pageToken = page <= 0 ? null : getPageToken(page * pageSize);
+          if (page > 0 && pageToken == null) {
+               return new Object[0][5]; // Past the last book
+          }
+          return listBooksPage(pageToken, pageSize).toTableData();
+     }
+
+     /**listBooksPage
+      * Lists one page of books in (title, barcode) order. The page is found by
+      * seeking past the key stored in the token, so every page costs the same no
+      * matter how deep into the catalogue it is.
+      *
+      * @param pageToken The token from the previous page, or {@code null} for the first page.
+      * @param pageSize  The maximum number of books on the page.
+      * @return The page of books and the token of the page after it.
+      */
+     public BookPage listBooksPage(String pageToken, int pageSize) {
+          try {
+               return fetchBooksPage(pageToken, pageSize);
           } catch (SQLException e) {
                System.out.println("SQL Error: " + e.getMessage());
           }
+          return new BookPage(new ArrayList<>(), null);
+     }
 
-          Object[][] tableData = new Object[pageBooks.size()][5];
-          for (int i = 0; i < pageBooks.size(); i++) {
-               Book book = pageBooks.get(i);
-               tableData[i][0] = book.getId();
-               tableData[i][1] = book.getTitle();
-               tableData[i][2] = book.getAuthor();
-               tableData[i][3] = book.getStatus();
-               tableData[i][4] = book.getDueDate();
+     /**fetchBooksPage
+      * Lists one page of books like {@link #listBooksPage(String, int)}, but
+      * hands a database failure to the caller instead of returning an empty
+      * last page, for callers such as an export that must not mistake a
+      * failure for the end of the books.
+      *
+      * @param pageToken The token from the previous page, or {@code null} for the first page.
+      * @param pageSize  The maximum number of books on the page.
+      * @return The page of books and the token of the page after it.
+      * @throws SQLException If the page cannot be read.
+      */
+     public BookPage fetchBooksPage(String pageToken, int pageSize) throws SQLException {
+          long start = metrics.start(LibraryMetrics.Operation.LIST_PAGE);
+          try {
+               BookPage page = repository.listPage(pageToken, pageSize);
+               metrics.record(LibraryMetrics.Operation.LIST_PAGE, start, page.getBooks().size(), 0);
+               return page;
+          } catch (SQLException e) {
+               metrics.recordError(LibraryMetrics.Operation.LIST_PAGE, start);
+               throw e;
           }
+     }
 
-          return tableData;
+     /**getPageToken
+      * Gets the token of a page that starts at the given row, from the book
+      * just before it.
+      *
+      * @param offset The zero based row the page should start at.
+      * @return The token for {@link #listBooksPage(String, int)}, {@code null} for
+      *         offset 0 or if the offset is past the last book.
+      */
+     public String getPageToken(int offset) {
+          if (offset <= 0) {
+               return null;
+          }
+          long start = metrics.start(LibraryMetrics.Operation.GET_PAGE_TOKEN);
+          try {
+               String pageToken = repository.getPageToken(offset);
+               metrics.record(LibraryMetrics.Operation.GET_PAGE_TOKEN, start, pageToken == null ? 0 : 1, 0);
+               return pageToken;
+          } catch (SQLException e) {
+               metrics.recordError(LibraryMetrics.Operation.GET_PAGE_TOKEN, start);
+               System.out.println("SQL Error: " + e.getMessage());
+          }
+          return null;
      }
 
      /**getBookByIndex
-      * Gets a book by its index in the ArrayList.
+      * Gets a book by its position in (title, barcode) order.
       *
       * @param index The index of the book.
       * @return The book, or {@code null} if the index is out of bounds.
       */
      public Book getBookByIndex(int index)
      {
-          if (index >= 0 && index < books.size()) {
-               return books.get(index);
+          if (index < 0) {
+               return null;
+          }
+          String pageToken = getPageToken(index);
+          if (index > 0 && pageToken == null) {
+               return null; // Return null if the index is out of bounds
           }
-          return null; // Return null if the index is out of bounds
+          List<Book> page = listBooksPage(pageToken, 1).getBooks();
+          return page.isEmpty() ? null : page.get(0);
      }
 
      /**getBookByBarcode
-      * Gets a book by its Barcode in the ArrayList.
+      * Gets a book by its Barcode, reading it from the book cache when it is
+      * there and caching it after a repository read when it is not.
       *
-      * @return The book, or {@code null} if the index is out of bounds.
+      * @return A copy of the book for the caller to keep, or {@code null} if no
+      *         book has the barcode.
       */
      public Book getBookByBarcode(int barcode) {
-          String sql = "SELECT * FROM books WHERE barcode = ?";
-          try (Connection conn = getDatabaseConnection();
-               PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-               pstmt.setInt(1, barcode);
-               ResultSet rs = pstmt.executeQuery();
-
-               if (rs.next()) {
-                    int id = rs.getInt("barcode"); // Adjust these column names as per your database schema
-                    String title = rs.getString("title");
-                    String author = rs.getString("author");
-                    boolean status = rs.getBoolean("status");
-                    String dueDate = rs.getString("dueDate");
-
-                    return new Book(id, title, author, status, dueDate); // Create and return the Book object
+          Book cached = bookCache.get(barcode);
+          if (cached != null) {
+               return copyOf(cached); // The cached book is shared, and Book can be modified
+          }
+          long start = metrics.start(LibraryMetrics.Operation.GET_BOOK); // Only misses are timed; hits are counted by the cache
+          long stamp = bookCache.getStamp();
+          try {
+               Book book = repository.findByBarcode(barcode);
+               metrics.record(LibraryMetrics.Operation.GET_BOOK, start, book == null ? 0 : 1, 0);
+               if (book != null) {
+                    bookCache.putIfUnchanged(copyOf(book), stamp);
+                    return book;
                }
           } catch (SQLException e) {
+               metrics.recordError(LibraryMetrics.Operation.GET_BOOK, start);
                System.out.println("SQL Error: " + e.getMessage());
           }
           return null; // Return null if no book is found with the given barcode
      }
+
+     /**
+      * Gets a snapshot of the book cache counters.
+      *
+      * @return The size, hits, misses and evictions of the book cache.
+      */
+     public BookCache.Stats getCacheStats() {
+          return bookCache.getStats();
+     }
+
+     /**
+      * Tells every listener about a change. A listener that fails is reported
+      * and skipped, so it cannot undo a change that is already saved.
+      *
+      * @param event The change.
+      */
+     private void publish(BookChangeEvent event) {
+          for (LibraryListener listener : listeners) {
+               try {
+                    listener.bookChanged(event);
+               } catch (RuntimeException e) {
+                    System.out.println("Listener Error: " + e.getMessage());
+               }
+          }
+     }
+
+     /**
+      * Copies a book so the cache never shares an instance with a caller that may modify it.
+      *
+      * @param book The book to copy.
+      * @return An equal, independent book.
+      */
+     private static Book copyOf(Book book) {
+          return new Book(book.getId(), book.getTitle(), book.getAuthor(), book.getStatus(), book.getDueDate());
+     }
+
+     /**
+      * The repository of a Library and everything kept in memory about its
+      * books: the book cache, the search indexes, the running totals, the
+      * listeners to tell about changes and the operation metrics.
+      */
+     private static final class State {
+          private final BookRepository repository;
+          private final BookCache bookCache = new BookCache(BOOK_CACHE_SIZE);
+          private final TitleIndex titleIndex = new TitleIndex();
+          private final SearchIndex searchIndex = new SearchIndex();
+          private final FuzzyTitleIndex fuzzyTitleIndex = new FuzzyTitleIndex();
+          private final ReentrantLock titleRebuildLock = new ReentrantLock();
+          private final ReentrantLock searchRebuildLock = new ReentrantLock();
+          private final LibraryStats libraryStats;
+          private final List<LibraryListener> listeners = new CopyOnWriteArrayList<>();
+          private final LibraryMetrics metrics;
+
+          private State(BookRepository repository) {
+               this.repository = repository;
+               this.metrics = new LibraryMetrics(repository);
+               this.libraryStats = new LibraryStats(() -> repository.count(LocalDate.now()), STATS_RECONCILE_SECONDS);
+          }
+     }
+
+     /**
+      * Holds the state shared by every Library over the MySQL database,
+      * created on first use.
+      */
+     private static final class SharedState {
+          private static final State INSTANCE = new State(MySqlBookRepository.getShared());
+     }
 }
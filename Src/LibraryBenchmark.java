@@ -0,0 +1,424 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * LibraryBenchmark
+ * The LibraryBenchmark class measures the hot paths of the library at several
+ * catalogue sizes, so a change that slows them down shows up before it ships.
+ * By default it runs against a generated catalogue held in memory, with a
+ * stand-in for the database: book lookups go through the same cache as
+ * {@link Library#getBookByBarcode(int)}, searches through the same indexes as
+ * {@link Library#searchByTitle(String)}, and imports through the real
+ * {@link BookImporter} into an {@link InMemoryBookRepository}. The Library
+ * itself is then measured end to end over an in-memory repository of the same
+ * books, and in a {@link LogBookRepository} in a temporary file. With --database
+ * it instead runs the Library against the configured MySQL database and its
+ * current books, reading only; --allow-writes also measures status changes and
+ * imports, on books of its own that it adds above the highest barcode in use
+ * and removes again.
+ *
+ * Usage: java LibraryBenchmark [--sizes 10000,1000000,10000000] [--database [--allow-writes]]
+ *        [--warmup-ms N] [--measure-ms N] [--json] [--baseline results.jsonl] [--tolerance 0.10]
+ *
+ * Ten million books need a large heap, for example -Xmx16g. With --baseline
+ * the results are compared with an earlier --json run, and the exit code is 1
+ * if any benchmark lost more throughput than the tolerance allows.
+ */
+public class LibraryBenchmark {
+    private static final String[] WORDS = {
+        "the", "of", "and", "night", "river", "shadow", "garden", "empire", "winter", "silver",
+        "forgotten", "city", "house", "secret", "letters", "ocean", "fire", "stone", "kingdom", "dream",
+        "memory", "last", "first", "golden", "road", "storm", "island", "children", "war", "peace",
+        "cien", "a\u00f1os", "soledad", "caf\u00e9", "\u00fcber", "no\u00ebl", "cr\u00f3nica", "ma\u00f1ana", "hist\u00f3ria", "c\u0153ur"
+    };
+    private static final String[] SURNAMES = {
+        "Garc\u00eda", "Smith", "Tolkien", "Austen", "M\u00e1rquez", "Orwell", "Bront\u00eb", "Dostoevsky", "Le Guin", "Borges"
+    };
+    private static final int KEY_SAMPLE = 1 << 20;
+    private static final int IMPORT_ROWS_MAX = 1_000_000;
+    private static final int DATABASE_WRITE_ROWS = 10_000;
+
+    private final BenchmarkRunner runner;
+    private final List<BenchmarkRunner.Result> results = new ArrayList<>();
+    private final boolean json;
+
+    private LibraryBenchmark(BenchmarkRunner runner, boolean json) {
+        this.runner = runner;
+        this.json = json;
+    }
+
+    /**
+     * Runs the benchmarks.
+     *
+     * @param args The options described in the class comment.
+     * @throws Exception If a benchmark fails.
+     */
+    public static void main(String[] args) throws Exception {
+        long[] sizes = {10_000, 1_000_000};
+        boolean database = false;
+        boolean allowWrites = false;
+        boolean json = false;
+        long warmupMillis = 2000;
+        long measureMillis = 5000;
+        String baseline = null;
+        double tolerance = 0.10;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--sizes":
+                    String[] parts = args[++i].split(",");
+                    sizes = new long[parts.length];
+                    for (int j = 0; j < parts.length; j++) {
+                        sizes[j] = Long.parseLong(parts[j].trim().replace("_", ""));
+                    }
+                    break;
+                case "--database": database = true; break;
+                case "--allow-writes": allowWrites = true; break;
+                case "--json": json = true; break;
+                case "--warmup-ms": warmupMillis = Long.parseLong(args[++i]); break;
+                case "--measure-ms": measureMillis = Long.parseLong(args[++i]); break;
+                case "--baseline": baseline = args[++i]; break;
+                case "--tolerance": tolerance = Double.parseDouble(args[++i]); break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(BatchRunner.EXIT_USAGE);
+            }
+        }
+
+        LibraryBenchmark benchmark = new LibraryBenchmark(new BenchmarkRunner(warmupMillis, measureMillis, 5), json);
+        if (!json) {
+            System.out.println(BenchmarkRunner.Result.header());
+        }
+        if (database) {
+            benchmark.runAgainstDatabase(allowWrites);
+        } else {
+            for (long size : sizes) {
+                benchmark.runInMemory((int) size);
+            }
+        }
+        if (baseline != null) {
+            System.exit(benchmark.compareWithBaseline(new File(baseline), tolerance) ? 0 : 1);
+        }
+        System.exit(0); // The library's background threads are daemons, but the pool may hold sockets
+    }
+
+    /**
+     * Runs every benchmark against a generated catalogue of the given size.
+     *
+     * @param size The number of books.
+     * @throws Exception If a benchmark fails.
+     */
+    private void runInMemory(int size) throws Exception {
+        Random random = new Random(size);
+        int[] keys = accessPattern(random, size);
+
+        // getBookByBarcode: the Library's read-through cache, with generated rows standing in for the table
+        BookCache cache = new BookCache(10_000);
+        record(runner.run("getBookByBarcode", size, call -> {
+            int barcode = keys[call & (KEY_SAMPLE - 1)];
+            Book book = cache.get(barcode);
+            if (book == null) {
+                long stamp = cache.getStamp();
+                book = bookAt(barcode);
+                cache.putIfUnchanged(book, stamp);
+            }
+            return book;
+        }));
+
+        // changeBookStatus: the bookkeeping the Library does after its single UPDATE
+        LibraryStats stats = new LibraryStats(() -> new LibraryStats.Snapshot(size, 0, 0), Long.MAX_VALUE / 2);
+        boolean[] checkedOut = new boolean[size + 1];
+        record(runner.run("changeBookStatus", size, call -> {
+            int barcode = keys[call & (KEY_SAMPLE - 1)];
+            boolean out = checkedOut[barcode] = !checkedOut[barcode];
+            Book previous = cache.updateStatus(barcode, out, out ? "2030-01-01" : null);
+            if (out) {
+                stats.bookCheckedOut();
+            } else {
+                stats.bookCheckedIn(previous != null ? previous.getDueDate() : null);
+            }
+            return previous;
+        }));
+
+        // listAllBooks / table population: turning a page of rows into table data and a next page token
+        record(runner.run("listAllBooks.page", size, call -> {
+            int first = 1 + (keys[call & (KEY_SAMPLE - 1)] % Math.max(1, size - BookTableModel.PAGE_SIZE));
+            List<Book> books = new ArrayList<>(BookTableModel.PAGE_SIZE);
+            for (int i = 0; i < BookTableModel.PAGE_SIZE && first + i <= size; i++) {
+                books.add(bookAt(first + i));
+            }
+            Book last = books.get(books.size() - 1);
+            return new BookPage(books, BookPage.encodeToken(last.getTitle(), last.getId())).toTableData();
+        }));
+
+        // searchByTitle: the inverted index and the typo index, built like the Library builds them
+        SearchIndex searchIndex = new SearchIndex();
+        FuzzyTitleIndex fuzzyIndex = new FuzzyTitleIndex();
+        for (int barcode = 1; barcode <= size; barcode++) {
+            String title = titleOf(barcode);
+            searchIndex.add(barcode, title, authorOf(barcode));
+            fuzzyIndex.add(barcode, title);
+        }
+        String[] titles = new String[1024];
+        String[] typos = new String[titles.length];
+        for (int i = 0; i < titles.length; i++) {
+            titles[i] = titleOf(1 + random.nextInt(size));
+            char[] chars = titles[i].toCharArray();
+            chars[random.nextInt(chars.length)] = 'x';
+            typos[i] = new String(chars);
+        }
+        record(runner.run("searchByTitle.exact", size, call -> {
+            String query = titles[call & (titles.length - 1)];
+            return new Object[] {searchIndex.search(query, 100), fuzzyIndex.closeTo(query, 100)};
+        }));
+        record(runner.run("searchByTitle.typo", size, call -> {
+            String query = typos[call & (typos.length - 1)];
+            return new Object[] {searchIndex.search(query, 100), fuzzyIndex.closeTo(query, 100)};
+        }));
+
+        // addBooksFromFile: the real importer, storing into an empty in-memory repository
+        int rows = Math.min(size, IMPORT_ROWS_MAX);
+        File file = writeCatalogue(rows);
+        try {
+            BenchmarkRunner importRunner = new BenchmarkRunner(0, 0, 3);
+            record(importRunner.run("addBooksFromFile(" + rows + " rows)", size,
+                    call -> new BookImporter(new InMemoryBookRepository(), 1000).importFile(file)));
+        } finally {
+            file.delete();
+        }
+
+        // The whole Library, end to end, over an in-memory repository
+        InMemoryBookRepository repository = new InMemoryBookRepository();
+        loadCatalogue(repository, size);
+        Library library = new Library(repository);
+        record(runner.run("library.getBookByBarcode", size,
+                call -> library.getBookByBarcode(keys[call & (KEY_SAMPLE - 1)])));
+        record(runner.run("library.changeBookStatus", size,
+                call -> library.changeBookStatus(keys[call & (KEY_SAMPLE - 1)])));
+        record(runner.run("library.searchByTitle", size,
+                call -> library.searchByTitle(titles[call & (titles.length - 1)])));
+        record(runner.run("library.listBooksPage", size,
+                call -> library.listBooksPage(null, BookTableModel.PAGE_SIZE).toTableData()));
+        library.close();
+
+        // The same books in a memory-mapped log, as on a branch kiosk
+        File logFile = File.createTempFile("lms-benchmark", ".log");
+        try (LogBookRepository logRepository = new LogBookRepository(logFile.toPath())) {
+            loadCatalogue(logRepository, size);
+            Library logLibrary = new Library(logRepository);
+            record(runner.run("log.getBookByBarcode", size,
+                    call -> logRepository.findByBarcode(keys[call & (KEY_SAMPLE - 1)])));
+            record(runner.run("log.changeBookStatus", size,
+                    call -> logLibrary.changeBookStatus(keys[call & (KEY_SAMPLE - 1)])));
+            logLibrary.close();
+        } finally {
+            logFile.delete();
+        }
+    }
+
+    /**
+     * Stores the generated catalogue in a repository, ten thousand books per call.
+     *
+     * @param repository The empty repository.
+     * @param size       The number of books.
+     * @throws SQLException If the repository fails.
+     */
+    private static void loadCatalogue(BookRepository repository, int size) throws SQLException {
+        int[] barcodes = new int[10_000];
+        String[] titles = new String[barcodes.length];
+        String[] authors = new String[barcodes.length];
+        for (int first = 1; first <= size; first += barcodes.length) {
+            int count = Math.min(barcodes.length, size - first + 1);
+            for (int i = 0; i < count; i++) {
+                barcodes[i] = first + i;
+                titles[i] = titleOf(first + i);
+                authors[i] = authorOf(first + i);
+            }
+            repository.insertAll(barcodes, titles, authors, count);
+        }
+    }
+
+    /**
+     * Runs the Library itself against the configured database and the books
+     * already in it.
+     *
+     * @param allowWrites True to also measure status changes and imports, which add and then remove rows.
+     * @throws Exception If a benchmark fails.
+     */
+    private void runAgainstDatabase(boolean allowWrites) throws Exception {
+        Library library = new Library();
+        long size = library.getStatistics().getTotal();
+        if (size == 0) {
+            System.err.println("The database has no books to measure against.");
+            return;
+        }
+        BookPage firstPage = library.listBooksPage(null, 1000);
+        List<Book> sample = firstPage.getBooks();
+        Random random = new Random(size);
+
+        record(runner.run("db.getBookByBarcode", size,
+                call -> library.getBookByBarcode(sample.get(random.nextInt(sample.size())).getId())));
+        record(runner.run("db.searchByTitle", size,
+                call -> library.searchByTitle(sample.get(random.nextInt(sample.size())).getTitle())));
+        record(runner.run("db.listAllBooks", size,
+                call -> library.listAllBooks(random.nextInt((int) Math.max(1, size / 100)), 100)));
+        record(runner.run("db.tablePopulation", size, call -> {
+            // A scroll to a random row: find the page, then load it and the prefetch page after it
+            String token = library.getPageToken(random.nextInt((int) size));
+            BookPage page = library.listBooksPage(token, BookTableModel.PAGE_SIZE);
+            Object[][] rows = page.toTableData();
+            if (page.hasNextPage()) {
+                rows = library.listBooksPage(page.getNextPageToken(), BookTableModel.PAGE_SIZE).toTableData();
+            }
+            return rows;
+        }));
+
+        if (!allowWrites) {
+            return;
+        }
+
+        // Every book written from here on is new, so no real book is checked in, out or removed
+        long[] highest = {0};
+        MySqlBookRepository.getShared().forEachBarcode(barcode -> highest[0] = Math.max(highest[0], barcode));
+        int importCalls = 3;
+        long base = highest[0] + 1;
+        if (base + (long) DATABASE_WRITE_ROWS * (1 + importCalls) > Integer.MAX_VALUE) {
+            System.err.println("No free barcodes above " + highest[0] + " to write benchmark books to.");
+            return;
+        }
+        int[] ownBooks = new int[DATABASE_WRITE_ROWS];
+        for (int i = 0; i < ownBooks.length; i++) {
+            ownBooks[i] = (int) base + i;
+            library.addBook(new Book(ownBooks[i], titleOf(ownBooks[i]), authorOf(ownBooks[i])));
+        }
+        try {
+            record(runner.run("db.changeBookStatus", size, call -> {
+                int barcode = ownBooks[random.nextInt(ownBooks.length)];
+                return library.changeBookStatus(barcode);
+            }));
+        } finally {
+            library.removeAll(ownBooks);
+        }
+
+        File file = File.createTempFile("lms-benchmark", ".csv");
+        int[] barcodes = new int[DATABASE_WRITE_ROWS];
+        BenchmarkRunner importRunner = new BenchmarkRunner(0, 0, importCalls);
+        try {
+            record(importRunner.run("db.addBooksFromFile(" + DATABASE_WRITE_ROWS + " rows)", size, call -> {
+                int first = (int) base + (call + 1) * DATABASE_WRITE_ROWS;
+                try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                    for (int i = 0; i < DATABASE_WRITE_ROWS; i++) {
+                        barcodes[i] = first + i;
+                        writer.write((first + i) + "," + titleOf(first + i) + "," + authorOf(first + i));
+                        writer.newLine();
+                    }
+                }
+                ImportResult result = library.importBooksFromFile(file.getPath(), 1000);
+                library.removeAll(barcodes); // Leave the catalogue as we found it
+                return result;
+            }));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private void record(BenchmarkRunner.Result result) {
+        results.add(result);
+        System.out.println(json ? result.toJson() : result.toString());
+    }
+
+    /**
+     * Compares throughput with an earlier --json run.
+     *
+     * @param baselineFile The earlier results.
+     * @param tolerance    The fraction of throughput a benchmark may lose.
+     * @return True if no benchmark regressed.
+     * @throws IOException If the baseline cannot be read.
+     */
+    private boolean compareWithBaseline(File baselineFile, double tolerance) throws IOException {
+        Pattern line = Pattern.compile("\"benchmark\":\"([^\"]*)\",\"catalogueSize\":(\\d+),.*\"callsPerSecond\":([0-9.]+)");
+        Map<String, Double> baseline = new HashMap<>();
+        for (String text : Files.readAllLines(baselineFile.toPath(), StandardCharsets.UTF_8)) {
+            Matcher m = line.matcher(text);
+            if (m.find()) {
+                baseline.put(m.group(1) + "@" + m.group(2), Double.parseDouble(m.group(3)));
+            }
+        }
+        boolean passed = true;
+        for (BenchmarkRunner.Result result : results) {
+            Double before = baseline.get(result.getName() + "@" + result.getCatalogueSize());
+            if (before == null || before <= 0) {
+                continue;
+            }
+            double change = result.getCallsPerSecond() / before - 1.0;
+            boolean regressed = change < -tolerance;
+            passed &= !regressed;
+            System.err.printf("%-28s %,12d %+7.1f%% %s%n", result.getName(), result.getCatalogueSize(),
+                    change * 100, regressed ? "REGRESSION" : "ok");
+        }
+        return passed;
+    }
+
+    /**
+     * Picks the barcodes the lookups will use: nine in ten go to a hot set of
+     * one percent of the books, like a library's popular shelf, and the rest
+     * anywhere in the catalogue.
+     */
+    private static int[] accessPattern(Random random, int size) {
+        int hot = Math.max(1, size / 100);
+        int[] keys = new int[KEY_SAMPLE];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = 1 + (random.nextInt(10) < 9 ? random.nextInt(hot) * (size / hot) : random.nextInt(size));
+        }
+        return keys;
+    }
+
+    private static Book bookAt(int barcode) {
+        return new Book(barcode, titleOf(barcode), authorOf(barcode), false, null);
+    }
+
+    /**
+     * Makes up a title for a barcode. The same barcode always gets the same
+     * title, and about one barcode in ten shares its title with others.
+     */
+    private static String titleOf(int barcode) {
+        long h = mix(barcode % 10 == 0 ? barcode / 10 : barcode + 0x9E3779B9L);
+        return WORDS[(int) (h & 0xFFFF) % WORDS.length] + " " + WORDS[(int) ((h >>> 16) & 0xFFFF) % WORDS.length]
+                + " " + WORDS[(int) ((h >>> 32) & 0xFFFF) % WORDS.length] + " " + ((h >>> 48) % 5000);
+    }
+
+    private static String authorOf(int barcode) {
+        long h = mix(barcode * 31L + 7);
+        return (char) ('A' + (h & 0xFFFF) % 26) + ". " + SURNAMES[(int) ((h >>> 16) & 0xFFFF) % SURNAMES.length];
+    }
+
+    private static long mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return (x ^ (x >>> 31)) & Long.MAX_VALUE;
+    }
+
+    private static File writeCatalogue(int rows) throws IOException {
+        File file = File.createTempFile("lms-benchmark", ".csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("barcode,title,author");
+            writer.newLine();
+            for (int barcode = 1; barcode <= rows; barcode++) {
+                writer.write(barcode + "," + titleOf(barcode) + "," + authorOf(barcode));
+                writer.newLine();
+            }
+        }
+        return file;
+    }
+}
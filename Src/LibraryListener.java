@@ -0,0 +1,22 @@
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * LibraryListener
+ * The LibraryListener interface is told about every change made through a
+ * {@link Library}, one book at a time, so a view of the catalogue can update
+ * the rows that changed instead of reading everything again.
+ *
+ * Listeners are called on the thread that made the change, after it is
+ * saved. They should return quickly; a Swing listener should hand the event
+ * to the event thread rather than touch components itself.
+ */
+@FunctionalInterface
+public interface LibraryListener {
+
+    /**
+     * Called after a book is added, removed or checked in or out, or after
+     * many books changed at once.
+     *
+     * @param event What changed.
+     */
+    void bookChanged(BookChangeEvent event);
+}
@@ -0,0 +1,336 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * LibraryMetrics
+ * The LibraryMetrics class records how each {@link Library} operation
+ * performs: a {@link LatencyHistogram} of its durations, how many calls
+ * failed, and how many books it read and wrote. For the MySQL repository it
+ * also reports the connection pool, including how long calls waited for a
+ * connection.
+ *
+ * Recording uses striped counters and lock-free histograms only, so it costs
+ * a clock read and a few uncontended atomic adds per call. The numbers can be
+ * read in three ways: directly through {@link #getOperation(Operation)}, over
+ * JMX once {@link #registerMBeans()} has been called (for example in
+ * JConsole, under the "lms" domain), and as a text dump printed every so
+ * often by {@link #startDump(long, PrintStream)}.
+ */
+public class LibraryMetrics {
+    private static final String DOMAIN = "lms";
+
+    /**
+     * The operations that are measured, by the name of their Library method.
+     */
+    public enum Operation {
+        ADD_BOOK("addBook"),
+        IMPORT_BOOKS("importBooksFromFile"),
+        REMOVE_BOOK("removeBookById"),
+        TOGGLE_STATUS("toggleBookStatus"),
+        CHECK_OUT_ALL("checkOutAll"),
+        CHECK_IN_ALL("checkInAll"),
+        REMOVE_ALL("removeAll"),
+        GET_BOOK("getBookByBarcode"),
+        SEARCH_BY_TITLE("searchByTitle"),
+        SUGGEST_TITLES("suggestTitles"),
+        LIST_PAGE("listBooksPage"),
+        GET_PAGE_TOKEN("getPageToken"),
+        COUNT_BOOKS("countBooks"),
+        GET_ALL_TITLES("getAllBookTitles");
+
+        private final String methodName;
+
+        Operation(String methodName) {
+            this.methodName = methodName;
+        }
+
+        /** @return The name of the Library method. */
+        public String getMethodName() { return methodName; }
+    }
+
+    private final OperationMetrics[] operations = new OperationMetrics[Operation.values().length];
+    private final MySqlBookRepository database;
+    private ScheduledExecutorService dumper;
+
+    /**
+     * Creates the metrics of the Library over a repository.
+     *
+     * @param repository The repository, whose connection pool is reported if it is MySQL.
+     */
+    public LibraryMetrics(BookRepository repository) {
+        for (Operation operation : Operation.values()) {
+            operations[operation.ordinal()] = new OperationMetrics(operation);
+        }
+        this.database = repository instanceof MySqlBookRepository ? (MySqlBookRepository) repository : null;
+    }
+
+    /**
+     * Marks the start of a call: the SQL it runs is tagged with the operation
+     * in the {@link SqlTrace}, until the thread starts another.
+     *
+     * @param operation The operation.
+     * @return The start time, from {@link System#nanoTime()}, to pass to the record methods.
+     */
+    public long start(Operation operation) {
+        SqlTrace.setOperation(operation.methodName);
+        return System.nanoTime();
+    }
+
+    /**
+     * Records a call that completed.
+     *
+     * @param operation   The operation.
+     * @param startNanos  When the call started, from {@link System#nanoTime()}.
+     * @param rowsRead    The books it read from the repository.
+     * @param rowsWritten The books it added, removed or changed.
+     */
+    public void record(Operation operation, long startNanos, long rowsRead, long rowsWritten) {
+        OperationMetrics metrics = operations[operation.ordinal()];
+        metrics.latency.recordSince(startNanos);
+        if (rowsRead != 0) {
+            metrics.rowsRead.add(rowsRead);
+        }
+        if (rowsWritten != 0) {
+            metrics.rowsWritten.add(rowsWritten);
+        }
+    }
+
+    /**
+     * Records a call that failed. It counts in the latency histogram too, so
+     * slow failures such as timeouts show up in the percentiles.
+     *
+     * @param operation  The operation.
+     * @param startNanos When the call started, from {@link System#nanoTime()}.
+     */
+    public void recordError(Operation operation, long startNanos) {
+        OperationMetrics metrics = operations[operation.ordinal()];
+        metrics.latency.recordSince(startNanos);
+        metrics.errors.increment();
+    }
+
+    /**
+     * Gets the metrics of one operation.
+     *
+     * @param operation The operation.
+     * @return Its metrics, which stay up to date.
+     */
+    public OperationMetrics getOperation(Operation operation) {
+        return operations[operation.ordinal()];
+    }
+
+    /**
+     * Registers an MBean per operation, named lms:type=Operation,name=&lt;method&gt;,
+     * and for MySQL one for the pool, named lms:type=ConnectionPool. Names
+     * that are already registered are left as they are, so calling this twice
+     * does no harm.
+     */
+    public void registerMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (OperationMetrics metrics : operations) {
+                register(server, new ObjectName(DOMAIN + ":type=Operation,name=" + metrics.operation.getMethodName()),
+                        new StandardMBean(metrics, OperationMetricsMBean.class));
+            }
+            if (database != null) {
+                register(server, new ObjectName(DOMAIN + ":type=ConnectionPool"),
+                        new StandardMBean(new PoolMetrics(database), PoolMetricsMBean.class));
+            }
+        } catch (JMException e) {
+            System.out.println("Metrics Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Prints {@link #dump()} at a fixed rate from a background thread, until
+     * {@link #stopDump()} is called. Starting it again replaces the schedule.
+     *
+     * @param periodSeconds How often to print.
+     * @param out           Where to print.
+     */
+    public synchronized void startDump(long periodSeconds, PrintStream out) {
+        stopDump();
+        dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> out.print(dump()), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the periodic dump, if one is running.
+     */
+    public synchronized void stopDump() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+        }
+    }
+
+    /**
+     * Formats every operation that has been called at least once, one per
+     * line, and the connection pool and the SQL trace if there is one.
+     *
+     * @return The text, ending in a line break.
+     */
+    public String dump() {
+        StringBuilder text = new StringBuilder();
+        for (OperationMetrics metrics : operations) {
+            LatencyHistogram.Snapshot latency = metrics.latency.getSnapshot();
+            if (latency.getCount() > 0) {
+                text.append("Metrics: ").append(metrics.operation.getMethodName())
+                        .append(" errors=").append(metrics.getErrors())
+                        .append(" rowsRead=").append(metrics.getRowsRead())
+                        .append(" rowsWritten=").append(metrics.getRowsWritten())
+                        .append(' ').append(latency).append(System.lineSeparator());
+            }
+        }
+        if (database != null) {
+            text.append("Metrics: connectionPool ").append(database.getPoolStats())
+                    .append(" acquire ").append(database.getAcquireLatency()).append(System.lineSeparator());
+            text.append(SqlTrace.dump());
+        }
+        return text.toString();
+    }
+
+    private static void register(MBeanServer server, ObjectName name, Object mbean) throws JMException {
+        if (!server.isRegistered(name)) {
+            server.registerMBean(mbean, name);
+        }
+    }
+
+    /**
+     * The attributes of an operation shown over JMX. Latencies are in
+     * microseconds.
+     */
+    public interface OperationMetricsMBean {
+        long getCalls();
+        long getErrors();
+        long getRowsRead();
+        long getRowsWritten();
+        double getMeanMicros();
+        double getP50Micros();
+        double getP90Micros();
+        double getP99Micros();
+        double getP999Micros();
+        double getMaxMicros();
+    }
+
+    /**
+     * The counters of one operation.
+     */
+    public static final class OperationMetrics implements OperationMetricsMBean {
+        private final Operation operation;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rowsRead = new LongAdder();
+        private final LongAdder rowsWritten = new LongAdder();
+
+        private OperationMetrics(Operation operation) {
+            this.operation = operation;
+        }
+
+        /** @return A snapshot of the latencies, failed calls included. */
+        public LatencyHistogram.Snapshot getLatency() { return latency.getSnapshot(); }
+
+        @Override
+        public long getCalls() { return getLatency().getCount(); }
+
+        @Override
+        public long getErrors() { return errors.sum(); }
+
+        @Override
+        public long getRowsRead() { return rowsRead.sum(); }
+
+        @Override
+        public long getRowsWritten() { return rowsWritten.sum(); }
+
+        @Override
+        public double getMeanMicros() { return getLatency().getMeanMicros(); }
+
+        @Override
+        public double getP50Micros() { return getLatency().getPercentileMicros(50); }
+
+        @Override
+        public double getP90Micros() { return getLatency().getPercentileMicros(90); }
+
+        @Override
+        public double getP99Micros() { return getLatency().getPercentileMicros(99); }
+
+        @Override
+        public double getP999Micros() { return getLatency().getPercentileMicros(99.9); }
+
+        @Override
+        public double getMaxMicros() { return getLatency().getMaxMicros(); }
+    }
+
+    /**
+     * The attributes of the connection pool shown over JMX.
+     */
+    public interface PoolMetricsMBean {
+        int getActive();
+        int getIdle();
+        int getMaxSize();
+        long getAcquisitions();
+        long getTimeouts();
+        long getStatementHits();
+        long getStatementMisses();
+        double getStatementHitRate();
+        double getAcquireP50Micros();
+        double getAcquireP99Micros();
+        double getAcquireMaxMicros();
+    }
+
+    /**
+     * Reads the connection pool of the MySQL repository for JMX.
+     */
+    private static final class PoolMetrics implements PoolMetricsMBean {
+        private final MySqlBookRepository database;
+
+        private PoolMetrics(MySqlBookRepository database) {
+            this.database = database;
+        }
+
+        @Override
+        public int getActive() { return database.getPoolStats().getActive(); }
+
+        @Override
+        public int getIdle() { return database.getPoolStats().getIdle(); }
+
+        @Override
+        public int getMaxSize() { return database.getPoolStats().getMaxSize(); }
+
+        @Override
+        public long getAcquisitions() { return database.getPoolStats().getAcquisitions(); }
+
+        @Override
+        public long getTimeouts() { return database.getPoolStats().getTimeouts(); }
+
+        @Override
+        public long getStatementHits() { return database.getPoolStats().getStatementHits(); }
+
+        @Override
+        public long getStatementMisses() { return database.getPoolStats().getStatementMisses(); }
+
+        @Override
+        public double getStatementHitRate() { return database.getPoolStats().getStatementHitRate(); }
+
+        @Override
+        public double getAcquireP50Micros() { return database.getAcquireLatency().getPercentileMicros(50); }
+
+        @Override
+        public double getAcquireP99Micros() { return database.getAcquireLatency().getPercentileMicros(99); }
+
+        @Override
+        public double getAcquireMaxMicros() { return database.getAcquireLatency().getMaxMicros(); }
+    }
+}
@@ -0,0 +1,245 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.SwingUtilities;
+
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * LibraryService
+ * The LibraryService class runs {@link Library} calls on a small pool of
+ * background threads and hands back a {@link CompletableFuture} for each, so
+ * the Swing event thread never waits on the database. The pool and its queue
+ * are bounded; a call that cannot be queued fails at once with a
+ * {@link RejectedExecutionException} instead of piling up.
+ *
+ * Every call has a timeout, after which its future fails with a
+ * {@link TimeoutException}. Cancelling a future, or letting it time out,
+ * drops the call if it has not started yet and interrupts it if it has.
+ * Callers that update Swing components should attach their callbacks with
+ * {@link #ON_EDT} as the executor.
+ */
+public class LibraryService implements AutoCloseable {
+    /** Runs callbacks on the Swing event thread, for use with the *Async methods of CompletableFuture. */
+    public static final Executor ON_EDT = SwingUtilities::invokeLater;
+
+    private static final int DEFAULT_THREADS = 4;
+    private static final int DEFAULT_QUEUE_CAPACITY = 256;
+    private static final long DEFAULT_TIMEOUT_MILLIS = 30_000;
+
+    private final Library library;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+
+    /**
+     * Creates a service over a library with the default pool size, queue size
+     * and timeout.
+     *
+     * @param library The Library instance to run calls on.
+     */
+    public LibraryService(Library library) {
+        this(library, DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Creates a service over a library.
+     *
+     * @param library       The Library instance to run calls on.
+     * @param threads       The number of background threads; keep it below the connection pool size.
+     * @param queueCapacity The number of calls that may wait for a thread.
+     * @param timeoutMillis How long a call may take, queueing included, before its future fails.
+     */
+    public LibraryService(Library library, int threads, int queueCapacity, long timeoutMillis) {
+        this.library = library;
+        this.timeoutMillis = timeoutMillis;
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "library-service-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true); // Never keeps the application alive on exit
+            return thread;
+        };
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), threadFactory);
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Removes a book. See {@link Library#removeBookById(int)}.
+     *
+     * @param id The barcode of the book to remove.
+     * @return A future of true if the book was removed.
+     */
+    public CompletableFuture<Boolean> removeBookById(int id) {
+        return submit(() -> library.removeBookById(id));
+    }
+
+    /**
+     * Checks a book out if it is in, or in if it is out. See {@link Library#toggleBookStatus(int)}.
+     *
+     * @param barcode The barcode of the book.
+     * @return A future of the new state, or of {@code null} if there is no such book.
+     */
+    public CompletableFuture<StatusChange> toggleBookStatus(int barcode) {
+        return submit(() -> library.toggleBookStatus(barcode));
+    }
+
+    /**
+     * Checks out every book in a list. See {@link Library#checkOutAll(int[])}.
+     *
+     * @param barcodes The barcodes of the books.
+     * @return A future of the outcome for each barcode.
+     */
+    public CompletableFuture<BulkResult> checkOutAll(int[] barcodes) {
+        return submit(() -> library.checkOutAll(barcodes));
+    }
+
+    /**
+     * Checks in every book in a list. See {@link Library#checkInAll(int[])}.
+     *
+     * @param barcodes The barcodes of the books.
+     * @return A future of the outcome for each barcode.
+     */
+    public CompletableFuture<BulkResult> checkInAll(int[] barcodes) {
+        return submit(() -> library.checkInAll(barcodes));
+    }
+
+    /**
+     * Removes every book in a list. See {@link Library#removeAll(int[])}.
+     *
+     * @param barcodes The barcodes of the books.
+     * @return A future of the outcome for each barcode.
+     */
+    public CompletableFuture<BulkResult> removeAll(int[] barcodes) {
+        return submit(() -> library.removeAll(barcodes));
+    }
+
+    /**
+     * Searches for books by title. See {@link Library#searchByTitle(String)}.
+     *
+     * @param targetTitle The title to search for.
+     * @return A future of the "exact" and "close" matches by barcode.
+     */
+    public CompletableFuture<Map<String, List<Integer>>> searchByTitle(String targetTitle) {
+        return submit(() -> library.searchByTitle(targetTitle));
+    }
+
+    /**
+     * Suggests titles for autocomplete. See {@link Library#suggestTitles(String, int)}.
+     *
+     * @param prefix The text typed so far.
+     * @param limit  The maximum number of titles to return.
+     * @return A future of the matching titles.
+     */
+    public CompletableFuture<List<String>> suggestTitles(String prefix, int limit) {
+        return submit(() -> library.suggestTitles(prefix, limit));
+    }
+
+    /**
+     * Looks up several books. See {@link Library#getBookByBarcode(int)}.
+     *
+     * @param barcodes The barcodes of the books.
+     * @return A future of the books in the same order, with {@code null} for a barcode with no book.
+     */
+    public CompletableFuture<List<Book>> getBooksByBarcode(List<Integer> barcodes) {
+        return submit(() -> {
+            List<Book> books = new ArrayList<>(barcodes.size());
+            for (int barcode : barcodes) {
+                books.add(library.getBookByBarcode(barcode));
+            }
+            return books;
+        });
+    }
+
+    /**
+     * Gets the running totals of books. See {@link Library#getStatistics()}.
+     *
+     * @return A future of the current totals.
+     */
+    public CompletableFuture<LibraryStats.Snapshot> getStatistics() {
+        return submit(library::getStatistics);
+    }
+
+    /**
+     * Reads one page of books, finding where it starts first if no token is
+     * known. See {@link Library#getPageToken(int)} and {@link Library#listBooksPage(String, int)}.
+     *
+     * @param pageToken The token of the page, or {@code null} to look it up from the offset.
+     * @param offset    The zero based position of the page's first book.
+     * @param pageSize  The number of books per page.
+     * @return A future of the page, empty if the offset is past the last book.
+     */
+    public CompletableFuture<BookPage> listBooksPage(String pageToken, int offset, int pageSize) {
+        return submit(() -> {
+            String token = pageToken;
+            if (token == null && offset > 0) {
+                token = library.getPageToken(offset);
+                if (token == null) {
+                    return new BookPage(new ArrayList<>(), null);
+                }
+            }
+            return library.listBooksPage(token, pageSize);
+        });
+    }
+
+    /**
+     * Runs any Library work on the service's threads, with the same timeout
+     * and cancellation as the other calls.
+     *
+     * @param task The work to run.
+     * @param <T>  The type of the result.
+     * @return A future of the task's result.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        SqlTrace.Action action = SqlTrace.currentAction(); // The SQL it runs counts towards the caller's action
+        Future<?> running;
+        try {
+            running = executor.submit(() -> {
+                try {
+                    future.complete(SqlTrace.callIn(action, task));
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        future.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+        future.whenComplete((result, error) -> {
+            if (error instanceof CancellationException || error instanceof TimeoutException) {
+                running.cancel(true); // Drop it from the queue, or interrupt it if already running
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Gets the number of calls waiting for a thread.
+     *
+     * @return The queue length.
+     */
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Stops the background threads, interrupting running calls and dropping
+     * queued ones.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
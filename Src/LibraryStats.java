@@ -0,0 +1,237 @@
+import java.time.LocalDate;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * LibraryStats
+ * The LibraryStats class keeps running totals of the books in the library:
+ * how many there are, how many are checked out and how many are overdue. The
+ * Library adjusts the totals as it changes books, so reading them costs nothing,
+ * and a background task periodically recounts them from the database to
+ * correct any drift, such as books that became overdue overnight or changes
+ * made by another program.
+ */
+public class LibraryStats {
+    private final Counters running = new Counters();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock(); // Changes share it; a recount's start and end take it alone
+    private Counters sinceCountStarted; // The changes recorded while a recount runs, else null; guarded by lock
+    private final Callable<Snapshot> recount;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean firstRecountTried = new AtomicBoolean();
+    private volatile boolean reconciled;
+    private volatile long lastReconciledMillis;
+
+    /**
+     * Creates the statistics and starts reconciling them in the background.
+     *
+     * @param recount       Counts the books in the database.
+     * @param periodSeconds How often to reconcile with the database.
+     */
+    public LibraryStats(Callable<Snapshot> recount, long periodSeconds) {
+        this.recount = recount;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "library-stats");
+            thread.setDaemon(true); // Never keep the program alive
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::reconcileQuietly, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Gets the current totals. The first call waits for a recount if none has
+     * finished yet; if that recount fails, this and later calls read the
+     * running totals and leave retrying to the background task.
+     *
+     * @return The totals.
+     */
+    public Snapshot getSnapshot() {
+        if (!reconciled && firstRecountTried.compareAndSet(false, true)) {
+            reconcileQuietly();
+        }
+        return new Snapshot(running.total.get(), running.checkedOut.get(), running.overdue.get());
+    }
+
+    /**
+     * Records new books.
+     *
+     * @param count           The number of books added.
+     * @param checkedOutCount How many of them are checked out.
+     */
+    public void booksAdded(long count, long checkedOutCount) {
+        add(count, checkedOutCount, 0);
+    }
+
+    /**
+     * Records a removed book.
+     *
+     * @param book The book as it was before it was removed.
+     */
+    public void bookRemoved(Book book) {
+        boolean out = book.getStatus();
+        add(-1, out ? -1 : 0, out && isOverdue(book.getDueDate()) ? -1 : 0);
+    }
+
+    /**
+     * Records a book being checked out.
+     */
+    public void bookCheckedOut() {
+        add(0, 1, 0);
+    }
+
+    /**
+     * Records a book being checked in.
+     *
+     * @param oldDueDate The due date the book had, or {@code null} if it is not known.
+     */
+    public void bookCheckedIn(String oldDueDate) {
+        add(0, -1, isOverdue(oldDueDate) ? -1 : 0);
+    }
+
+    /**
+     * Recounts the books in the database now. Changes recorded while the count
+     * runs are kept apart and added to the count, so they are not lost; one
+     * recount runs at a time.
+     *
+     * @throws Exception If the books cannot be counted.
+     */
+    public synchronized void reconcile() throws Exception {
+        Counters changes = new Counters();
+        lock.writeLock().lock();
+        try {
+            sinceCountStarted = changes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Snapshot counted = null;
+        try {
+            counted = recount.call();
+        } finally {
+            lock.writeLock().lock(); // No change can land between reading the changes and replacing the totals
+            try {
+                sinceCountStarted = null;
+                if (counted != null) {
+                    running.total.set(counted.getTotal() + changes.total.get());
+                    running.checkedOut.set(counted.getCheckedOut() + changes.checkedOut.get());
+                    running.overdue.set(counted.getOverdue() + changes.overdue.get());
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        reconciled = true;
+        lastReconciledMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Stops the background recount. The totals can still be read and are
+     * still adjusted; they are only no longer corrected.
+     */
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Gets when the totals were last recounted.
+     *
+     * @return The time in milliseconds since the epoch, or 0 if never.
+     */
+    public long getLastReconciledMillis() {
+        return lastReconciledMillis;
+    }
+
+    /**
+     * Adds a change to the running totals, and to the changes since the
+     * running recount started if there is one.
+     */
+    private void add(long totalChange, long checkedOutChange, long overdueChange) {
+        lock.readLock().lock();
+        try {
+            running.add(totalChange, checkedOutChange, overdueChange);
+            if (sinceCountStarted != null) {
+                sinceCountStarted.add(totalChange, checkedOutChange, overdueChange);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void reconcileQuietly() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            System.out.println("Statistics Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Tells whether a due date has passed.
+     *
+     * @param dueDate A due date in yyyy-MM-dd form, or {@code null}.
+     * @return True if the date is before today.
+     */
+    static boolean isOverdue(String dueDate) {
+        return dueDate != null && dueDate.compareTo(LocalDate.now().toString()) < 0;
+    }
+
+    /**
+     * The three totals, or the changes to them.
+     */
+    private static final class Counters {
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong checkedOut = new AtomicLong();
+        private final AtomicLong overdue = new AtomicLong();
+
+        void add(long totalChange, long checkedOutChange, long overdueChange) {
+            total.addAndGet(totalChange);
+            checkedOut.addAndGet(checkedOutChange);
+            overdue.addAndGet(overdueChange);
+        }
+    }
+
+    /**
+     * Snapshot
+     * The totals at one moment.
+     */
+    public static final class Snapshot {
+        private final long total;
+        private final long checkedOut;
+        private final long overdue;
+
+        /**
+         * Creates a snapshot.
+         *
+         * @param total      The number of books.
+         * @param checkedOut The number of checked out books.
+         * @param overdue    The number of checked out books past their due date.
+         */
+        public Snapshot(long total, long checkedOut, long overdue) {
+            this.total = total;
+            this.checkedOut = checkedOut;
+            this.overdue = overdue;
+        }
+
+        /** @return The number of books. */
+        public long getTotal() { return total; }
+
+        /** @return The number of checked out books. */
+        public long getCheckedOut() { return checkedOut; }
+
+        /** @return The number of books on the shelf. */
+        public long getAvailable() { return total - checkedOut; }
+
+        /** @return The number of checked out books past their due date. */
+        public long getOverdue() { return overdue; }
+
+        @Override
+        public String toString() {
+            return "total=" + total + " checkedOut=" + checkedOut + " available=" + getAvailable() + " overdue=" + overdue;
+        }
+    }
+}
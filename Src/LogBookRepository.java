@@ -0,0 +1,879 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * LogBookRepository
+ * The LogBookRepository class keeps the books in a single local file, for a
+ * branch kiosk that runs without MySQL. The file is an append-only log of
+ * records, memory-mapped so that reading and appending are plain memory
+ * accesses. Every change appends one record holding the new state of each
+ * book it touches, or a deletion marker, and never rewrites older bytes; a
+ * barcode-to-offset index in memory points at the latest state of each book.
+ *
+ * Each record carries a CRC32C checksum and is applied as a whole, so a
+ * bulk change is all or nothing. When the log is opened it is replayed from
+ * the start to rebuild the indexes, stopping at the first record that is
+ * incomplete or fails its checksum, which is where a crash cut the last write
+ * short. Superseded records are reclaimed by a background compaction that
+ * copies the live books to a new file and swaps it in; writers only wait
+ * while the records appended during the copy are carried over.
+ *
+ * Changes are in the operating system's page cache as soon as a call
+ * returns, so they survive the program crashing. They are forced to disk
+ * every second, or on every change if the repository is opened with
+ * syncEveryWrite, which also survives a power cut at the cost of a disk
+ * write per change. The log can grow to 2 GB.
+ *
+ * Record layout, big-endian: int length of the rest of the record, int CRC32C
+ * of everything after it, int entry count, then the entries. An entry is a
+ * byte type and an int barcode; a put entry goes on with a byte status and
+ * the due date, title and author, each an unsigned short byte count (0xFFFF
+ * for none) followed by UTF-8 bytes.
+ */
+public class LogBookRepository implements BookRepository, AutoCloseable {
+    private static final byte[] MAGIC = "LMSLOG01".getBytes(StandardCharsets.US_ASCII);
+    private static final int FILE_HEADER_SIZE = MAGIC.length;
+    private static final int RECORD_HEADER_SIZE = 12;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final int NO_TEXT = 0xFFFF;
+    private static final int INITIAL_CAPACITY = 1 << 20;
+    private static final long MAX_CAPACITY = Integer.MAX_VALUE;
+    private static final long MIN_COMPACT_BYTES = 4 << 20;
+    private static final int COMPACT_RECORD_ENTRIES = 4096;
+    private static final long BACKGROUND_PERIOD_MILLIS = 1000;
+
+    private final Path path;
+    private final Path compactPath;
+    private final boolean syncEveryWrite;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object compactionLock = new Object();
+    private final ScheduledExecutorService background;
+    private final CRC32C crc = new CRC32C();
+
+    private FileChannel channel;
+    private FileLock fileLock;
+    private MappedByteBuffer log;
+    private int end;
+    private long liveBytes;
+    private boolean closed;
+
+    private IntHashMap<Integer> offsets = new IntHashMap<>();
+    private final TreeMap<String, IntList> byTitle = new TreeMap<>();
+    private final IntList checkedOut = new IntList();
+
+    private ByteBuffer scratch = ByteBuffer.allocate(64 * 1024);
+    private int scratchEntries;
+
+    /**
+     * Opens a log, creating it if it does not exist, with changes forced to
+     * disk once a second.
+     *
+     * @param path The log file.
+     * @throws IOException If the file cannot be opened, is not a book log, or
+     *                     is already open.
+     */
+    public LogBookRepository(Path path) throws IOException {
+        this(path, false);
+    }
+
+    /**
+     * Opens a log, creating it if it does not exist.
+     *
+     * @param path           The log file.
+     * @param syncEveryWrite True to force every change to disk before the call returns.
+     * @throws IOException If the file cannot be opened, is not a book log, or
+     *                     is already open.
+     */
+    public LogBookRepository(Path path, boolean syncEveryWrite) throws IOException {
+        this.path = path;
+        this.compactPath = path.resolveSibling(path.getFileName() + ".compact");
+        this.syncEveryWrite = syncEveryWrite;
+        Files.deleteIfExists(compactPath); // Left behind by a compaction that did not finish
+        openLog();
+        this.background = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "log-repository");
+            thread.setDaemon(true); // Never keep the program alive
+            return thread;
+        });
+        background.scheduleWithFixedDelay(this::maintainQuietly, BACKGROUND_PERIOD_MILLIS,
+                BACKGROUND_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void insert(Book book) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            if (offsets.containsKey(book.getId())) {
+                throw new SQLIntegrityConstraintViolationException("Duplicate entry '" + book.getId() + "' for key 'books.PRIMARY'");
+            }
+            beginRecord();
+            putEntry(book.getId(), book.getStatus(), book.getDueDate(), book.getTitle(), book.getAuthor());
+            applyRecord(commitRecord());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int insertAll(int[] barcodes, String[] titles, String[] authors, int count) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            beginRecord();
+            IntHashMap<Boolean> added = new IntHashMap<>(count);
+            for (int i = 0; i < count; i++) {
+                if (!offsets.containsKey(barcodes[i]) && added.put(barcodes[i], Boolean.TRUE) == null) {
+                    putEntry(barcodes[i], false, null, titles[i], authors[i]);
+                }
+            }
+            if (scratchEntries > 0) {
+                applyRecord(commitRecord());
+            }
+            return added.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Book findByBarcode(int barcode) throws SQLException {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            Integer offset = offsets.get(barcode);
+            return offset == null ? null : readBook(offset);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Book delete(int barcode) throws SQLException {
+        Book[] removed = deleteAll(new int[] {barcode});
+        return removed[0];
+    }
+
+    @Override
+    public StatusChange toggleStatus(int barcode, String dueDate) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            Integer offset = offsets.get(barcode);
+            if (offset == null) {
+                return null;
+            }
+            Book book = readBook(offset);
+            boolean nowCheckedOut = !book.getStatus();
+            String newDueDate = nowCheckedOut ? dueDate : null;
+            beginRecord();
+            putEntry(barcode, nowCheckedOut, newDueDate, book.getTitle(), book.getAuthor());
+            applyRecord(commitRecord());
+            return new StatusChange(barcode, nowCheckedOut, newDueDate, book.getDueDate());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Book[] setStatusAll(int[] distinct, boolean checkedOut, String dueDate) throws SQLException {
+        Book[] before = new Book[distinct.length];
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            beginRecord();
+            for (int i = 0; i < distinct.length; i++) {
+                Integer offset = offsets.get(distinct[i]);
+                if (offset == null) {
+                    continue;
+                }
+                before[i] = readBook(offset);
+                if (before[i].getStatus() != checkedOut) {
+                    putEntry(distinct[i], checkedOut, dueDate, before[i].getTitle(), before[i].getAuthor());
+                }
+            }
+            if (scratchEntries > 0) {
+                applyRecord(commitRecord());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return before;
+    }
+
+    @Override
+    public Book[] deleteAll(int[] distinct) throws SQLException {
+        Book[] removed = new Book[distinct.length];
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            beginRecord();
+            for (int i = 0; i < distinct.length; i++) {
+                Integer offset = offsets.get(distinct[i]);
+                if (offset != null) {
+                    removed[i] = readBook(offset);
+                    deleteEntry(distinct[i]);
+                }
+            }
+            if (scratchEntries > 0) {
+                applyRecord(commitRecord());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return removed;
+    }
+
+    @Override
+    public BookPage listPage(String pageToken, int pageSize) throws SQLException {
+        List<Book> pageBooks = new ArrayList<>(pageSize);
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            Map<String, IntList> titles = byTitle;
+            String afterTitle = null;
+            int afterBarcode = 0;
+            if (pageToken != null) {
+                afterTitle = BookPage.decodeTitle(pageToken);
+                afterBarcode = BookPage.decodeBarcode(pageToken);
+                titles = byTitle.tailMap(afterTitle, true);
+            }
+            for (Map.Entry<String, IntList> entry : titles.entrySet()) {
+                IntList barcodes = entry.getValue();
+                int start = 0;
+                if (entry.getKey().equals(afterTitle)) {
+                    while (start < barcodes.size() && barcodes.get(start) <= afterBarcode) {
+                        start++;
+                    }
+                }
+                for (int i = start; i < barcodes.size() && pageBooks.size() <= pageSize; i++) {
+                    pageBooks.add(readBook(offsets.get(barcodes.get(i))));
+                }
+                if (pageBooks.size() > pageSize) {
+                    break; // One extra book tells us whether another page exists
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        String nextPageToken = null;
+        if (pageBooks.size() > pageSize) {
+            pageBooks.remove(pageSize);
+            Book last = pageBooks.get(pageSize - 1);
+            nextPageToken = BookPage.encodeToken(titleKey(last.getTitle()), last.getId());
+        }
+        return new BookPage(pageBooks, nextPageToken);
+    }
+
+    @Override
+    public String getPageToken(int offset) throws SQLException {
+        int remaining = offset - 1;
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            for (Map.Entry<String, IntList> entry : byTitle.entrySet()) {
+                IntList barcodes = entry.getValue();
+                if (remaining < barcodes.size()) {
+                    return BookPage.encodeToken(entry.getKey(), barcodes.get(remaining));
+                }
+                remaining -= barcodes.size();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return null;
+    }
+
+    @Override
+    public LibraryStats.Snapshot count(LocalDate today) throws SQLException {
+        String todayText = today.toString();
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            long overdue = 0;
+            for (int i = 0; i < checkedOut.size(); i++) {
+                int entry = offsets.get(checkedOut.get(i));
+                String dueDate = readText(log, entry + 6);
+                if (dueDate != null && dueDate.compareTo(todayText) < 0) {
+                    overdue++;
+                }
+            }
+            return new LibraryStats.Snapshot(offsets.size(), checkedOut.size(), overdue);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void forEachBarcode(IntConsumer action) throws SQLException {
+        int[] barcodes;
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            barcodes = keysOf(offsets);
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (int barcode : barcodes) {
+            action.accept(barcode);
+        }
+    }
+
+    @Override
+    public boolean isDurable() { return true; }
+
+    /**
+     * Reads the books a few at a time, so books changed or removed during the
+     * walk are seen as they are when reached.
+     */
+    @Override
+    public void forEach(Consumer<Book> action) throws SQLException {
+        int[] barcodes;
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            barcodes = keysOf(offsets);
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (int barcode : barcodes) {
+            Book book = findByBarcode(barcode);
+            if (book != null) {
+                action.accept(book);
+            }
+        }
+    }
+
+    /**
+     * Gets the size of the log, including records that compaction would reclaim.
+     *
+     * @return The bytes in use.
+     */
+    public long getLogBytes() {
+        lock.readLock().lock();
+        try {
+            return end;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrites the log with only the latest state of each book. Changes may
+     * continue during most of the copy; they wait only while the records they
+     * appended meanwhile are carried over and the new file is swapped in.
+     *
+     * @throws IOException If the new log cannot be written. The old log is then kept.
+     */
+    public void compact() throws IOException {
+        synchronized (compactionLock) {
+            int snapshotEnd;
+            MappedByteBuffer source;
+            int[] barcodes;
+            int[] entries;
+            lock.readLock().lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                snapshotEnd = end;
+                source = log;
+                barcodes = keysOf(offsets);
+                entries = new int[barcodes.length];
+                for (int i = 0; i < barcodes.length; i++) {
+                    entries[i] = offsets.get(barcodes[i]);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            // Records before snapshotEnd never change, so they are copied without the lock
+            IntHashMap<Integer> newOffsets = new IntHashMap<>(barcodes.length);
+            boolean swapped = false;
+            try {
+                long written = FILE_HEADER_SIZE;
+                try (FileChannel out = FileChannel.open(compactPath, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    out.write(ByteBuffer.wrap(MAGIC));
+                    CRC32C checksum = new CRC32C();
+                    ByteBuffer record = ByteBuffer.allocate(64 * 1024);
+                    for (int from = 0; from < entries.length; from += COMPACT_RECORD_ENTRIES) {
+                        int to = Math.min(entries.length, from + COMPACT_RECORD_ENTRIES);
+                        record.clear();
+                        record.position(RECORD_HEADER_SIZE);
+                        for (int i = from; i < to; i++) {
+                            int size = entrySize(source, entries[i]);
+                            if (record.remaining() < size) {
+                                record = grow(record, size);
+                            }
+                            newOffsets.put(barcodes[i], (int) written + record.position());
+                            byte[] bytes = new byte[size];
+                            source.get(entries[i], bytes);
+                            record.put(bytes);
+                        }
+                        written += writeRecord(out, record, to - from, checksum);
+                    }
+                }
+
+                lock.writeLock().lock();
+                try {
+                    if (closed) {
+                        return;
+                    }
+                    // Carry over what was appended during the copy, record by record
+                    int tailLength = end - snapshotEnd;
+                    if (written + tailLength > MAX_CAPACITY) {
+                        throw new IOException("The compacted log would exceed " + MAX_CAPACITY + " bytes");
+                    }
+                    byte[] tail = new byte[tailLength];
+                    log.get(snapshotEnd, tail);
+                    try (FileChannel out = FileChannel.open(compactPath, StandardOpenOption.WRITE)) {
+                        out.write(ByteBuffer.wrap(tail), written);
+                        out.force(true); // Closed before the move, which some systems refuse on an open file
+                    }
+                    for (int position = snapshotEnd; position < end; position = nextRecord(log, position)) {
+                        int entry = position + RECORD_HEADER_SIZE;
+                        for (int n = log.getInt(position + 8); n > 0; n--) {
+                            int barcode = log.getInt(entry + 1);
+                            if (log.get(entry) == PUT) {
+                                newOffsets.put(barcode, (int) (written + entry - snapshotEnd));
+                            } else {
+                                newOffsets.remove(barcode);
+                            }
+                            entry += entrySize(log, entry);
+                        }
+                    }
+                    written += tailLength;
+
+                    log.force();
+                    fileLock.release();
+                    channel.close();
+                    Files.move(compactPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    swapped = true;
+                    channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    fileLock = lockFile(channel);
+                    end = (int) written;
+                    log = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacityFor(end));
+                    offsets = newOffsets;
+                } catch (IOException e) {
+                    if (swapped) {
+                        closed = true; // The old file is gone and the new one cannot be mapped
+                    }
+                    throw e;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } finally {
+                if (!swapped) {
+                    Files.deleteIfExists(compactPath);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the background work, forces the log to disk and closes it.
+     */
+    @Override
+    public void close() {
+        background.shutdownNow();
+        synchronized (compactionLock) {
+            lock.writeLock().lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                log.force();
+                fileLock.release();
+                channel.close();
+            } catch (IOException e) {
+                System.out.println("Log Error: " + e.getMessage());
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Opens and maps the log file, writing the file header to a new log and
+     * replaying an existing one.
+     *
+     * @throws IOException If the file cannot be opened or is not a book log.
+     */
+    private void openLog() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            fileLock = lockFile(channel);
+            long size = channel.size();
+            if (size > MAX_CAPACITY) {
+                throw new IOException(path + " is larger than " + MAX_CAPACITY + " bytes");
+            }
+            log = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, INITIAL_CAPACITY));
+            if (size == 0) {
+                log.put(0, MAGIC);
+                end = FILE_HEADER_SIZE;
+                return;
+            }
+            byte[] magic = new byte[FILE_HEADER_SIZE];
+            log.get(0, magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException(path + " is not a book log");
+            }
+            replay();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Applies every whole record from the start of the log. The first record
+     * that is cut short or fails its checksum ends the log; it and anything
+     * after it are wiped so a later append cannot be mistaken for part of it.
+     */
+    private void replay() {
+        int position = FILE_HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= log.capacity()) {
+            int length = log.getInt(position);
+            if (length < RECORD_HEADER_SIZE - 4 || position + 4L + length > log.capacity()
+                    || checksum(log, position, length) != log.getInt(position + 4)) {
+                break;
+            }
+            applyRecord(position);
+            position += 4 + length;
+        }
+        end = position;
+        if (end + 4 <= log.capacity() && log.getInt(end) != 0) {
+            System.out.println("Log Error: discarding an incomplete record at byte " + end + " of " + path);
+            byte[] zeros = new byte[64 * 1024];
+            for (int at = end; at < log.capacity(); at += zeros.length) {
+                log.put(at, zeros, 0, Math.min(zeros.length, log.capacity() - at));
+            }
+            log.force();
+        }
+    }
+
+    /**
+     * Brings the indexes up to date with one record of the log.
+     *
+     * @param position Where the record starts.
+     */
+    private void applyRecord(int position) {
+        int entry = position + RECORD_HEADER_SIZE;
+        for (int n = log.getInt(position + 8); n > 0; n--) {
+            int barcode = log.getInt(entry + 1);
+            Integer previous = offsets.get(barcode);
+            if (previous != null) {
+                unindex(barcode, previous);
+            }
+            int size = entrySize(log, entry);
+            if (log.get(entry) == PUT) {
+                offsets.put(barcode, entry);
+                byTitle.computeIfAbsent(titleKey(readTitle(entry)), key -> new IntList()).add(barcode);
+                if (log.get(entry + 5) != 0) {
+                    checkedOut.add(barcode);
+                }
+                liveBytes += size;
+            } else {
+                offsets.remove(barcode);
+            }
+            entry += size;
+        }
+    }
+
+    /**
+     * Drops the book stored at an entry from the title and status indexes.
+     *
+     * @param barcode The barcode of the book.
+     * @param entry   Where its latest put entry starts.
+     */
+    private void unindex(int barcode, int entry) {
+        String key = titleKey(readTitle(entry));
+        IntList barcodes = byTitle.get(key);
+        if (barcodes != null && barcodes.remove(barcode) && barcodes.isEmpty()) {
+            byTitle.remove(key);
+        }
+        if (log.get(entry + 5) != 0) {
+            checkedOut.remove(barcode);
+        }
+        liveBytes -= entrySize(log, entry);
+    }
+
+    /**
+     * Starts a new record in the scratch buffer.
+     */
+    private void beginRecord() {
+        scratch.clear();
+        scratch.position(RECORD_HEADER_SIZE);
+        scratchEntries = 0;
+    }
+
+    /**
+     * Adds the state of a book to the record being built.
+     *
+     * @throws SQLException If a text is too long to store.
+     */
+    private void putEntry(int barcode, boolean status, String dueDate, String title, String author) throws SQLException {
+        byte[] due = encode(dueDate);
+        byte[] titleBytes = encode(title);
+        byte[] authorBytes = encode(author);
+        int size = 6 + textSize(due) + textSize(titleBytes) + textSize(authorBytes);
+        if (scratch.remaining() < size) {
+            scratch = grow(scratch, size);
+        }
+        scratch.put(PUT).putInt(barcode).put((byte) (status ? 1 : 0));
+        putText(due);
+        putText(titleBytes);
+        putText(authorBytes);
+        scratchEntries++;
+    }
+
+    /**
+     * Adds the removal of a book to the record being built.
+     *
+     * @param barcode The barcode of the book.
+     */
+    private void deleteEntry(int barcode) {
+        if (scratch.remaining() < 5) {
+            scratch = grow(scratch, 5);
+        }
+        scratch.put(DELETE).putInt(barcode);
+        scratchEntries++;
+    }
+
+    /**
+     * Appends the record being built to the log, growing the mapping if it
+     * does not fit.
+     *
+     * @return Where the record starts.
+     * @throws SQLException If the log is full or cannot be grown.
+     */
+    private int commitRecord() throws SQLException {
+        int length = scratch.position() - 4;
+        scratch.putInt(0, length);
+        scratch.putInt(8, scratchEntries);
+        crc.reset();
+        crc.update(scratch.array(), 8, length - 4);
+        scratch.putInt(4, (int) crc.getValue());
+
+        int start = end;
+        if ((long) start + 4 + length + 4 > log.capacity()) {
+            growLog((long) start + 4 + length + 4); // Room for the zero that marks the end
+        }
+        log.put(start, scratch.array(), 0, length + 4);
+        end = start + 4 + length;
+        if (syncEveryWrite) {
+            log.force(start, length + 4);
+        }
+        return start;
+    }
+
+    /**
+     * Maps a larger part of the file.
+     *
+     * @param needed The capacity needed.
+     * @throws SQLException If the log would exceed its maximum size or cannot be mapped.
+     */
+    private void growLog(long needed) throws SQLException {
+        if (needed > MAX_CAPACITY) {
+            throw new SQLException("The book log is full; it can hold " + MAX_CAPACITY + " bytes");
+        }
+        try {
+            log = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(needed, capacityFor(log.capacity())));
+        } catch (IOException e) {
+            throw new SQLException("Could not grow the book log: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Forces recent changes to disk and compacts the log once more than half
+     * of it has been superseded.
+     */
+    private void maintainQuietly() {
+        try {
+            boolean compact;
+            lock.readLock().lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                if (!syncEveryWrite) {
+                    log.force();
+                }
+                compact = end > MIN_COMPACT_BYTES && end - FILE_HEADER_SIZE > 2 * liveBytes;
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (compact) {
+                compact();
+            }
+        } catch (Exception e) {
+            System.out.println("Log Error: " + e.getMessage());
+        }
+    }
+
+    private void checkOpen() throws SQLException {
+        if (closed) {
+            throw new SQLException("The book log " + path + " is closed");
+        }
+    }
+
+    private Book readBook(int entry) {
+        int barcode = log.getInt(entry + 1);
+        boolean status = log.get(entry + 5) != 0;
+        int at = entry + 6;
+        String dueDate = readText(log, at);
+        at += textSize(log, at);
+        String title = readText(log, at);
+        at += textSize(log, at);
+        return new Book(barcode, title, readText(log, at), status, dueDate);
+    }
+
+    private String readTitle(int entry) {
+        int at = entry + 6;
+        return readText(log, at + textSize(log, at));
+    }
+
+    private void putText(byte[] bytes) {
+        if (bytes == null) {
+            scratch.putShort((short) NO_TEXT);
+        } else {
+            scratch.putShort((short) bytes.length).put(bytes);
+        }
+    }
+
+    private static byte[] encode(String text) throws SQLException {
+        if (text == null) {
+            return null;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= NO_TEXT) {
+            throw new SQLException("Text of " + bytes.length + " bytes is too long for the book log");
+        }
+        return bytes;
+    }
+
+    private static String readText(ByteBuffer buffer, int at) {
+        int length = buffer.getShort(at) & 0xFFFF;
+        if (length == NO_TEXT) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(at + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int textSize(byte[] bytes) {
+        return 2 + (bytes == null ? 0 : bytes.length);
+    }
+
+    private static int textSize(ByteBuffer buffer, int at) {
+        int length = buffer.getShort(at) & 0xFFFF;
+        return 2 + (length == NO_TEXT ? 0 : length);
+    }
+
+    /**
+     * Gets the size of the entry that starts at a position.
+     */
+    private static int entrySize(ByteBuffer buffer, int entry) {
+        if (buffer.get(entry) == DELETE) {
+            return 5;
+        }
+        int at = entry + 6;
+        for (int field = 0; field < 3; field++) {
+            at += textSize(buffer, at);
+        }
+        return at - entry;
+    }
+
+    private static int nextRecord(ByteBuffer buffer, int position) {
+        return position + 4 + buffer.getInt(position);
+    }
+
+    private static int checksum(ByteBuffer buffer, int position, int length) {
+        CRC32C checksum = new CRC32C();
+        checksum.update(buffer.slice(position + 8, length - 4));
+        return (int) checksum.getValue();
+    }
+
+    /**
+     * Finishes a record of copied entries and writes it to the end of a file.
+     *
+     * @return The bytes written.
+     */
+    private static int writeRecord(FileChannel out, ByteBuffer record, int entryCount, CRC32C checksum) throws IOException {
+        int length = record.position() - 4;
+        record.putInt(0, length);
+        record.putInt(8, entryCount);
+        checksum.reset();
+        checksum.update(record.array(), 8, length - 4);
+        record.putInt(4, (int) checksum.getValue());
+        record.flip();
+        while (record.hasRemaining()) {
+            out.write(record);
+        }
+        return length + 4;
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int needed) {
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+        buffer.flip();
+        return larger.put(buffer);
+    }
+
+    private static long capacityFor(long bytes) {
+        return Math.min(MAX_CAPACITY, Math.max(INITIAL_CAPACITY, bytes * 2));
+    }
+
+    private static int[] keysOf(IntHashMap<?> map) {
+        int[] keys = new int[map.size()];
+        int[] count = new int[1];
+        map.forEach((key, value) -> keys[count[0]++] = key);
+        return keys;
+    }
+
+    private static FileLock lockFile(FileChannel channel) throws IOException {
+        FileLock fileLock;
+        try {
+            fileLock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            fileLock = null; // Already open in this program
+        }
+        if (fileLock == null) {
+            throw new IOException("The book log is already open");
+        }
+        return fileLock;
+    }
+
+    private static String titleKey(String title) {
+        return title == null ? "" : title;
+    }
+}
@@ -0,0 +1,125 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class LogBookRepositoryTest {
+
+    @Test
+    void testReplayStopsAtTruncatedTail() throws Exception {
+        Path file = Files.createTempFile("lms-log-test", ".log");
+        try {
+            long whole;
+            long cut;
+            try (LogBookRepository log = new LogBookRepository(file)) {
+                log.insert(new Book(1, "Dune", "Frank Herbert"));
+                log.insert(new Book(2, "Emma", "Jane Austen"));
+                whole = log.getLogBytes();
+                log.insert(new Book(3, "Beloved", "Toni Morrison"));
+                cut = log.getLogBytes() - 5;
+            }
+            try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+                raf.setLength(cut); // A crash part way through writing the last record
+            }
+
+            try (LogBookRepository log = new LogBookRepository(file)) {
+                assertEquals("Dune", log.findByBarcode(1).getTitle());
+                assertEquals("Emma", log.findByBarcode(2).getTitle());
+                assertNull(log.findByBarcode(3));
+                assertEquals(whole, log.getLogBytes());
+                log.insert(new Book(4, "Armada", "Ernest Cline"));
+            }
+            try (LogBookRepository log = new LogBookRepository(file)) {
+                assertNull(log.findByBarcode(3));
+                assertEquals("Armada", log.findByBarcode(4).getTitle());
+                assertEquals(3, log.count(LocalDate.now()).getTotal());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testCompactionKeepsConcurrentToggles() throws Exception {
+        Path file = Files.createTempFile("lms-log-test", ".log");
+        int books = 20_000;
+        int threads = 4;
+        try {
+            boolean[] checkedOut = new boolean[books + 1];
+            try (LogBookRepository log = new LogBookRepository(file)) {
+                int[] barcodes = new int[books];
+                String[] titles = new String[books];
+                String[] authors = new String[books];
+                for (int i = 0; i < books; i++) {
+                    barcodes[i] = i + 1;
+                    titles[i] = "Title " + i;
+                    authors[i] = "Author " + i;
+                }
+                log.insertAll(barcodes, titles, authors, books);
+                for (int barcode = 1; barcode <= books; barcode++) {
+                    log.toggleStatus(barcode, "2030-01-01");
+                    log.toggleStatus(barcode, null);
+                }
+                long withGarbage = log.getLogBytes();
+
+                // Each thread toggles its own barcodes, so it knows what their status must end up as
+                List<Thread> togglers = new ArrayList<>();
+                List<Throwable> failures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    int first = t;
+                    Thread thread = new Thread(() -> {
+                        Random random = new Random(first);
+                        try {
+                            for (int i = 0; i < 5_000; i++) {
+                                int barcode = 1 + first + threads * random.nextInt(books / threads);
+                                StatusChange change = log.toggleStatus(barcode, "2030-01-01");
+                                checkedOut[barcode] = change.isCheckedOut();
+                            }
+                        } catch (Throwable e) {
+                            synchronized (failures) {
+                                failures.add(e);
+                            }
+                        }
+                    });
+                    togglers.add(thread);
+                    thread.start();
+                }
+                for (int i = 0; i < 5; i++) {
+                    log.compact();
+                }
+                for (Thread thread : togglers) {
+                    thread.join();
+                }
+                assertTrue(failures.isEmpty(), () -> "Toggle failed: " + failures);
+                log.compact();
+                assertTrue(log.getLogBytes() < withGarbage);
+                assertStatuses(log, checkedOut);
+            }
+            try (LogBookRepository log = new LogBookRepository(file)) {
+                assertStatuses(log, checkedOut);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void assertStatuses(LogBookRepository log, boolean[] checkedOut) throws Exception {
+        long expectedOut = 0;
+        for (int barcode = 1; barcode < checkedOut.length; barcode++) {
+            Book book = log.findByBarcode(barcode);
+            assertNotNull(book);
+            assertEquals(checkedOut[barcode], book.getStatus(), "barcode " + barcode);
+            expectedOut += checkedOut[barcode] ? 1 : 0;
+        }
+        assertEquals(expectedOut, log.count(LocalDate.now()).getCheckedOut());
+    }
+}
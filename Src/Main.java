@@ -1,5 +1,8 @@
 import javax.swing.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.*;
+import java.nio.file.Paths;
 import java.util.*;
 
 /**
@@ -8,6 +11,11 @@ import java.util.*;
  * The Main class serves as the entry point for a Library Management System.
  * This program provides a GUI-Swing interface for managing a library of books.
  * Users can import books from a MySQL Database, remove books by Barcode, list all books, and exit the program.
+ * When started with arguments it runs them as a command through {@link BatchRunner}
+ * instead, without opening a window, and exits with the command's exit code.
+ * Set the lms.log system property to keep the books in a local log file
+ * instead of MySQL, and lms.metrics.seconds to print operation metrics.
+ * Slow SQL statements are written to a rotating log; see {@link SqlTrace}.
  */
 public class Main extends JFrame {
     private static List<String> log = new ArrayList<>();
@@ -15,28 +23,71 @@ public class Main extends JFrame {
 
 
     public static void main(String[] args) {
-        Library library = new Library();
+        if (args.length > 0) {
+            System.exit(BatchRunner.runCommandLine(args));
+        }
+        Library library;
+        try {
+            library = createLibrary();
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(null, "Could not open the library: " + e.getMessage(), "Catastrophic Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
         MainPanel mainPanel = new MainPanel(library);
         JFrame mainPanelFrame = new JFrame("Library Management System (LMS)");
         mainPanelFrame.setContentPane(mainPanel.getPanel1());
         mainPanelFrame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        mainPanelFrame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                library.close(); // Stops the statistics recount and closes a local log
+            }
+        });
         mainPanelFrame.pack();
         mainPanelFrame.setVisible(false);
-        start(mainPanel, mainPanelFrame, library);
+        start(mainPanel, mainPanelFrame);
     }
 
 
 
+    /**
+     * Creates the Library the program runs against. When the lms.log system
+     * property names a file, for example -Dlms.log=books.log on a branch kiosk,
+     * the books are kept in that local log; otherwise they are kept in the
+     * MySQL database.
+     *
+     * The Library's metrics are published over JMX, and when the
+     * lms.metrics.seconds system property is set they are also printed that
+     * often.
+     *
+     * @return The Library.
+     * @throws IOException If the log cannot be opened.
+     */
+    static Library createLibrary() throws IOException {
+        String logFile = System.getProperty("lms.log");
+        Library library;
+        if (logFile == null || logFile.isBlank()) {
+            library = new Library();
+        } else {
+            library = new Library(new LogBookRepository(Paths.get(logFile)));
+        }
+        library.getMetrics().registerMBeans();
+        long dumpSeconds = Long.getLong("lms.metrics.seconds", 0);
+        if (dumpSeconds > 0) {
+            library.getMetrics().startDump(dumpSeconds, System.out);
+        }
+        return library;
+    }
+
     /**
      * Starts the main panel of the Library Management System.
      *
      * @param mainPanel       The main panel instance.
      * @param mainPanelFrame  The main panel JFrame.
-     * @param library         The library instance.
      */
-    private static void start(MainPanel mainPanel, JFrame mainPanelFrame, Library library) {
+    private static void start(MainPanel mainPanel, JFrame mainPanelFrame) {
         mainPanelFrame.setVisible(true);
-        mainPanel.populateTable(library);
+        mainPanel.populateTable();
     }
 
     /**
@@ -52,11 +103,11 @@ public class Main extends JFrame {
             return;
         }
 
-        String errorSummary = library.addBooksFromFile(selectedFile.getPath(), 1000);
+        ImportResult result = library.importBooksFromFile(selectedFile.getPath(), 1000);
+        String errorSummary = result.getErrorSummary();
         if (errorSummary.isEmpty()) {
             JOptionPane.showMessageDialog(null, "Books added successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
-        }
-        if (errorSummary.equals("No Valid Books Added")) {
+        } else if (result.hasNoValidBooks()) {
             JOptionPane.showMessageDialog(null, "The file you specified does not contain valid books. Exiting the program!", "Catastrophic Error", JOptionPane.ERROR_MESSAGE);
             JOptionPane.getRootFrame().dispose(); // Close the dialog
             System.exit(0); // Terminate the program
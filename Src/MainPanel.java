@@ -1,14 +1,14 @@
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import javax.swing.table.DefaultTableModel;
-import javax.swing.table.TableModel;
-import javax.swing.table.TableRowSorter;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
 
 /**
  * The MainPanel class represents the graphical user interface (GUI) panel for managing books
@@ -26,7 +26,12 @@ public class MainPanel {
     private JTextField deleteByTitleField;
     private JTextField checkByBarcodeField;
     private JTextField checkByTitleField;
+    private JTextArea cartBarcodesArea;
     private JLabel statusSummaryLabel;
+    private BookTableModel bookTableModel;
+    private final LibraryService libraryService;
+    private CompletableFuture<List<String>> pendingSuggestions;
+    private boolean summaryUpdateQueued;
     // Constants for Color Scheme and Fonts
     private static final Color BACKGROUND_COLOR = new Color(240, 240, 240);
     private static final Color PRIMARY_COLOR = new Color(105, 105, 105); // A soft dark color
@@ -34,13 +39,20 @@ public class MainPanel {
     private static final Color BUTTON_COLOR = new Color(192, 192, 192); // A gentle grey
     private static final Color TAB_COLOR = new Color(225, 225, 225); // Off white for tabs
     private static final Font GLOBAL_FONT = new Font("Segoe UI", Font.PLAIN, 14);
+    private static final int AUTOCOMPLETE_DELAY_MILLIS = 150;
+    private static final int AUTOCOMPLETE_MAX_SUGGESTIONS = 10;
 
     /**
-     * Constructor
+     * Constructor. All Library calls made by the panel run in the background
+     * through a {@link LibraryService}, and their results are applied to the
+     * components on the event thread.
      *
      * @param library The Library instance to interact with.
      */
     public MainPanel(Library library) {
+        libraryService = new LibraryService(library);
+        // Changes reach the table row by row, instead of through a full reload
+        library.addLibraryListener(event -> SwingUtilities.invokeLater(() -> applyChange(event)));
         panel1 = new JPanel(new BorderLayout(10, 10));
         panel1.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));  // Padding
 
@@ -59,11 +71,15 @@ public class MainPanel {
         UIManager.put("TabbedPane.contentBorderInsets", new Insets(4, 4, 4, 4));
         UIManager.put("TabbedPane.tabsOverlapBorder", true);
 
-        JPanel deleteBooksPanel = createDeleteBooksPanel(library);
-        JPanel checkInOutPanel = createCheckInOutPanel(library);
+        JPanel deleteBooksPanel = createDeleteBooksPanel(libraryService);
+        JPanel checkInOutPanel = createCheckInOutPanel(libraryService);
+        JPanel cartPanel = createCartPanel(libraryService);
+        setupAutoComplete(deleteByTitleField, libraryService);
+        setupAutoComplete(checkByTitleField, libraryService);
 
         tabbedPane1.addTab("Delete Books", deleteBooksPanel);
         tabbedPane1.addTab("Check In/Out Books", checkInOutPanel);
+        tabbedPane1.addTab("Cart", cartPanel);
 
         // Apply a flat look and remove the border from the tabs
         for (int i = 0; i < tabbedPane1.getTabCount(); i++) {
@@ -76,6 +92,8 @@ public class MainPanel {
 
         table1 = new JTable();
         JScrollPane tableScrollPane = new JScrollPane(table1);
+        // Load the rows coming into view, and a margin around them, as the user scrolls
+        tableScrollPane.getViewport().addChangeListener(e -> prefetchVisibleRows(tableScrollPane.getViewport()));
         tableScrollPane.setPreferredSize(new Dimension(600, 400));
         tableScrollPane.setBorder(BorderFactory.createTitledBorder("Books Table"));
         panel1.add(tableScrollPane, BorderLayout.SOUTH);
@@ -88,7 +106,7 @@ public class MainPanel {
 
         // Initialize the status summary label
         statusSummaryLabel = new JLabel();
-        updateStatusSummary(library);
+        updateStatusSummary(libraryService);
         panel1.add(statusSummaryLabel, BorderLayout.WEST);
 
         // Table styling for a modern look
@@ -106,75 +124,100 @@ public class MainPanel {
     /**
      * Handles the deletion of books based on user input.
      *
-     * @param library The Library instance to interact with.
+     * @param service The LibraryService to run Library calls through.
      */
-    private void handleDeleteBook(Library library) {
+    private void handleDeleteBook(LibraryService service) {
         String barcode = deleteByBarcodeField.getText().trim();
         String title = deleteByTitleField.getText().trim();
 
         if (!barcode.isEmpty() && !barcode.equals("Enter Barcode...")) {
             // Remove by Barcode
-            boolean isRemoved = library.removeBookById(Integer.parseInt(barcode));
-            if (isRemoved) {
-                populateTable(library);
-                deleteByBarcodeField.setText("");
-                JOptionPane.showMessageDialog(null, "Book removed successfully!", "Info", JOptionPane.INFORMATION_MESSAGE);
-            } else {
-                JOptionPane.showMessageDialog(null, "Failed to remove book. Barcode may not exist.", "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            removeBook(service, Integer.parseInt(barcode), "Failed to remove book. Barcode may not exist.");
         } else if (!title.isEmpty() && !title.equals("Enter Title...")) {
             // Remove by Title
-            Map<String, List<Integer>> searchResults = library.searchByTitle(title);
-            List<Integer> exactMatches = searchResults.get("exact");
-
-            if (!exactMatches.isEmpty()) {
-                if (exactMatches.size() == 1) {
-                    int chosenBarcode = exactMatches.get(0);
-                    boolean isRemoved = library.removeBookById(chosenBarcode);
-                    if (isRemoved) {
-                        populateTable(library);
-                        deleteByTitleField.setText("");
-                        JOptionPane.showMessageDialog(null, "Book removed successfully!", "Info", JOptionPane.INFORMATION_MESSAGE);
+            onEdt(service.searchByTitle(title), searchResults -> {
+                List<Integer> exactMatches = searchResults.get("exact");
+
+                if (!exactMatches.isEmpty()) {
+                    if (exactMatches.size() == 1) {
+                        removeBook(service, exactMatches.get(0), "Failed to remove book. Please try again later.");
                     } else {
-                        JOptionPane.showMessageDialog(null, "Failed to remove book. Please try again later.", "Error", JOptionPane.ERROR_MESSAGE);
-                    }
-                } else {
-                    Object[] options = exactMatches.toArray();
-                    Integer chosenBarcode = (Integer) JOptionPane.showInputDialog(null,
-                            "Multiple exact matches found. Select the Barcode of the book you want to remove.",
-                            "Select Barcode",
-                            JOptionPane.QUESTION_MESSAGE,
-                            null,
-                            options,
-                            options[0]);
-
-                    if (chosenBarcode != null) {
-                        boolean isRemoved = library.removeBookById(chosenBarcode);
-                        if (isRemoved) {
-                            populateTable(library);
-                            deleteByTitleField.setText("");
-                            deleteByBarcodeField.setText("");
-                            JOptionPane.showMessageDialog(null, "Book removed successfully!", "Info", JOptionPane.INFORMATION_MESSAGE);
-                        } else {
-                            JOptionPane.showMessageDialog(null, "Failed to remove book. Please try again later.", "Error", JOptionPane.ERROR_MESSAGE);
+                        Object[] options = exactMatches.toArray();
+                        Integer chosenBarcode = (Integer) JOptionPane.showInputDialog(null,
+                                "Multiple exact matches found. Select the Barcode of the book you want to remove.",
+                                "Select Barcode",
+                                JOptionPane.QUESTION_MESSAGE,
+                                null,
+                                options,
+                                options[0]);
+
+                        if (chosenBarcode != null) {
+                            removeBook(service, chosenBarcode, "Failed to remove book. Please try again later.");
                         }
                     }
+                } else {
+                    chooseCloseMatch(service, searchResults.get("close"), "remove",
+                            chosenBarcode -> removeBook(service, chosenBarcode, "Failed to remove book. Please try again later."));
                 }
-            } else {
-                JOptionPane.showMessageDialog(null, "No books with that title exist.", "Info", JOptionPane.INFORMATION_MESSAGE);
-            }
+            });
         } else {
             JOptionPane.showMessageDialog(null, "Please fill in either Barcode or Title to remove a book.", "Error", JOptionPane.ERROR_MESSAGE);
         }
     }
 
     /**
-     * Sets up auto-complete feature for a text field with a given list of items.
+     * Removes a book and reports the outcome.
+     *
+     * @param service        The LibraryService to run Library calls through.
+     * @param barcode        The barcode of the book to remove.
+     * @param failureMessage The message to show if the book was not removed.
+     */
+    private void removeBook(LibraryService service, int barcode, String failureMessage) {
+        onEdt(service.removeBookById(barcode), isRemoved -> {
+            if (isRemoved) {
+                deleteByTitleField.setText("");
+                deleteByBarcodeField.setText("");
+                JOptionPane.showMessageDialog(null, "Book removed successfully!", "Info", JOptionPane.INFORMATION_MESSAGE);
+            } else {
+                JOptionPane.showMessageDialog(null, failureMessage, "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        });
+    }
+
+    /**
+     * Runs a callback on the event thread once a background Library call
+     * succeeds. If the call fails or times out the error is shown instead; if
+     * it was cancelled nothing happens. Calls the callback makes are traced
+     * as part of the same user action as the first call.
+     *
+     * @param future    The pending result of the call.
+     * @param onSuccess What to do with the result, on the event thread.
+     * @param <T>       The type of the result.
+     */
+    private <T> void onEdt(CompletableFuture<T> future, Consumer<T> onSuccess) {
+        SqlTrace.Action action = SqlTrace.currentAction(); // Follow-up calls belong to the same user action
+        future.whenCompleteAsync((result, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof CancellationException) {
+                return;
+            }
+            if (cause != null) {
+                JOptionPane.showMessageDialog(null, "The library did not respond: " + cause, "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            SqlTrace.runIn(action, () -> onSuccess.accept(result));
+        }, LibraryService.ON_EDT);
+    }
+
+    /**
+     * Sets up auto-complete feature for a text field. Suggestions come from the
+     * Library's title index, and are looked up once typing pauses rather than on
+     * every key. Call this once per text field.
      *
      * @param textField The text field to apply auto-complete on.
-     * @param items     The list of items to use for auto-complete.
+     * @param service   The LibraryService to take title suggestions from.
      */
-    private void setupAutoComplete(JTextField textField, List<String> items) {
+    private void setupAutoComplete(JTextField textField, LibraryService service) {
         final DefaultComboBoxModel<String> model = new DefaultComboBoxModel<>();
         final JComboBox<String> comboBox = new JComboBox<>(model) {
             public Dimension getPreferredSize() {
@@ -209,11 +252,26 @@ public class MainPanel {
                 }
             }
         });
+        // Debounce typing: look titles up once the user pauses
+        Timer debounceTimer = new Timer(AUTOCOMPLETE_DELAY_MILLIS, e -> {
+            if (pendingSuggestions != null) {
+                pendingSuggestions.cancel(true); // Superseded by what was typed since
+            }
+            SqlTrace.runAction("autocomplete", () -> {
+                pendingSuggestions = service.suggestTitles(textField.getText(), AUTOCOMPLETE_MAX_SUGGESTIONS);
+                onEdt(pendingSuggestions, suggestions -> {
+                    model.removeAllElements();
+                    model.addAll(suggestions);
+                    comboBox.setPopupVisible(textField.isShowing() && model.getSize() > 0);
+                });
+            });
+        });
+        debounceTimer.setRepeats(false);
+
         textField.addKeyListener(new KeyAdapter() {
             @Override
             public void keyReleased(KeyEvent e) {
                 SwingUtilities.invokeLater(() -> {
-                    String input = textField.getText();
                     int selectedIndex = comboBox.getSelectedIndex();
 
                     if (e.getKeyCode() == KeyEvent.VK_ENTER) {
@@ -226,7 +284,7 @@ public class MainPanel {
                         // is not the best practice.
                         changeComboBoxSelection(e.getKeyCode());
                     } else {
-                        updateModelBasedOnInput(input);
+                        debounceTimer.restart();
                     }
                 });
             }
@@ -236,15 +294,6 @@ public class MainPanel {
                 int newIndex = currentIndex + (keyCode == KeyEvent.VK_UP ? -1 : 1);
                 comboBox.setSelectedIndex(Math.max(0, Math.min(newIndex, comboBox.getItemCount() - 1)));
             }
-
-            private void updateModelBasedOnInput(String input) {
-                model.removeAllElements();
-                items.stream()
-                        .filter(item -> item.toLowerCase().startsWith(input.toLowerCase()))
-                        .forEach(model::addElement);
-
-                comboBox.setPopupVisible(model.getSize() > 0);
-            }
         });
 
         textField.setLayout(new BorderLayout());
@@ -254,9 +303,9 @@ public class MainPanel {
     /**
      * Handles the check in/out of books based on user input.
      *
-     * @param library The Library instance to interact with.
+     * @param service The LibraryService to run Library calls through.
      */
-    private void handleCheckInOut(Library library) {
+    private void handleCheckInOut(LibraryService service) {
         String barcodeInput = checkByBarcodeField.getText().trim();
         String title = checkByTitleField.getText().trim();
 
@@ -264,38 +313,42 @@ public class MainPanel {
             // Handle by Barcode
             try {
                 int barcode = Integer.parseInt(barcodeInput);
-                reverseBookStatus(library, barcode);
+                reverseBookStatus(service, barcode);
                 checkByBarcodeField.setText("");
             } catch (NumberFormatException e) {
                 JOptionPane.showMessageDialog(null, "Invalid barcode. Please enter a numerical value.", "Error", JOptionPane.ERROR_MESSAGE);
             }
         } else if (!title.isEmpty() && !title.equals("Check by Title...")) {
             // Handle by Title
-            Map<String, List<Integer>> searchResults = library.searchByTitle(title);
-            List<Integer> exactMatches = searchResults.get("exact");
-
-            if (!exactMatches.isEmpty()) {
-                if (exactMatches.size() == 1) {
-                    int chosenBarcode = exactMatches.get(0);
-                    reverseBookStatus(library, chosenBarcode);
-                    checkByTitleField.setText("");
-                } else {
-                    Object[] options = exactMatches.toArray();
-                    Integer chosenBarcode = (Integer) JOptionPane.showInputDialog(null,
-                            "Multiple exact matches found. Select the Barcode of the book you want to handle.",
-                            "Select Barcode",
-                            JOptionPane.QUESTION_MESSAGE,
-                            null,
-                            options,
-                            options[0]);
-
-                    if (chosenBarcode != null) {
-                        reverseBookStatus(library, chosenBarcode);
+            onEdt(service.searchByTitle(title), searchResults -> {
+                List<Integer> exactMatches = searchResults.get("exact");
+
+                if (!exactMatches.isEmpty()) {
+                    if (exactMatches.size() == 1) {
+                        int chosenBarcode = exactMatches.get(0);
+                        reverseBookStatus(service, chosenBarcode);
+                        checkByTitleField.setText("");
+                    } else {
+                        Object[] options = exactMatches.toArray();
+                        Integer chosenBarcode = (Integer) JOptionPane.showInputDialog(null,
+                                "Multiple exact matches found. Select the Barcode of the book you want to handle.",
+                                "Select Barcode",
+                                JOptionPane.QUESTION_MESSAGE,
+                                null,
+                                options,
+                                options[0]);
+
+                        if (chosenBarcode != null) {
+                            reverseBookStatus(service, chosenBarcode);
+                        }
                     }
+                } else {
+                    chooseCloseMatch(service, searchResults.get("close"), "handle", chosenBarcode -> {
+                        reverseBookStatus(service, chosenBarcode);
+                        checkByTitleField.setText("");
+                    });
                 }
-            } else {
-                JOptionPane.showMessageDialog(null, "No books with that title exist.", "Info", JOptionPane.INFORMATION_MESSAGE);
-            }
+            });
         } else {
             JOptionPane.showMessageDialog(null, "Please fill in either Barcode or Title to proceed.", "Error", JOptionPane.ERROR_MESSAGE);
         }
@@ -304,40 +357,68 @@ public class MainPanel {
     /**
      * Reverses the status of a book based on its barcode.
      *
-     * @param library The Library instance to interact with.
+     * @param service The LibraryService to run Library calls through.
      * @param barcode The barcode of the book to reverse the status of.
      */
-    private void reverseBookStatus(Library library, int barcode) {
-        Book book = library.getBookByBarcode(barcode);
-
-        if (book == null) {
-            JOptionPane.showMessageDialog(null, "No book found with the given barcode.", "Error", JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-
-        boolean currentStatus = book.getStatus();
-        boolean isChanged = library.changeBookStatus(barcode); // Reverse the status
+    private void reverseBookStatus(LibraryService service, int barcode) {
+        onEdt(service.toggleBookStatus(barcode), change -> { // Reverse the status
+            if (change == null) {
+                JOptionPane.showMessageDialog(null, "No book found with the given barcode.", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
 
-        if (isChanged) {
             String message;
-            if (currentStatus) {
-                message = "Book checked in successfully!";
+            if (change.isCheckedOut()) {
+                message = "Book checked out successfully! Due on " + change.getDueDate() + ".";
             } else {
-                message = "Book checked out successfully!";
+                message = "Book checked in successfully!";
             }
 
             JOptionPane.showMessageDialog(null, message, "Info", JOptionPane.INFORMATION_MESSAGE);
-            populateTable(library);  // Update the table to reflect changes
-        } else {
-            String errorMessage = currentStatus ? "Failed to check in book." : "Failed to check out book.";
-            JOptionPane.showMessageDialog(null, errorMessage + " Please try again later.", "Error", JOptionPane.ERROR_MESSAGE);
-        }
+        });
     }
 
 
 
 
 
+    /**
+     * Offers the close matches of a title search when no title matched exactly,
+     * so a mistyped title can still reach the right book in one search.
+     *
+     * @param service      The LibraryService to read book details through.
+     * @param closeMatches The barcodes of the close matches, best first.
+     * @param verb         What will be done with the chosen book, for the prompt.
+     * @param onChosen     What to do with the barcode of the chosen book, if the user picks one.
+     */
+    private void chooseCloseMatch(LibraryService service, List<Integer> closeMatches, String verb, IntConsumer onChosen) {
+        if (closeMatches.isEmpty()) {
+            JOptionPane.showMessageDialog(null, "No books with that title exist.", "Info", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        List<Integer> offered = closeMatches.subList(0, Math.min(AUTOCOMPLETE_MAX_SUGGESTIONS, closeMatches.size()));
+        onEdt(service.getBooksByBarcode(offered), books -> {
+            String[] options = new String[offered.size()];
+            for (int i = 0; i < options.length; i++) {
+                Book book = books.get(i);
+                options[i] = (book != null ? book.getTitle() : "?") + " (Barcode " + offered.get(i) + ")";
+            }
+            String chosen = (String) JOptionPane.showInputDialog(null,
+                    "No exact match found. Did you mean one of these? Select the book you want to " + verb + ".",
+                    "Did You Mean",
+                    JOptionPane.QUESTION_MESSAGE,
+                    null,
+                    options,
+                    options[0]);
+            for (int i = 0; i < options.length; i++) {
+                if (options[i].equals(chosen)) {
+                    onChosen.accept(offered.get(i));
+                    return;
+                }
+            }
+        });
+    }
+
     /**
      * Adds a text field with a titled border to a JPanel.
      *
@@ -356,11 +437,11 @@ public class MainPanel {
      * Adds a "Delete" button to a JPanel and attaches an action listener to it.
      *
      * @param panel   The JPanel to add the button to.
-     * @param library The Library instance to interact with.
+     * @param service The LibraryService to run Library calls through.
      */
-    private void addDeleteButtonToPanel(JPanel panel, Library library) {
+    private void addDeleteButtonToPanel(JPanel panel, LibraryService service) {
         JButton deleteButton = new JButton("Delete");
-        deleteButton.addActionListener(e -> handleDeleteBook(library));
+        deleteButton.addActionListener(e -> SqlTrace.runAction("deleteBook", () -> handleDeleteBook(service)));
         panel.add(deleteButton);
     }
 
@@ -368,11 +449,11 @@ public class MainPanel {
      * Adds a "Continue" button to a JPanel and attaches an action listener to it.
      *
      * @param panel   The JPanel to add the button to.
-     * @param library The Library instance to interact with.
+     * @param service The LibraryService to run Library calls through.
      */
-    private void addContinueButtonToPanel(JPanel panel, Library library) {
+    private void addContinueButtonToPanel(JPanel panel, LibraryService service) {
         JButton continueButton = new JButton("Continue");
-        continueButton.addActionListener(e -> handleCheckInOut(library));
+        continueButton.addActionListener(e -> SqlTrace.runAction("checkInOut", () -> handleCheckInOut(service)));
         panel.add(continueButton);
     }
 
@@ -386,63 +467,58 @@ public class MainPanel {
     }
 
     /**
-     * Populates the table with book information from the Library.
-     *
-     * @param library The Library instance to fetch book data from.
+     * Populates the table with book information from the Library. The rows and
+     * totals are read in the background and shown when they arrive. Called
+     * once at start up; after that, changes reach the table row by row
+     * through the Library's change events.
      */
-    public void populateTable(Library library) {
-        Object[][] tableData = library.listAllBooks(0, 5000);  // Adjust these arguments as needed
-        String[] columnNames = {"ID", "Title", "Author", "Status", "DueDate"};
-
-        DefaultTableModel model = new DefaultTableModel(tableData, columnNames) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;  // Make table cells non-editable
-            }
-
-            @Override
-            public Class<?> getColumnClass(int columnIndex) {
-                // Define the data type for each column
-                if (columnIndex == 0) {
-                    return Integer.class;
-                } else if (columnIndex == 3) {
-                    return Boolean.class;
-                } else if (columnIndex == 4) {
-                    return String.class;
-                } else {
-                    return String.class;
-                }
-            }
-        };
-
-        table1.setModel(model);
-
-        TableRowSorter<TableModel> sorter = new TableRowSorter<>(model);
-        table1.setRowSorter(sorter);
+    public void populateTable() {
+        if (bookTableModel == null) {
+            bookTableModel = new BookTableModel(libraryService);
+            table1.setModel(bookTableModel);
+        } else {
+            bookTableModel.refresh();
+        }
 
-        sorter.setComparator(4, new Comparator<String>() {
-            @Override
-            public int compare(String date1, String date2) {
-
-                try {
-                    LocalDate d1 = LocalDate.parse(date1);
-                    LocalDate d2 = LocalDate.parse(date2);
-                    return d1.compareTo(d2);
-                } catch (Exception e) {
-                    return 0;
-                }
-            }
-        });
+        updateStatusSummary(libraryService);
+    }
 
-        // Set initial sort order for status column (index 3) to descending
-        List<RowSorter.SortKey> sortKeys = new ArrayList<>();
-        sortKeys.add(new RowSorter.SortKey(3, SortOrder.DESCENDING));  // Status column
-        sorter.setSortKeys(sortKeys);
+    /**
+     * Applies a change made through the Library to the table, then updates
+     * the status summary once the changes already queued have been applied.
+     *
+     * @param event The change.
+     */
+    private void applyChange(BookChangeEvent event) {
+        if (bookTableModel != null) {
+            bookTableModel.bookChanged(event);
+        }
+        if (!summaryUpdateQueued) {
+            summaryUpdateQueued = true; // A cart of changes updates the summary once
+            SwingUtilities.invokeLater(() -> {
+                summaryUpdateQueued = false;
+                updateStatusSummary(libraryService);
+            });
+        }
+    }
 
-        List<String> bookTitles = library.getAllBookTitles();
-        setupAutoComplete(deleteByTitleField, bookTitles);
-        setupAutoComplete(checkByTitleField, bookTitles);
-        updateStatusSummary(library);
+    /**
+     * Asks the table model to load the rows in view and the prefetch margin around them.
+     *
+     * @param viewport The viewport showing the books table.
+     */
+    private void prefetchVisibleRows(JViewport viewport) {
+        if (bookTableModel == null) {
+            return;
+        }
+        Rectangle view = viewport.getViewRect();
+        int firstRow = table1.rowAtPoint(new Point(0, view.y));
+        int lastRow = table1.rowAtPoint(new Point(0, view.y + view.height - 1));
+        if (firstRow < 0) {
+            return;
+        }
+        int last = lastRow < 0 ? table1.getRowCount() - 1 : lastRow;
+        SqlTrace.runAction("scrollTable", () -> bookTableModel.prefetch(firstRow, last));
     }
 
     /**
@@ -466,10 +542,10 @@ public class MainPanel {
     /**
      * Creates the panel for deleting books.
      *
-     * @param library The Library instance to interact with.
+     * @param service The LibraryService to run Library calls through.
      * @return The panel for deleting books.
      */
-    private JPanel createDeleteBooksPanel(Library library) {
+    private JPanel createDeleteBooksPanel(LibraryService service) {
         JPanel panel = new JPanel();
         panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
         panel.setBorder(BorderFactory.createTitledBorder("Delete Books"));
@@ -495,7 +571,7 @@ public class MainPanel {
         // Styling the delete button
         JButton deleteButton = createStyledButton("Delete");
         deleteButton.setAlignmentX(Component.CENTER_ALIGNMENT);
-        deleteButton.addActionListener(e -> handleDeleteBook(library));
+        deleteButton.addActionListener(e -> SqlTrace.runAction("deleteBook", () -> handleDeleteBook(service)));
 
         panel.add(deleteButton);
         panel.add(Box.createRigidArea(new Dimension(0, 5)));
@@ -546,10 +622,10 @@ public class MainPanel {
     /**
      * Creates the panel for checking in/out books.
      *
-     * @param library The Library instance to interact with.
+     * @param service The LibraryService to run Library calls through.
      * @return The panel for checking in/out books.
      */
-    private JPanel createCheckInOutPanel(Library library) {
+    private JPanel createCheckInOutPanel(LibraryService service) {
         // Use BoxLayout for consistency
         JPanel panel = new JPanel();
         panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
@@ -576,27 +652,138 @@ public class MainPanel {
         // Styling and adding the continue button
         JButton continueButton = createStyledButton("Continue");
         continueButton.setAlignmentX(Component.CENTER_ALIGNMENT);
-        continueButton.addActionListener(e -> handleCheckInOut(library));
+        continueButton.addActionListener(e -> SqlTrace.runAction("checkInOut", () -> handleCheckInOut(service)));
         panel.add(continueButton);
         panel.add(Box.createRigidArea(new Dimension(0, 5))); // Spacer for bottom margin
 
         return panel;
     }
 
+    /**
+     * Creates the panel for checking out, checking in or removing a whole cart
+     * of books from a pasted or scanned list of barcodes.
+     *
+     * @param service The LibraryService to run Library calls through.
+     * @return The panel for cart operations.
+     */
+    private JPanel createCartPanel(LibraryService service) {
+        JPanel panel = new JPanel(new BorderLayout(5, 5));
+        panel.setBorder(BorderFactory.createTitledBorder("Cart (one barcode per line, or separated by commas)"));
+
+        cartBarcodesArea = new JTextArea(4, 30);
+        cartBarcodesArea.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        panel.add(new JScrollPane(cartBarcodesArea), BorderLayout.CENTER);
+
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 0));
+        JButton checkOutAllButton = createStyledButton("Check Out All");
+        JButton checkInAllButton = createStyledButton("Check In All");
+        JButton removeAllButton = createStyledButton("Remove All");
+        checkOutAllButton.addActionListener(e -> SqlTrace.runAction("cartCheckOut", () -> handleCart("checked out", service::checkOutAll)));
+        checkInAllButton.addActionListener(e -> SqlTrace.runAction("cartCheckIn", () -> handleCart("checked in", service::checkInAll)));
+        removeAllButton.addActionListener(e -> SqlTrace.runAction("cartRemove", () -> handleCart("removed", service::removeAll)));
+        buttons.add(checkOutAllButton);
+        buttons.add(checkInAllButton);
+        buttons.add(removeAllButton);
+        panel.add(buttons, BorderLayout.SOUTH);
+
+        return panel;
+    }
+
+    /**
+     * Runs a bulk operation over the barcodes in the cart and reports the outcome.
+     *
+     * @param verb      How to describe a changed book, such as "checked out".
+     * @param operation The bulk LibraryService operation to run.
+     */
+    private void handleCart(String verb, Function<int[], CompletableFuture<BulkResult>> operation) {
+        int[] barcodes = parseBarcodes(cartBarcodesArea.getText());
+        if (barcodes == null) {
+            return;
+        }
+        if (barcodes.length == 0) {
+            JOptionPane.showMessageDialog(null, "Please scan or paste at least one barcode.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        onEdt(operation.apply(barcodes), result -> {
+            if (result.getErrorMessage() != null) {
+                JOptionPane.showMessageDialog(null, "Nothing was changed: " + result.getErrorMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+
+            StringBuilder message = new StringBuilder();
+            message.append(result.count(BulkResult.Outcome.CHANGED)).append(" book(s) ").append(verb).append(".");
+            if (result.getDueDate() != null) {
+                message.append(" Due on ").append(result.getDueDate()).append(".");
+            }
+            int unchanged = result.count(BulkResult.Outcome.UNCHANGED);
+            if (unchanged > 0) {
+                message.append("\n").append(unchanged).append(" book(s) were already ").append(verb).append(".");
+            }
+            List<Integer> notFound = result.barcodesWith(BulkResult.Outcome.NOT_FOUND);
+            if (!notFound.isEmpty()) {
+                message.append("\nNo book found for: ").append(notFound);
+            }
+            JOptionPane.showMessageDialog(null, message.toString(), "Info", JOptionPane.INFORMATION_MESSAGE);
+            cartBarcodesArea.setText("");
+        });
+    }
+
+    /**
+     * Parses the barcodes in the cart text, separated by whitespace or commas.
+     *
+     * @param text The cart text.
+     * @return The barcodes, or {@code null} if some entry is not a number.
+     */
+    private int[] parseBarcodes(String text) {
+        String trimmed = text.trim();
+        if (trimmed.isEmpty()) {
+            return new int[0];
+        }
+        String[] tokens = trimmed.split("[\\s,;]+");
+        int[] barcodes = new int[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            try {
+                barcodes[i] = Integer.parseInt(tokens[i]);
+            } catch (NumberFormatException e) {
+                JOptionPane.showMessageDialog(null, "Invalid barcode '" + tokens[i] + "'. Please enter numerical values.", "Error", JOptionPane.ERROR_MESSAGE);
+                return null;
+            }
+        }
+        return barcodes;
+    }
+
     /**
      * Updates the status summary label.
      *
-     * @param library The Library instance to fetch book data from.
+     * @param service The LibraryService to fetch book data through.
      */
-    private void updateStatusSummary(Library library) {
-        if (library == null) {
+    private void updateStatusSummary(LibraryService service) {
+        if (service == null) {
             statusSummaryLabel.setText("<html><span style='color:#D32F2F;'>Library data is unavailable.</span></html>");
             return;
         }
 
-        int totalBooks = library.getTotalBooks();
-        int checkedOutBooks = library.getCheckedOutBooksCount();
-        int availableBooks = totalBooks - checkedOutBooks;
+        // Running totals, no COUNT(*) per refresh
+        service.getStatistics().whenCompleteAsync((stats, error) -> {
+            if (error != null) {
+                statusSummaryLabel.setText("<html><span style='color:#D32F2F;'>Library data is unavailable.</span></html>");
+            } else {
+                showStatusSummary(stats);
+            }
+        }, LibraryService.ON_EDT);
+    }
+
+    /**
+     * Shows the given totals in the status summary label.
+     *
+     * @param stats The totals to show.
+     */
+    private void showStatusSummary(LibraryStats.Snapshot stats) {
+        long totalBooks = stats.getTotal();
+        long checkedOutBooks = stats.getCheckedOut();
+        long availableBooks = stats.getAvailable();
+        long overdueBooks = stats.getOverdue();
 
         StringBuilder summaryBuilder = new StringBuilder("<html>");
         summaryBuilder.append("<style>")
@@ -623,7 +810,11 @@ public class MainPanel {
                 .append("</span>")
                 .append("<span class='status-block'>")
                 .append("<span class='label'>Checked Out:</span> ")
-                .append("<span class='value checked-out'>").append(checkedOutBooks).append(" </span>") // Add extra space after the value
+                .append("<span class='value checked-out'>").append(checkedOutBooks).append(" </span>| ") // Add extra space after the value
+                .append("</span>")
+                .append("<span class='status-block'>")
+                .append("<span class='label'>Overdue:</span> ")
+                .append("<span class='value checked-out'>").append(overdueBooks).append(" </span>")
                 .append("</span>")
                 .append("</div>")
                 .append("</div>")
@@ -0,0 +1,566 @@
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * MySqlBookRepository
+ * The MySqlBookRepository class keeps the books in the books table of a MySQL
+ * database, borrowing connections from its own {@link ConnectionPool}. Every
+ * multi-book change runs in one transaction that first row-locks the books it
+ * reads, and the status toggle is a single UPDATE, so concurrent desks and
+ * other programs sharing the database see consistent books.
+ *
+ * Statements are prepared on the server and kept open by the pool, one set
+ * per connection, so each SQL text is parsed once per connection. Lists of
+ * barcodes are padded to a power of two so bulk statements of similar sizes
+ * share the same SQL text and can be reused too.
+ *
+ * Very large imports can skip row by row inserts: {@link #loadStaged(Path)}
+ * bulk loads a file of validated books with LOAD DATA LOCAL INFILE. The
+ * driver is only allowed to send files from {@link #STAGING_DIRECTORY}, so a
+ * server cannot ask it for anything else on the machine.
+ */
+public class MySqlBookRepository implements BookRepository {
+    /** The directory that staged imports are written to and bulk loaded from. */
+    public static final Path STAGING_DIRECTORY = Paths.get(System.getProperty("java.io.tmpdir"), "lms-staging").toAbsolutePath();
+
+    // Prepared statements live on the server, so a cached one is sent only its parameters
+    private static final String DEFAULT_URL = "jdbc:mysql://127.0.0.1:3306/lms?useServerPrepStmts=true"
+            + "&allowLoadLocalInfileInPath=" + URLEncoder.encode(STAGING_DIRECTORY.toString(), StandardCharsets.UTF_8);
+    private static final String DEFAULT_USER = "root";
+    private static final String DEFAULT_PASSWORD = "password";
+    private static final int DEFAULT_POOL_SIZE = 10;
+    private static final long DEFAULT_ACQUIRE_TIMEOUT_MILLIS = 5000;
+
+    private static final int BULK_CHUNK_SIZE = 1000;
+    private static final int ROWS_PER_STATEMENT = 100;
+    private static final String COLUMNS = "barcode, title, author, status, dueDate";
+
+    private final ConnectionPool connectionPool;
+
+    /**
+     * Creates a repository over a database.
+     *
+     * @param url                  The JDBC URL of the database.
+     * @param user                 The database user.
+     * @param password             The password of the user.
+     * @param poolSize             The most connections to hold open at once.
+     * @param acquireTimeoutMillis How long to wait for a free connection.
+     */
+    public MySqlBookRepository(String url, String user, String password, int poolSize, long acquireTimeoutMillis) {
+        this.connectionPool = new ConnectionPool(url, user, password, poolSize, acquireTimeoutMillis);
+    }
+
+    /**
+     * Gets the repository over the library's own database, shared by every
+     * {@link Library} made without a repository so they share its connections.
+     *
+     * @return The shared repository.
+     */
+    public static MySqlBookRepository getShared() {
+        return Shared.INSTANCE;
+    }
+
+    /**
+     * Borrows a connection to the database from the pool. Closing the
+     * connection returns it to the pool.
+     *
+     * @return A connection to the configured database.
+     * @throws SQLException If a database access error occurs or no connection
+     *                      became free within the pool's acquire timeout.
+     */
+    public Connection getConnection() throws SQLException {
+        return connectionPool.borrow();
+    }
+
+    /**
+     * Gets a snapshot of the connection pool metrics.
+     *
+     * @return The active, idle, wait time and acquisition rate of the pool.
+     */
+    public ConnectionPool.Stats getPoolStats() {
+        return connectionPool.getStats();
+    }
+
+    /**
+     * Gets the distribution of how long calls waited for a pooled connection.
+     *
+     * @return The connection acquire times so far.
+     */
+    public LatencyHistogram.Snapshot getAcquireLatency() {
+        return connectionPool.getAcquireLatency();
+    }
+
+    @Override
+    public void insert(Book book) throws SQLException {
+        String sql = "INSERT INTO books (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?)";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, book.getId());
+            pstmt.setString(2, titleKey(book.getTitle())); // title is NOT NULL, so keyset paging sees every row
+            pstmt.setString(3, book.getAuthor());
+            pstmt.setBoolean(4, book.getStatus());
+            pstmt.setString(5, book.getDueDate());
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Sends the books as multi-row INSERT IGNORE statements, a full chunk of
+     * rows per statement batched together, and commits once.
+     */
+    @Override
+    public int insertAll(int[] barcodes, String[] titles, String[] authors, int count) throws SQLException {
+        if (count == 0) {
+            return 0;
+        }
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            int fullChunks = count / ROWS_PER_STATEMENT;
+            int offset = 0;
+            int inserted = 0;
+            if (fullChunks > 0) {
+                try (PreparedStatement pstmt = conn.prepareStatement(insertIgnoreSql(ROWS_PER_STATEMENT))) {
+                    for (int chunk = 0; chunk < fullChunks; chunk++) {
+                        bindRows(pstmt, barcodes, titles, authors, offset, ROWS_PER_STATEMENT);
+                        pstmt.addBatch();
+                        offset += ROWS_PER_STATEMENT;
+                    }
+                    for (int rows : pstmt.executeBatch()) {
+                        inserted += Math.max(rows, 0);
+                    }
+                }
+            }
+            int remaining = count - offset;
+            if (remaining > 0) {
+                try (PreparedStatement tail = conn.prepareStatement(insertIgnoreSql(remaining))) {
+                    bindRows(tail, barcodes, titles, authors, offset, remaining);
+                    inserted += tail.executeUpdate();
+                }
+            }
+            conn.commit();
+            return inserted; // On failure the pool rolls back the open transaction
+        }
+    }
+
+    /**
+     * Creates an empty file in the staging directory for {@link #loadStaged(Path)}.
+     *
+     * @return The new file; the caller deletes it when done.
+     * @throws IOException If the file cannot be created.
+     */
+    public static Path createStagingFile() throws IOException {
+        Files.createDirectories(STAGING_DIRECTORY);
+        return Files.createTempFile(STAGING_DIRECTORY, "import-", ".tsv");
+    }
+
+    /**
+     * Adds the books in a staged file that are not in the library yet. The
+     * file is loaded into a temporary table with LOAD DATA LOCAL INFILE, and
+     * then copied into books by one INSERT ... SELECT that skips barcodes
+     * already there, in one transaction.
+     *
+     * @param staged A file in the staging directory with one book per line:
+     *               barcode, title and author separated by tabs, with
+     *               backslash, tab and line break escaped by a backslash.
+     *               The barcodes must be distinct.
+     * @return The number of books added.
+     * @throws SQLFeatureNotSupportedException If the driver or server refused
+     *                      the load. Nothing was added, so the books can still
+     *                      be inserted another way.
+     * @throws SQLException If the books could not be added; none of them are then.
+     */
+    public int loadStaged(Path staged) throws SQLException {
+        String path = staged.toAbsolutePath().toString().replace("\\", "\\\\").replace("'", "\\'");
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TEMPORARY TABLE IF EXISTS books_staging"); // Left over if a load on this connection failed
+            stmt.execute("CREATE TEMPORARY TABLE books_staging (barcode INT NOT NULL PRIMARY KEY, "
+                    + "title VARCHAR(255) NOT NULL, author VARCHAR(255) NOT NULL)");
+            try {
+                stmt.execute("LOAD DATA LOCAL INFILE '" + path + "' INTO TABLE books_staging CHARACTER SET utf8mb4 "
+                        + "FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n' (barcode, title, author)");
+            } catch (SQLException e) {
+                throw new SQLFeatureNotSupportedException("Bulk load refused: " + e.getMessage(),
+                        e.getSQLState(), e.getErrorCode(), e);
+            }
+            conn.setAutoCommit(false);
+            int inserted = stmt.executeUpdate("INSERT INTO books (" + COLUMNS + ") "
+                    + "SELECT s.barcode, s.title, s.author, 0, NULL FROM books_staging s "
+                    + "LEFT JOIN books b ON b.barcode = s.barcode WHERE b.barcode IS NULL");
+            stmt.execute("DROP TEMPORARY TABLE books_staging");
+            conn.commit();
+            return inserted; // On failure the pool rolls back the open transaction
+        }
+    }
+
+    @Override
+    public Book findByBarcode(int barcode) throws SQLException {
+        String sql = "SELECT " + COLUMNS + " FROM books WHERE barcode = ?";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, barcode);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? readBook(rs) : null;
+            }
+        }
+    }
+
+    /**
+     * Reads and locks the book before deleting it, in the same transaction, so
+     * the caller learns exactly what left the library.
+     */
+    @Override
+    public Book delete(int barcode) throws SQLException {
+        String selectSql = "SELECT " + COLUMNS + " FROM books WHERE barcode = ? FOR UPDATE";
+        String deleteSql = "DELETE FROM books WHERE barcode = ?";
+        try (Connection conn = getConnection();
+             PreparedStatement selectStmt = conn.prepareStatement(selectSql);
+             PreparedStatement deleteStmt = conn.prepareStatement(deleteSql)) {
+            conn.setAutoCommit(false);
+            selectStmt.setInt(1, barcode);
+            Book removed;
+            try (ResultSet rs = selectStmt.executeQuery()) {
+                removed = rs.next() ? readBook(rs) : null;
+            }
+            if (removed == null) {
+                return null; // The pool rolls back the open transaction
+            }
+            deleteStmt.setInt(1, barcode);
+            deleteStmt.executeUpdate();
+            conn.commit();
+            return removed;
+        }
+    }
+
+    /**
+     * Flips the status and sets the due date in one UPDATE. The new status and
+     * the old due date come back in the statement's reply through
+     * LAST_INSERT_ID(expr), so no SELECT is needed before or after the update:
+     * the low two bits hold the status plus one and the rest hold the old
+     * yyyy-MM-dd due date as the number yyyyMMdd, or 0 if it had none or it
+     * was in some other form.
+     */
+    @Override
+    public StatusChange toggleStatus(int barcode, String dueDate) throws SQLException {
+        // Assignments run left to right, so the dueDate expression sees the new status and the old dueDate
+        String sql = "UPDATE books SET status = NOT COALESCE(status, 0), "
+                + "dueDate = IF(LAST_INSERT_ID(status + 1 + 4 * IF(dueDate REGEXP '^[0-9]{4}-[0-9]{2}-[0-9]{2}$', "
+                + "CAST(REPLACE(dueDate, '-', '') AS UNSIGNED), 0)) % 4 = 2, ?, NULL) WHERE barcode = ?";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            pstmt.setString(1, dueDate);
+            pstmt.setInt(2, barcode);
+            if (pstmt.executeUpdate() == 0) {
+                return null;
+            }
+            try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                long reply = keys.next() ? keys.getLong(1) : 0;
+                boolean checkedOut = reply % 4 == 2;
+                long previous = reply / 4;
+                String previousDueDate = previous == 0 ? null
+                        : String.format("%04d-%02d-%02d", previous / 10000, previous / 100 % 100, previous % 100);
+                return new StatusChange(barcode, checkedOut, checkedOut ? dueDate : null, previousDueDate);
+            }
+        }
+    }
+
+    /**
+     * One locking read to learn which books exist and what state they are in,
+     * one UPDATE for those that need to change, and one commit.
+     */
+    @Override
+    public Book[] setStatusAll(int[] distinct, boolean checkedOut, String dueDate) throws SQLException {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            Book[] locked = lockBooks(conn, distinct);
+            int[] targets = new int[distinct.length];
+            int count = 0;
+            for (int i = 0; i < distinct.length; i++) {
+                if (locked[i] != null && locked[i].getStatus() != checkedOut) {
+                    targets[count++] = distinct[i];
+                }
+            }
+            executeForAll(conn, "UPDATE books SET status = ?, dueDate = ? WHERE barcode IN ",
+                    Arrays.copyOf(targets, count), checkedOut, dueDate);
+            conn.commit();
+            return locked;
+        }
+    }
+
+    @Override
+    public Book[] deleteAll(int[] distinct) throws SQLException {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            Book[] locked = lockBooks(conn, distinct);
+            int[] targets = new int[distinct.length];
+            int count = 0;
+            for (int i = 0; i < distinct.length; i++) {
+                if (locked[i] != null) {
+                    targets[count++] = distinct[i];
+                }
+            }
+            executeForAll(conn, "DELETE FROM books WHERE barcode IN ", Arrays.copyOf(targets, count), null, null);
+            conn.commit();
+            return locked;
+        }
+    }
+
+    @Override
+    public BookPage listPage(String pageToken, int pageSize) throws SQLException {
+        String firstPageSql = "SELECT " + COLUMNS + " FROM books ORDER BY title, barcode LIMIT ?";
+        String nextPageSql = "SELECT " + COLUMNS + " FROM books "
+                + "WHERE title > ? OR (title = ? AND barcode > ?) ORDER BY title, barcode LIMIT ?";
+        List<Book> pageBooks = new ArrayList<>(pageSize);
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(pageToken == null ? firstPageSql : nextPageSql)) {
+            if (pageToken == null) {
+                pstmt.setInt(1, pageSize + 1);
+            } else {
+                String title = BookPage.decodeTitle(pageToken);
+                pstmt.setString(1, title);
+                pstmt.setString(2, title);
+                pstmt.setInt(3, BookPage.decodeBarcode(pageToken));
+                pstmt.setInt(4, pageSize + 1); // One extra row tells us whether another page exists
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    pageBooks.add(readBook(rs));
+                }
+            }
+        }
+
+        String nextPageToken = null;
+        if (pageBooks.size() > pageSize) {
+            pageBooks.remove(pageSize);
+            Book last = pageBooks.get(pageSize - 1);
+            nextPageToken = BookPage.encodeToken(last.getTitle(), last.getId());
+        }
+        return new BookPage(pageBooks, nextPageToken);
+    }
+
+    /**
+     * Only the (title, barcode) index is read to find the row before the page.
+     */
+    @Override
+    public String getPageToken(int offset) throws SQLException {
+        String sql = "SELECT title, barcode FROM books ORDER BY title, barcode LIMIT 1 OFFSET ?";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, offset - 1);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? BookPage.encodeToken(rs.getString("title"), rs.getInt("barcode")) : null;
+            }
+        }
+    }
+
+    /**
+     * Counts all, checked out and overdue books in one pass over the table.
+     */
+    @Override
+    public LibraryStats.Snapshot count(LocalDate today) throws SQLException {
+        String sql = "SELECT COUNT(*), COALESCE(SUM(status = 1), 0), "
+                + "COALESCE(SUM(status = 1 AND dueDate < ?), 0) FROM books";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, today.toString());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return new LibraryStats.Snapshot(rs.getLong(1), rs.getLong(2), rs.getLong(3));
+            }
+        }
+    }
+
+    @Override
+    public void forEachBarcode(IntConsumer action) throws SQLException {
+        String sql = "SELECT barcode FROM books";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            pstmt.setFetchSize(Integer.MIN_VALUE); // Tells MySQL Connector/J to stream rows
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    action.accept(rs.getInt(1));
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean isDurable() { return true; }
+
+    @Override
+    public void forEach(Consumer<Book> action) throws SQLException {
+        String sql = "SELECT " + COLUMNS + " FROM books";
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            pstmt.setFetchSize(Integer.MIN_VALUE); // Tells MySQL Connector/J to stream rows
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    action.accept(readBook(rs));
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads and row-locks a set of books for the rest of the transaction.
+     *
+     * @param conn     The connection, inside a transaction.
+     * @param distinct The sorted, distinct barcodes.
+     * @return For each barcode, the book as it is now, or {@code null} if there is none.
+     * @throws SQLException If the books cannot be read.
+     */
+    private static Book[] lockBooks(Connection conn, int[] distinct) throws SQLException {
+        Book[] locked = new Book[distinct.length];
+        for (int from = 0; from < distinct.length; from += BULK_CHUNK_SIZE) {
+            int to = Math.min(distinct.length, from + BULK_CHUNK_SIZE);
+            int size = paddedSize(to - from);
+            String sql = "SELECT " + COLUMNS + " FROM books WHERE barcode IN " + placeholders(size) + " FOR UPDATE";
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (int i = 0; i < size; i++) {
+                    pstmt.setInt(i + 1, distinct[Math.min(from + i, to - 1)]);
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        Book book = readBook(rs);
+                        locked[Arrays.binarySearch(distinct, book.getId())] = book;
+                    }
+                }
+            }
+        }
+        return locked;
+    }
+
+    /**
+     * Runs a statement ending in "barcode IN " over every target barcode,
+     * a chunk of barcodes at a time.
+     *
+     * @param conn       The connection, inside a transaction.
+     * @param sqlPrefix  The statement up to and including "IN ".
+     * @param targets    The barcodes to apply it to.
+     * @param checkedOut The status parameter, or {@code null} if the statement has none.
+     * @param dueDate    The due date parameter, used together with the status.
+     * @throws SQLException If the statement fails.
+     */
+    private static void executeForAll(Connection conn, String sqlPrefix, int[] targets,
+                                      Boolean checkedOut, String dueDate) throws SQLException {
+        for (int from = 0; from < targets.length; from += BULK_CHUNK_SIZE) {
+            int to = Math.min(targets.length, from + BULK_CHUNK_SIZE);
+            int size = paddedSize(to - from);
+            try (PreparedStatement pstmt = conn.prepareStatement(sqlPrefix + placeholders(size))) {
+                int parameter = 1;
+                if (checkedOut != null) {
+                    pstmt.setBoolean(parameter++, checkedOut);
+                    pstmt.setString(parameter++, dueDate);
+                }
+                for (int i = 0; i < size; i++) {
+                    pstmt.setInt(parameter++, targets[Math.min(from + i, to - 1)]);
+                }
+                pstmt.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Binds books to the placeholders of a multi-row insert.
+     *
+     * @param pstmt    The statement to bind.
+     * @param barcodes The barcodes of the books.
+     * @param titles   The titles of the books.
+     * @param authors  The authors of the books.
+     * @param offset   The first book to bind.
+     * @param rows     The number of books to bind.
+     * @throws SQLException If a parameter cannot be set.
+     */
+    private static void bindRows(PreparedStatement pstmt, int[] barcodes, String[] titles, String[] authors,
+                                 int offset, int rows) throws SQLException {
+        int parameter = 1;
+        for (int i = offset; i < offset + rows; i++) {
+            pstmt.setInt(parameter++, barcodes[i]);
+            pstmt.setString(parameter++, titleKey(titles[i]));
+            pstmt.setString(parameter++, authors[i]);
+        }
+    }
+
+    /**
+     * Builds an INSERT IGNORE statement with one placeholder group per row.
+     *
+     * @param rows The number of rows the statement inserts.
+     * @return The SQL text.
+     */
+    private static String insertIgnoreSql(int rows) {
+        StringBuilder sql = new StringBuilder("INSERT IGNORE INTO books (" + COLUMNS + ") VALUES ");
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "(?, ?, ?, 0, NULL)" : ", (?, ?, ?, 0, NULL)");
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Rounds the length of a barcode list up to a power of two. The list is
+     * padded by repeating its last barcode, which does not change what an IN
+     * matches, and the statement cache then holds one statement per size
+     * class instead of one per list length.
+     *
+     * @param count The number of barcodes, at least one.
+     * @return The number of placeholders to use.
+     */
+    private static int paddedSize(int count) {
+        return count == 1 ? 1 : Integer.highestOneBit(count - 1) << 1;
+    }
+
+    /**
+     * Builds a parenthesized list of placeholders such as "(?, ?, ?)".
+     *
+     * @param count The number of placeholders.
+     * @return The SQL fragment.
+     */
+    private static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder(count * 3 + 1).append('(');
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.append(')').toString();
+    }
+
+    /**
+     * Reads the book at the current row of a result set.
+     *
+     * @param rs A result set with the barcode, title, author, status and dueDate columns.
+     * @return The book.
+     * @throws SQLException If a column cannot be read.
+     */
+    private static Book readBook(ResultSet rs) throws SQLException {
+        return new Book(rs.getInt("barcode"), rs.getString("title"), rs.getString("author"),
+                rs.getBoolean("status"), rs.getString("dueDate"));
+    }
+
+    /**
+     * Holds the shared repository, created on first use so a program that
+     * never touches MySQL never opens its pool.
+     */
+    private static final class Shared {
+        private static final MySqlBookRepository INSTANCE = new MySqlBookRepository(DEFAULT_URL, DEFAULT_USER,
+                DEFAULT_PASSWORD, DEFAULT_POOL_SIZE, DEFAULT_ACQUIRE_TIMEOUT_MILLIS);
+    }
+
+    private static String titleKey(String title) {
+        return title == null ? "" : title;
+    }
+}
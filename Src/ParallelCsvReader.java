@@ -0,0 +1,417 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * ParallelCsvReader
+ * The ParallelCsvReader class reads the same records as {@link CsvReader},
+ * in the same order, but parses a large file on several threads. The file is
+ * memory-mapped and cut into chunks of a few megabytes. A first parallel pass
+ * counts the quote characters in each chunk, which tells whether a chunk
+ * starts inside a quoted field; each chunk then starts at the first line break
+ * after its nominal start that is outside quotes, so a quoted field spanning
+ * several lines is never split. The chunks are parsed on a fork/join pool,
+ * each by a CsvReader over its part of the mapping, into flat arrays of
+ * fields, with no objects per record beyond the field strings.
+ *
+ * The caller walks the chunks in order while the pool parses a bounded number
+ * of chunks ahead, so memory stays flat for files of any size. Each chunk must
+ * start exactly where the records of the one before it ended; a stray quote
+ * can make the quote count guess wrong, and then that chunk is parsed again
+ * from the right place on the calling thread, so the records are always the
+ * ones a single CsvReader would read. A reader can also start part way
+ * through a file, at a record boundary such as a resumed import's checkpoint.
+ */
+public class ParallelCsvReader implements CsvSource {
+    private static final int DEFAULT_CHUNK_BYTES = 4 * 1024 * 1024;
+    private static final int WINDOW_BYTES = 16 * 1024 * 1024;
+    private static final int CHUNKS_AHEAD_PER_THREAD = 2;
+
+    private final FileChannel channel;
+    private final int chunkBytes;
+    private final long origin;
+    private final long size;
+    private final int chunkCount;
+    private final boolean[] startsInQuotes;
+    private final ForkJoinPool pool;
+    private final int chunksAhead;
+    private final ArrayDeque<ForkJoinTask<Chunk>> pending = new ArrayDeque<>();
+    private int nextToSubmit;
+    private int nextToRead;
+
+    private Chunk current;
+    private int record = -1;
+    private long expectedStart;
+    private long lineBase;
+    private long currentLineBase;
+
+    /**
+     * Opens a file and starts parsing it.
+     *
+     * @param file    The file to read.
+     * @param threads The number of threads to parse on.
+     * @throws IOException If the file cannot be opened or read.
+     */
+    public ParallelCsvReader(Path file, int threads) throws IOException {
+        this(file, threads, DEFAULT_CHUNK_BYTES, 0, 1);
+    }
+
+    /**
+     * Opens a file and starts parsing it from a record part way through, so
+     * offsets and line numbers continue from that point.
+     *
+     * @param file            The file to read.
+     * @param threads         The number of threads to parse on.
+     * @param startOffset     The byte offset of the first record to read.
+     * @param startLineNumber The line number that record starts on.
+     * @throws IOException If the file cannot be opened or read.
+     */
+    public ParallelCsvReader(Path file, int threads, long startOffset, long startLineNumber) throws IOException {
+        this(file, threads, DEFAULT_CHUNK_BYTES, startOffset, startLineNumber);
+    }
+
+    /**
+     * Opens a file and starts parsing it from a record part way through, in
+     * chunks of a given size.
+     *
+     * @param file            The file to read.
+     * @param threads         The number of threads to parse on.
+     * @param chunkBytes      The nominal size of a chunk.
+     * @param startOffset     The byte offset of the first record to read.
+     * @param startLineNumber The line number that record starts on.
+     * @throws IOException If the file cannot be opened or read.
+     */
+    ParallelCsvReader(Path file, int threads, int chunkBytes, long startOffset, long startLineNumber) throws IOException {
+        this.chunkBytes = chunkBytes;
+        this.origin = startOffset;
+        this.expectedStart = startOffset;
+        this.lineBase = startLineNumber;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.pool = new ForkJoinPool(threads);
+        try {
+            this.size = Math.max(startOffset, channel.size());
+            this.chunkCount = (int) Math.max(1, (size - origin + chunkBytes - 1) / chunkBytes);
+            this.chunksAhead = threads * CHUNKS_AHEAD_PER_THREAD;
+            this.startsInQuotes = countQuotes();
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+        fillWindow();
+    }
+
+    /**
+     * Opens a file and starts parsing it on one thread per processor.
+     *
+     * @param file The file to read.
+     * @throws IOException If the file cannot be opened or read.
+     */
+    public ParallelCsvReader(Path file) throws IOException {
+        this(file, Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        while (current == null || record + 1 >= current.records) {
+            if (!nextChunk()) {
+                return false;
+            }
+        }
+        record++;
+        return true;
+    }
+
+    @Override
+    public int getFieldCount() {
+        return current.fieldStarts[record + 1] - current.fieldStarts[record];
+    }
+
+    @Override
+    public String getField(int index) {
+        return current.fields[current.fieldStarts[record] + index];
+    }
+
+    @Override
+    public boolean isTruncated() { return current.truncated[record]; }
+
+    @Override
+    public long getLineNumber() { return currentLineBase + current.lines[record] - 1; }
+
+    @Override
+    public long getByteOffset() { return current.ends[record]; }
+
+    @Override
+    public long getNextLineNumber() {
+        return record + 1 < current.records ? currentLineBase + current.lines[record + 1] - 1 : lineBase;
+    }
+
+    /**
+     * Stops the parsing threads and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        pool.shutdownNow();
+        channel.close();
+    }
+
+    /**
+     * Moves to the next parsed chunk, waiting for it if it is not done yet,
+     * and parses it again here if it did not start where the last one ended.
+     *
+     * @return True if there was another chunk, false at the end of the file.
+     * @throws IOException If the file cannot be read.
+     */
+    private boolean nextChunk() throws IOException {
+        if (nextToRead == chunkCount) {
+            current = null;
+            return false;
+        }
+        Chunk chunk;
+        try {
+            chunk = pending.poll().join();
+        } catch (UncheckedIOException e) {
+            throw ioCause(e);
+        }
+        if (chunk.start != expectedStart) {
+            chunk = parse(nextToRead, expectedStart); // The quote count guessed the wrong start
+        }
+        nextToRead++;
+        fillWindow();
+        current = chunk;
+        record = -1;
+        currentLineBase = lineBase;
+        expectedStart = chunk.end;
+        lineBase += chunk.nextLine - 1;
+        return true;
+    }
+
+    /**
+     * Submits chunks until the pool has enough parsing ahead of the reader.
+     */
+    private void fillWindow() {
+        while (nextToSubmit < chunkCount && nextToSubmit - nextToRead < chunksAhead) {
+            int index = nextToSubmit++;
+            pending.add(pool.submit(() -> {
+                try {
+                    return parse(index, index == 0 ? origin : findStart(index));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+    }
+
+    /**
+     * Counts the quote characters of every chunk in parallel and works out,
+     * from the running parity, whether each chunk starts inside quotes.
+     *
+     * @return For each chunk, true if its first byte is inside a quoted field.
+     * @throws IOException If the file cannot be read.
+     */
+    private boolean[] countQuotes() throws IOException {
+        List<ForkJoinTask<Integer>> counts = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            long from = origin + (long) i * chunkBytes;
+            long to = Math.min(size, from + chunkBytes);
+            counts.add(pool.submit(() -> {
+                try {
+                    MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+                    int quotes = 0;
+                    for (int j = 0; j < bytes.limit(); j++) {
+                        if (bytes.get(j) == '"') {
+                            quotes++;
+                        }
+                    }
+                    return quotes;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+        boolean[] inQuotes = new boolean[chunkCount];
+        boolean parity = false;
+        try {
+            for (int i = 0; i < chunkCount; i++) {
+                inQuotes[i] = parity;
+                parity ^= (counts.get(i).join() & 1) == 1;
+            }
+        } catch (UncheckedIOException e) {
+            throw ioCause(e);
+        }
+        return inQuotes;
+    }
+
+    /**
+     * Finds where the first record starting in a chunk begins: just past the
+     * first line break at or after the byte before the chunk that is outside
+     * quotes.
+     *
+     * @param index The chunk.
+     * @return The byte offset, or the file size if no record starts in or after the chunk.
+     * @throws IOException If the file cannot be read.
+     */
+    private long findStart(int index) throws IOException {
+        long position = origin + (long) index * chunkBytes - 1; // A record may start right at the chunk
+        boolean inQuotes = startsInQuotes[index];
+        try (InputStream in = new MappedInputStream(position)) {
+            int b = in.read();
+            if (b == '"') {
+                inQuotes = !inQuotes; // The parity is of the chunk's first byte, not the one before it
+            }
+            while (b >= 0) {
+                if (b == '"') {
+                    inQuotes = !inQuotes;
+                } else if (b == '\n' && !inQuotes) {
+                    return position + 1;
+                }
+                position++;
+                b = in.read();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Parses the records that start from a given offset up to the end of a
+     * chunk. The last one may run on past the end of the chunk.
+     *
+     * @param index The chunk.
+     * @param start Where its first record starts.
+     * @return The parsed records.
+     * @throws IOException If the file cannot be read.
+     */
+    private Chunk parse(int index, long start) throws IOException {
+        long end = Math.min(size, origin + (long) (index + 1) * chunkBytes);
+        Chunk chunk = new Chunk(start);
+        long offset = start;
+        try (CsvReader reader = new CsvReader(new MappedInputStream(start), start, 1)) {
+            while (offset < end && reader.next()) {
+                chunk.add(reader);
+                offset = reader.getByteOffset();
+            }
+            chunk.end = offset;
+            chunk.nextLine = reader.getNextLineNumber();
+        }
+        return chunk;
+    }
+
+    /**
+     * Finds the IOException a parsing thread failed with. The pool may wrap
+     * the exception again when it is rethrown on the reading thread.
+     *
+     * @param e The exception from the pool.
+     * @return The original IOException.
+     */
+    private static IOException ioCause(UncheckedIOException e) {
+        Throwable cause = e;
+        while (cause instanceof UncheckedIOException) {
+            cause = cause.getCause();
+        }
+        return cause instanceof IOException ? (IOException) cause : e.getCause();
+    }
+
+    /**
+     * The records of one chunk, as flat arrays indexed by record.
+     */
+    private static final class Chunk {
+        private final long start;
+        private long end;
+        private long nextLine; // Relative to the chunk, whose first line is 1
+        private int records;
+        private long[] lines = new long[1024];
+        private long[] ends = new long[1024];
+        private boolean[] truncated = new boolean[1024];
+        private int[] fieldStarts = new int[1025];
+        private String[] fields = new String[3 * 1024];
+
+        private Chunk(long start) {
+            this.start = start;
+        }
+
+        private void add(CsvReader reader) {
+            if (records + 1 == lines.length) {
+                int capacity = lines.length * 2;
+                lines = Arrays.copyOf(lines, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                truncated = Arrays.copyOf(truncated, capacity);
+                fieldStarts = Arrays.copyOf(fieldStarts, capacity + 1);
+            }
+            int first = fieldStarts[records];
+            int count = reader.getFieldCount();
+            if (first + count > fields.length) {
+                fields = Arrays.copyOf(fields, Math.max(fields.length * 2, first + count));
+            }
+            for (int i = 0; i < count; i++) {
+                fields[first + i] = reader.getField(i);
+            }
+            lines[records] = reader.getLineNumber();
+            ends[records] = reader.getByteOffset();
+            truncated[records] = reader.isTruncated();
+            fieldStarts[++records] = first + count;
+        }
+    }
+
+    /**
+     * Reads the file from an offset to its end through read-only mappings of
+     * a window at a time, so files larger than one mapping can be read.
+     */
+    private final class MappedInputStream extends InputStream {
+        private long position;
+        private MappedByteBuffer window;
+
+        private MappedInputStream(long position) {
+            this.position = position;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!mapNext()) {
+                return -1;
+            }
+            return window.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!mapNext()) {
+                return -1;
+            }
+            int count = Math.min(length, window.remaining());
+            window.get(buffer, offset, count);
+            return count;
+        }
+
+        /**
+         * Maps the next window if the current one is used up.
+         *
+         * @return False at the end of the file.
+         * @throws IOException If the file cannot be mapped.
+         */
+        private boolean mapNext() throws IOException {
+            if (window != null && window.hasRemaining()) {
+                return true;
+            }
+            if (position >= size) {
+                return false;
+            }
+            long length = Math.min(WINDOW_BYTES, size - position);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            position += length;
+            return true;
+        }
+    }
+}
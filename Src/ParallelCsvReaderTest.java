@@ -0,0 +1,110 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class ParallelCsvReaderTest {
+    private static final String[] PIECES = {
+            "Dune", "Frank Herbert", ",", "\"", "\n", "\r\n", "Garc\u00eda M\u00e1rquez", " ", "1984", ""
+    };
+
+    @Test
+    void testMatchesCsvReaderOnQuotedMultilineRecords() throws IOException {
+        byte[] csv = randomCsv(new Random(42), 2_000);
+        List<String> expected = read(new CsvReader(new ByteArrayInputStream(csv)));
+        assertTrue(expected.size() > 2_000); // Header plus records, each with its offset
+
+        Path file = Files.createTempFile("lms-csv-test", ".csv");
+        try {
+            Files.write(file, csv);
+            // Chunks far smaller than a record put chunk edges inside quotes and line breaks
+            for (int chunkBytes : new int[] {1, 7, 64, 1_000, 1 << 20}) {
+                List<String> actual = read(new ParallelCsvReader(file, 3, chunkBytes, 0, 1));
+                assertEquals(expected, actual, "chunk size " + chunkBytes);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testResumesFromRecordBoundary() throws IOException {
+        byte[] csv = randomCsv(new Random(7), 500);
+        Path file = Files.createTempFile("lms-csv-test", ".csv");
+        try {
+            Files.write(file, csv);
+            try (CsvReader reader = new CsvReader(new ByteArrayInputStream(csv))) {
+                for (int i = 0; i < 250; i++) {
+                    reader.next();
+                }
+                long offset = reader.getByteOffset();
+                long line = reader.getNextLineNumber();
+                List<String> expected = read(reader);
+
+                for (int chunkBytes : new int[] {5, 300}) {
+                    List<String> actual = read(new ParallelCsvReader(file, 2, chunkBytes, offset, line));
+                    assertEquals(expected, actual, "chunk size " + chunkBytes);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Builds a file of three column records whose fields are often quoted and
+     * hold commas, doubled quotes and line breaks.
+     */
+    private static byte[] randomCsv(Random random, int records) {
+        StringBuilder csv = new StringBuilder("barcode,title,author\n");
+        for (int i = 0; i < records; i++) {
+            csv.append(i + 1);
+            for (int field = 0; field < 2; field++) {
+                StringBuilder value = new StringBuilder();
+                int pieces = random.nextInt(4);
+                for (int p = 0; p < pieces; p++) {
+                    value.append(PIECES[random.nextInt(PIECES.length)]);
+                }
+                String text = value.toString();
+                boolean needsQuotes = text.contains(",") || text.contains("\"") || text.contains("\n");
+                csv.append(',');
+                if (needsQuotes || random.nextInt(4) == 0) {
+                    csv.append('"').append(text.replace("\"", "\"\"")).append('"');
+                } else {
+                    csv.append(text);
+                }
+            }
+            csv.append(random.nextBoolean() ? "\n" : "\r\n");
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads what is left of a source, one line per record with every field and position.
+     */
+    private static List<String> read(CsvSource source) throws IOException {
+        List<String> records = new ArrayList<>();
+        try (source) {
+            while (source.next()) {
+                StringBuilder record = new StringBuilder();
+                record.append(source.getLineNumber()).append('|')
+                        .append(source.getByteOffset()).append('|')
+                        .append(source.getNextLineNumber()).append('|')
+                        .append(source.isTruncated());
+                for (int i = 0; i < source.getFieldCount(); i++) {
+                    record.append('|').append(source.getField(i));
+                }
+                records.add(record.toString());
+            }
+        }
+        return records;
+    }
+}
@@ -0,0 +1,363 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * SearchIndex
+ * The SearchIndex class is an inverted index over the titles and authors of
+ * the books. Both are folded with {@link TextNormalizer} and split into words,
+ * and each word maps to the sorted barcodes of the books that contain it. A
+ * query is answered by intersecting the lists of its words, shortest first,
+ * so its cost depends on how many books match rather than how many there are.
+ * The last word of a query also matches as a prefix, so results appear while
+ * the user is still typing it.
+ *
+ * Matches are ranked by how rare the matched words are, and a word found in
+ * the title counts for more than one found only in the author.
+ */
+public class SearchIndex {
+    private static final double TITLE_BOOST = 2.0;
+    private static final int MAX_PREFIX_TERMS = 200;
+
+    private TreeMap<String, IntList> postings = new TreeMap<>();
+    private IntHashMap<Document> documents = new IntHashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private boolean stale = true;
+    private long version;
+
+    /**
+     * Indexes a book, replacing what was indexed for its barcode before.
+     *
+     * @param barcode The barcode of the book.
+     * @param title   The title of the book.
+     * @param author  The author of the book.
+     */
+    public void add(int barcode, String title, String author) {
+        Document document = new Document(title, author);
+        lock.writeLock().lock();
+        try {
+            version++;
+            Document previous = documents.put(barcode, document);
+            if (previous != null) {
+                unlink(barcode, previous);
+            }
+            for (String term : document.terms) {
+                postings.computeIfAbsent(term, key -> new IntList()).add(barcode);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drops a book from the index.
+     *
+     * @param barcode The barcode of the book.
+     */
+    public void remove(int barcode) {
+        lock.writeLock().lock();
+        try {
+            version++;
+            Document previous = documents.remove(barcode);
+            if (previous != null) {
+                unlink(barcode, previous);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets a number that changes whenever the index is changed. Take it before
+     * reading the books for {@link #replaceWith(SearchIndex, long)}.
+     *
+     * @return The current version.
+     */
+    public long getVersion() {
+        lock.readLock().lock();
+        try {
+            return version;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Takes over the contents of an index built separately from every book, so
+     * searches keep using the old contents while the new ones are being built.
+     * If this index was changed while the books were being read, the new
+     * contents may miss that change, so the index stays marked stale.
+     *
+     * @param built       The freshly built index, which must not be used afterwards.
+     * @param readVersion The version taken before the books were read.
+     */
+    public void replaceWith(SearchIndex built, long readVersion) {
+        lock.writeLock().lock();
+        try {
+            boolean changedDuringRead = version != readVersion;
+            postings = built.postings;
+            documents = built.documents;
+            stale = changedDuringRead;
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marks the index as out of date, for changes that do not say which books
+     * they touched, such as a bulk import.
+     */
+    public void markStale() {
+        lock.writeLock().lock();
+        try {
+            stale = true;
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Tells whether the index needs rebuilding before use.
+     *
+     * @return True if the index has never been built or was marked stale.
+     */
+    public boolean isStale() {
+        lock.readLock().lock();
+        try {
+            return stale;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the books whose title or author contain every word of the query,
+     * ignoring case and accents, with the last word matched as a prefix.
+     *
+     * @param query      The words to search for.
+     * @param maxResults The maximum number of ranked matches to return.
+     * @return The matches, best first.
+     */
+    public Result search(String query, int maxResults) {
+        String folded = TextNormalizer.fold(query);
+        String[] terms = tokenize(folded);
+        if (terms.length == 0) {
+            return new Result(new int[0], new int[0]);
+        }
+        lock.readLock().lock();
+        try {
+            IntList[] lists = new IntList[terms.length];
+            for (int i = 0; i < terms.length; i++) {
+                lists[i] = i == terms.length - 1 ? prefixPostings(terms[i]) : postings.get(terms[i]);
+                if (lists[i] == null || lists[i].isEmpty()) {
+                    return new Result(new int[0], new int[0]);
+                }
+            }
+            int[] candidates = intersectAll(lists);
+
+            double[] weights = new double[terms.length];
+            for (int i = 0; i < terms.length; i++) {
+                weights[i] = Math.log(1.0 + (double) documents.size() / lists[i].size());
+            }
+
+            // Keep only the best maxResults hits, worst on top so it is the one pushed out
+            Comparator<Hit> best = Comparator.comparingDouble((Hit h) -> h.score).reversed()
+                    .thenComparingInt(h -> h.barcode);
+            PriorityQueue<Hit> top = new PriorityQueue<>(best.reversed());
+            List<Integer> exact = new ArrayList<>();
+            for (int barcode : candidates) {
+                Document document = documents.get(barcode);
+                if (document.foldedTitle.equals(folded)) {
+                    exact.add(barcode);
+                } else if (maxResults > 0) {
+                    double score = document.score(terms, weights);
+                    if (top.size() < maxResults) {
+                        top.add(new Hit(barcode, score));
+                    } else if (score > top.peek().score) {
+                        // Candidates come in barcode order, so a tie never beats the hit it ties with
+                        top.poll();
+                        top.add(new Hit(barcode, score));
+                    }
+                }
+            }
+
+            int[] close = new int[top.size()];
+            for (int i = close.length - 1; i >= 0; i--) {
+                close[i] = top.poll().barcode;
+            }
+            return new Result(exact.stream().mapToInt(Integer::intValue).toArray(), close);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of books in the index.
+     *
+     * @return The number of books.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Splits folded text into words at anything that is not a letter or digit.
+     *
+     * @param folded Text already folded with {@link TextNormalizer#fold(String)}.
+     * @return The words, in order, possibly repeated.
+     */
+    static String[] tokenize(String folded) {
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean wordChar = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(folded.substring(start, i));
+                start = -1;
+            }
+        }
+        return words.toArray(new String[0]);
+    }
+
+    /**
+     * Gets the books containing a word that starts with the given text. Only
+     * the first {@link #MAX_PREFIX_TERMS} such words are used, so a one letter
+     * prefix stays cheap.
+     */
+    private IntList prefixPostings(String prefix) {
+        List<IntList> lists = new ArrayList<>();
+        for (Map.Entry<String, IntList> e : postings.tailMap(prefix, true).entrySet()) {
+            if (!e.getKey().startsWith(prefix) || lists.size() == MAX_PREFIX_TERMS) {
+                break;
+            }
+            lists.add(e.getValue());
+        }
+        return lists.isEmpty() ? null : IntList.unionAll(lists);
+    }
+
+    private static int[] intersectAll(IntList[] lists) {
+        IntList[] bySize = lists.clone();
+        Arrays.sort(bySize, (a, b) -> Integer.compare(a.size(), b.size()));
+        IntList result = bySize[0];
+        for (int i = 1; i < bySize.length && !result.isEmpty(); i++) {
+            result = result.intersect(bySize[i]);
+        }
+        return result.toArray();
+    }
+
+    private void unlink(int barcode, Document document) {
+        for (String term : document.terms) {
+            IntList list = postings.get(term);
+            if (list != null) {
+                list.remove(barcode);
+                if (list.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    /**
+     * The matches of a search.
+     */
+    public static final class Result {
+        private final int[] exact;
+        private final int[] close;
+
+        private Result(int[] exact, int[] close) {
+            this.exact = exact;
+            this.close = close;
+        }
+
+        /**
+         * Gets the books whose whole title equals the query, ignoring case and accents.
+         *
+         * @return The barcodes in ascending order.
+         */
+        public int[] getExact() {
+            return exact;
+        }
+
+        /**
+         * Gets the other matching books.
+         *
+         * @return The barcodes, best match first.
+         */
+        public int[] getClose() {
+            return close;
+        }
+    }
+
+    /**
+     * What the index keeps about one book: its folded title, to spot exact
+     * matches, and its distinct words, title words first.
+     */
+    private static final class Document {
+        private final String foldedTitle;
+        private final String[] terms;
+        private final int titleTermCount;
+
+        private Document(String title, String author) {
+            this.foldedTitle = TextNormalizer.fold(title);
+            Set<String> distinct = new HashSet<>();
+            List<String> ordered = new ArrayList<>();
+            for (String term : tokenize(foldedTitle)) {
+                if (distinct.add(term)) {
+                    ordered.add(term);
+                }
+            }
+            this.titleTermCount = ordered.size();
+            for (String term : tokenize(TextNormalizer.fold(author))) {
+                if (distinct.add(term)) {
+                    ordered.add(term);
+                }
+            }
+            this.terms = ordered.toArray(new String[0]);
+        }
+
+        /**
+         * Scores the book against query words it is known to contain: each word
+         * adds its weight, boosted when it is in the title. The last query word
+         * is matched as a prefix, the others exactly.
+         */
+        private double score(String[] queryTerms, double[] weights) {
+            double score = 0;
+            for (int q = 0; q < queryTerms.length; q++) {
+                boolean prefix = q == queryTerms.length - 1;
+                boolean inTitle = false;
+                for (int t = 0; t < titleTermCount && !inTitle; t++) {
+                    inTitle = prefix ? terms[t].startsWith(queryTerms[q]) : terms[t].equals(queryTerms[q]);
+                }
+                score += inTitle ? weights[q] * TITLE_BOOST : weights[q];
+            }
+            return score;
+        }
+    }
+
+    private static final class Hit {
+        private final int barcode;
+        private final double score;
+
+        private Hit(int barcode, double score) {
+            this.barcode = barcode;
+            this.score = score;
+        }
+    }
+}
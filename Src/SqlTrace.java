@@ -0,0 +1,459 @@
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * SqlTrace
+ * The SqlTrace class traces every statement sent to MySQL. {@link #wrap(Connection)}
+ * puts a proxy around a connection, and around each statement and result set
+ * it hands out, which times every execute and notes the SQL text, the number
+ * of parameters bound, the batch size and the rows updated or read. A query
+ * is reported when its result set is closed, once its rows have been counted.
+ *
+ * Each statement is tagged with the {@link Library} method that ran it, set
+ * through {@link #setOperation(String)}, and with the user {@link Action},
+ * such as a button press in {@link MainPanel}, that led to it. Actions follow
+ * the work onto the {@link LibraryService} threads and back onto the event
+ * thread, so everything one click causes is counted together.
+ *
+ * Every statement is logged at FINE to the "lms.sql" logger. Statements slower
+ * than lms.sql.slowMillis (100 by default) are written to a rotating slow
+ * query log, named by the lms.sql.slowLog pattern. The same log gets a line
+ * whenever one action runs the same statement lms.sql.nPlusOne times (5 by
+ * default), which usually means a loop making one round trip per row where a
+ * single query would do. Set lms.sql.trace to false to turn tracing off.
+ */
+public final class SqlTrace {
+    private static final boolean ENABLED = !"false".equals(System.getProperty("lms.sql.trace"));
+    private static final long SLOW_NANOS = Long.getLong("lms.sql.slowMillis", 100) * 1_000_000;
+    private static final int N_PLUS_ONE_THRESHOLD = Integer.getInteger("lms.sql.nPlusOne", 5);
+    private static final String SLOW_LOG_PATTERN = System.getProperty("lms.sql.slowLog", "lms-slow-sql.%g.log");
+    private static final int SLOW_LOG_BYTES = 5 * 1024 * 1024;
+    private static final int SLOW_LOG_FILES = 5;
+
+    private static final Logger LOG = Logger.getLogger("lms.sql");
+    private static final Logger SLOW_LOG = Logger.getLogger("lms.sql.slow");
+    private static boolean slowLogOpened;
+
+    private static final ThreadLocal<Action> CURRENT_ACTION = new ThreadLocal<>();
+    private static final ThreadLocal<String> CURRENT_OPERATION = new ThreadLocal<>();
+
+    private static final LatencyHistogram latency = new LatencyHistogram();
+    private static final LongAdder slowStatements = new LongAdder();
+    private static final LongAdder failedStatements = new LongAdder();
+    private static final Map<String, ActionStats> actionStats = new ConcurrentHashMap<>();
+
+    private SqlTrace() {
+    }
+
+    /**
+     * Puts the tracing proxy around a connection.
+     *
+     * @param raw The connection to the database.
+     * @return A connection that traces its statements, or {@code raw} itself if tracing is off.
+     */
+    public static Connection wrap(Connection raw) {
+        if (!ENABLED) {
+            return raw;
+        }
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new TracedConnection(raw));
+    }
+
+    /**
+     * Tags the statements this thread runs from now on with a Library method.
+     *
+     * @param operation The name of the method, or {@code null} for none.
+     */
+    public static void setOperation(String operation) {
+        CURRENT_OPERATION.set(operation);
+    }
+
+    /**
+     * Starts a user action and runs its first step on this thread. Library
+     * calls the step submits, and their callbacks, count towards the action.
+     *
+     * @param name The name of the action, such as the button that was pressed.
+     * @param step What the action does first.
+     */
+    public static void runAction(String name, Runnable step) {
+        Action action = new Action(name);
+        action.stats.runs.increment();
+        runIn(action, step);
+    }
+
+    /**
+     * Gets the action this thread is working for.
+     *
+     * @return The action, or {@code null} if none.
+     */
+    public static Action currentAction() {
+        return CURRENT_ACTION.get();
+    }
+
+    /**
+     * Runs a step of an action, typically one captured with {@link #currentAction()}
+     * on another thread.
+     *
+     * @param action The action, or {@code null} for none.
+     * @param step   The step to run.
+     */
+    public static void runIn(Action action, Runnable step) {
+        Action previous = CURRENT_ACTION.get();
+        CURRENT_ACTION.set(action);
+        try {
+            step.run();
+        } finally {
+            CURRENT_ACTION.set(previous);
+        }
+    }
+
+    /**
+     * Runs a step of an action that returns a result. The Library method tag
+     * is cleared afterwards, so it does not carry over to the thread's next task.
+     *
+     * @param action The action, or {@code null} for none.
+     * @param step   The step to run.
+     * @param <T>    The type of the result.
+     * @return The step's result.
+     * @throws Exception Whatever the step throws.
+     */
+    public static <T> T callIn(Action action, Callable<T> step) throws Exception {
+        Action previous = CURRENT_ACTION.get();
+        CURRENT_ACTION.set(action);
+        try {
+            return step.call();
+        } finally {
+            CURRENT_ACTION.set(previous);
+            CURRENT_OPERATION.remove();
+        }
+    }
+
+    /** @return The number of statements traced. */
+    public static long getStatementCount() { return latency.getSnapshot().getCount(); }
+
+    /** @return The number of statements slower than the slow query threshold. */
+    public static long getSlowCount() { return slowStatements.sum(); }
+
+    /** @return The number of statements that failed. */
+    public static long getFailedCount() { return failedStatements.sum(); }
+
+    /** @return The number of N+1 patterns found, over every action. */
+    public static long getNPlusOneCount() {
+        long count = 0;
+        for (ActionStats stats : actionStats.values()) {
+            count += stats.nPlusOne.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Formats the statement totals and, per action, how many times it ran,
+     * how many statements it sent and how many N+1 patterns it showed.
+     *
+     * @return The text, one "Metrics: " line each, ending in a line break.
+     */
+    public static String dump() {
+        LatencyHistogram.Snapshot snapshot = latency.getSnapshot();
+        if (snapshot.getCount() == 0) {
+            return "";
+        }
+        StringBuilder text = new StringBuilder();
+        text.append("Metrics: sql slow=").append(getSlowCount())
+                .append(" failed=").append(getFailedCount())
+                .append(' ').append(snapshot).append(System.lineSeparator());
+        actionStats.forEach((name, stats) -> {
+            long runs = stats.runs.sum();
+            long statements = stats.statements.sum();
+            text.append(String.format("Metrics: action %s runs=%d statements=%d perRun=%.1f nPlusOne=%d%n",
+                    name, runs, statements, runs == 0 ? 0 : (double) statements / runs, stats.nPlusOne.sum()));
+        });
+        return text.toString();
+    }
+
+    /**
+     * Records one statement.
+     *
+     * @param sql        The SQL text.
+     * @param parameters The highest parameter index bound.
+     * @param batch      The number of parameter sets batched, or 0 if not a batch.
+     * @param nanos      How long the execute took.
+     * @param rows       The rows updated or read, or -1 if not known.
+     * @param failed     True if the execute threw.
+     * @param action     The action it was run for, or {@code null}.
+     * @param operation  The Library method that ran it, or {@code null}.
+     */
+    private static void record(String sql, int parameters, int batch, long nanos, long rows, boolean failed,
+                               Action action, String operation) {
+        latency.record(nanos);
+        if (failed) {
+            failedStatements.increment();
+        }
+        boolean slow = nanos >= SLOW_NANOS;
+        if (slow || LOG.isLoggable(Level.FINE)) {
+            String line = String.format("%.3f ms rows=%d params=%d batch=%d operation=%s action=%s%s sql=%s",
+                    nanos / 1_000_000.0, rows, parameters, batch, operation, action == null ? null : action.name,
+                    failed ? " failed" : "", sql);
+            LOG.fine(line);
+            if (slow) {
+                slowStatements.increment();
+                slowLog().warning(line);
+            }
+        }
+        if (action != null) {
+            action.stats.statements.increment();
+            if (action.statementsBySql.merge(sql, 1, Integer::sum) == N_PLUS_ONE_THRESHOLD) {
+                action.stats.nPlusOne.increment();
+                slowLog().warning("N+1: action " + action.name + " ran the same statement " + N_PLUS_ONE_THRESHOLD
+                        + " times, from " + operation + ": " + sql);
+            }
+        }
+    }
+
+    /**
+     * Gets the slow query logger, attaching its rotating file the first time.
+     * If the file cannot be opened the lines go to the console instead.
+     *
+     * @return The logger.
+     */
+    private static synchronized Logger slowLog() {
+        if (!slowLogOpened) {
+            slowLogOpened = true;
+            try {
+                FileHandler handler = new FileHandler(SLOW_LOG_PATTERN, SLOW_LOG_BYTES, SLOW_LOG_FILES, true);
+                handler.setFormatter(new Formatter() {
+                    @Override
+                    public String format(LogRecord record) {
+                        return Instant.ofEpochMilli(record.getMillis()) + " " + record.getMessage() + System.lineSeparator();
+                    }
+                });
+                SLOW_LOG.addHandler(handler);
+                SLOW_LOG.setUseParentHandlers(false);
+            } catch (IOException e) {
+                System.out.println("Log Error: " + e.getMessage());
+            }
+        }
+        return SLOW_LOG;
+    }
+
+    private static Object call(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Object proxy(Class<?> type, InvocationHandler handler) {
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    /**
+     * One user action, such as a button press, and how often it has run each
+     * statement so far.
+     */
+    public static final class Action {
+        private final String name;
+        private final ActionStats stats;
+        private final Map<String, Integer> statementsBySql = new ConcurrentHashMap<>();
+
+        private Action(String name) {
+            this.name = name;
+            this.stats = actionStats.computeIfAbsent(name, key -> new ActionStats());
+        }
+
+        /** @return The name of the action. */
+        public String getName() { return name; }
+    }
+
+    /**
+     * The running totals of every action with one name.
+     */
+    private static final class ActionStats {
+        private final LongAdder runs = new LongAdder();
+        private final LongAdder statements = new LongAdder();
+        private final LongAdder nPlusOne = new LongAdder();
+    }
+
+    /**
+     * Hands out traced statements in place of the connection's own.
+     */
+    private static final class TracedConnection implements InvocationHandler {
+        private final Connection raw;
+
+        private TracedConnection(Connection raw) {
+            this.raw = raw;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "createStatement":
+                case "prepareStatement":
+                case "prepareCall":
+                    Statement statement = (Statement) call(raw, method, args);
+                    String sql = method.getName().equals("createStatement") ? null : (String) args[0];
+                    return proxy(method.getReturnType(), new TracedStatement(statement, sql));
+                default:
+                    return call(raw, method, args);
+            }
+        }
+    }
+
+    /**
+     * Times the executes of one statement, and keeps count of the parameters
+     * bound and the batch added since the last execute.
+     */
+    private static final class TracedStatement implements InvocationHandler {
+        private final Statement raw;
+        private final String sql; // null for a plain Statement, whose SQL comes with each execute
+        private int parameters;
+        private int batch;
+
+        private TracedStatement(Statement raw, String sql) {
+            this.raw = raw;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                return execute(method, args);
+            }
+            switch (name) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "addBatch":
+                    batch++;
+                    break;
+                case "clearBatch":
+                    batch = 0;
+                    break;
+                default:
+                    // Parameter setters take the index first; Statement's own setters are settings
+                    if (name.startsWith("set") && method.getDeclaringClass() != Statement.class
+                            && args != null && args.length > 1 && args[0] instanceof Integer) {
+                        parameters = Math.max(parameters, (Integer) args[0]);
+                    }
+                    break;
+            }
+            return call(raw, method, args);
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            String text = sql != null ? sql
+                    : args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : "(batch)";
+            int batched = batch;
+            Action action = CURRENT_ACTION.get();
+            String operation = CURRENT_OPERATION.get();
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = call(raw, method, args);
+            } catch (Throwable t) {
+                record(text, parameters, batched, System.nanoTime() - start, -1, true, action, operation);
+                throw t;
+            }
+            long nanos = System.nanoTime() - start;
+            if (method.getName().startsWith("executeBatch") || method.getName().startsWith("executeLargeBatch")) {
+                batch = 0;
+            }
+            if (result instanceof ResultSet) {
+                return proxy(ResultSet.class, new TracedResultSet((ResultSet) result,
+                        text, parameters, nanos, action, operation));
+            }
+            record(text, parameters, batched, nanos, rowsOf(result), false, action, operation);
+            return result;
+        }
+
+        private static long rowsOf(Object result) {
+            if (result instanceof Number) {
+                return ((Number) result).longValue();
+            }
+            long rows = 0;
+            if (result instanceof int[]) {
+                for (int count : (int[]) result) {
+                    rows += Math.max(0, count);
+                }
+                return rows;
+            }
+            if (result instanceof long[]) {
+                for (long count : (long[]) result) {
+                    rows += Math.max(0, count);
+                }
+                return rows;
+            }
+            return -1; // execute() only says whether there is a result set
+        }
+    }
+
+    /**
+     * Counts the rows read from a query and reports the query when closed.
+     */
+    private static final class TracedResultSet implements InvocationHandler {
+        private final ResultSet raw;
+        private final String sql;
+        private final int parameters;
+        private final long nanos;
+        private final Action action;
+        private final String operation;
+        private long rows;
+        private boolean reported;
+
+        private TracedResultSet(ResultSet raw, String sql, int parameters, long nanos, Action action, String operation) {
+            this.raw = raw;
+            this.sql = sql;
+            this.parameters = parameters;
+            this.nanos = nanos;
+            this.action = action;
+            this.operation = operation;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "next":
+                    Object more = call(raw, method, args);
+                    if ((Boolean) more) {
+                        rows++;
+                    }
+                    return more;
+                case "close":
+                    if (!reported) {
+                        reported = true;
+                        record(sql, parameters, 0, nanos, rows, false, action, operation);
+                    }
+                    return call(raw, method, args);
+                default:
+                    return call(raw, method, args);
+            }
+        }
+    }
+}
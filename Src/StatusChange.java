@@ -0,0 +1,62 @@
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * StatusChange
+ * The StatusChange class reports the outcome of checking a book in or out:
+ * which book changed, whether it is now checked out, its new due date, and
+ * the due date it had before, which tells whether an overdue book came back.
+ */
+public class StatusChange {
+    private final int barcode;
+    private final boolean checkedOut;
+    private final String dueDate;
+    private final String previousDueDate;
+
+    /**
+     * Creates a status change.
+     *
+     * @param barcode    The barcode of the book that changed.
+     * @param checkedOut True if the book is now checked out, false if it was checked in.
+     * @param dueDate    The new due date, or {@code null} if the book was checked in.
+     * @param previousDueDate The due date the book had before, or {@code null} if it had none
+     *                        or it is not known.
+     */
+    public StatusChange(int barcode, boolean checkedOut, String dueDate, String previousDueDate) {
+        this.barcode = barcode;
+        this.checkedOut = checkedOut;
+        this.dueDate = dueDate;
+        this.previousDueDate = previousDueDate;
+    }
+
+    /**
+     * Gets the barcode of the book that changed.
+     *
+     * @return The book's barcode.
+     */
+    public int getBarcode() { return barcode; }
+
+    /**
+     * Tells whether the book is now checked out.
+     *
+     * @return True if the book was checked out, false if it was checked in.
+     */
+    public boolean isCheckedOut() { return checkedOut; }
+
+    /**
+     * Gets the new due date of the book.
+     *
+     * @return The due date, or {@code null} if the book was checked in.
+     */
+    public String getDueDate() { return dueDate; }
+
+    /**
+     * Gets the due date the book had before the change.
+     *
+     * @return The due date, or {@code null} if it had none or it is not known.
+     */
+    public String getPreviousDueDate() { return previousDueDate; }
+
+    @Override
+    public String toString() {
+        return "barcode: " + barcode + ", Checked Out? :" + checkedOut + " Due on : " + dueDate;
+    }
+}
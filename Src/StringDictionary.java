@@ -0,0 +1,226 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * StringDictionary
+ * The StringDictionary class gives each distinct string a small int id, so a
+ * column of titles or authors can be stored as an int per book. The strings
+ * themselves are kept once each, as UTF-8 bytes packed into a single byte
+ * array, and found again through an open addressing table of ids; no String
+ * or entry object is kept per string.
+ *
+ * Each id counts how many times it was interned. Once released as many times,
+ * the id is reused and its bytes become garbage, which is reclaimed by
+ * repacking the array when it is more than half garbage.
+ */
+public class StringDictionary {
+    private static final float LOAD_FACTOR = 0.6f;
+    private static final int MIN_REPACK_BYTES = 1 << 20;
+
+    private byte[] pool = new byte[1024];
+    private int poolSize;
+    private int garbageBytes;
+
+    private int[] starts = new int[16];
+    private int[] lengths = new int[16];
+    private int[] refCounts = new int[16];
+    private int idCount;
+    private int[] freeIds = new int[16];
+    private int freeCount;
+
+    private int[] table = new int[16]; // id + 1, or 0 for an empty slot
+    private int mask = 15;
+    private int live;
+
+    /**
+     * Gets the id of a string, adding it if it is new, and counts one more use of it.
+     *
+     * @param text The string.
+     * @return Its id.
+     */
+    public int intern(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        int i = hash(bytes, 0, bytes.length) & mask;
+        int entry;
+        while ((entry = table[i]) != 0) {
+            int id = entry - 1;
+            if (equalsAt(id, bytes)) {
+                refCounts[id]++;
+                return id;
+            }
+            i = (i + 1) & mask;
+        }
+        int id = freeCount > 0 ? freeIds[--freeCount] : newId();
+        if (poolSize + bytes.length > pool.length) {
+            pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + bytes.length));
+        }
+        System.arraycopy(bytes, 0, pool, poolSize, bytes.length);
+        starts[id] = poolSize;
+        lengths[id] = bytes.length;
+        refCounts[id] = 1;
+        poolSize += bytes.length;
+        table[i] = id + 1;
+        if (++live > (int) (table.length * LOAD_FACTOR)) {
+            rehash(table.length << 1);
+        }
+        return id;
+    }
+
+    /**
+     * Counts one less use of a string, dropping it once it is no longer used.
+     *
+     * @param id The id from {@link #intern(String)}.
+     */
+    public void release(int id) {
+        if (--refCounts[id] > 0) {
+            return;
+        }
+        int i = hash(pool, starts[id], lengths[id]) & mask;
+        while (table[i] != id + 1) {
+            i = (i + 1) & mask;
+        }
+        shiftBack(i);
+        live--;
+        garbageBytes += lengths[id];
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        }
+        freeIds[freeCount++] = id;
+        if (garbageBytes > MIN_REPACK_BYTES && garbageBytes > poolSize / 2) {
+            repack();
+        }
+    }
+
+    /**
+     * Gets a string by id.
+     *
+     * @param id The id.
+     * @return A new String with the text.
+     */
+    public String get(int id) {
+        return new String(pool, starts[id], lengths[id], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compares two strings by Unicode code point, which is the order of their UTF-8 bytes.
+     *
+     * @param a The id of one string.
+     * @param b The id of the other.
+     * @return Negative, zero or positive as the first string sorts before, with or after the second.
+     */
+    public int compare(int a, int b) {
+        if (a == b) {
+            return 0;
+        }
+        return Arrays.compareUnsigned(pool, starts[a], starts[a] + lengths[a], pool, starts[b], starts[b] + lengths[b]);
+    }
+
+    /**
+     * Compares UTF-8 text with a string in the dictionary, by Unicode code point.
+     *
+     * @param utf8 The text as UTF-8 bytes.
+     * @param id   The id of the string.
+     * @return Negative, zero or positive as the text sorts before, with or after the string.
+     */
+    public int compare(byte[] utf8, int id) {
+        return Arrays.compareUnsigned(utf8, 0, utf8.length, pool, starts[id], starts[id] + lengths[id]);
+    }
+
+    /**
+     * Gets the number of distinct strings in use.
+     *
+     * @return The number of strings.
+     */
+    public int size() {
+        return live;
+    }
+
+    /**
+     * Estimates the heap taken by the dictionary.
+     *
+     * @return The size of its arrays in bytes.
+     */
+    public long getHeapBytes() {
+        return pool.length + 4L * (starts.length + lengths.length + refCounts.length + freeIds.length + table.length);
+    }
+
+    private int newId() {
+        if (idCount == starts.length) {
+            int capacity = idCount * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            refCounts = Arrays.copyOf(refCounts, capacity);
+        }
+        return idCount++;
+    }
+
+    private boolean equalsAt(int id, byte[] bytes) {
+        return lengths[id] == bytes.length
+                && Arrays.equals(pool, starts[id], starts[id] + lengths[id], bytes, 0, bytes.length);
+    }
+
+    /**
+     * Copies the strings still in use into a fresh array, dropping the bytes
+     * of released ones. Ids do not change.
+     */
+    private void repack() {
+        byte[] packed = new byte[Math.max(1024, (poolSize - garbageBytes) * 3 / 2)];
+        int size = 0;
+        for (int id = 0; id < idCount; id++) {
+            if (refCounts[id] > 0) {
+                System.arraycopy(pool, starts[id], packed, size, lengths[id]);
+                starts[id] = size;
+                size += lengths[id];
+            }
+        }
+        pool = packed;
+        poolSize = size;
+        garbageBytes = 0;
+    }
+
+    /**
+     * Fills the hole left by a removed id by moving back later ids of the same
+     * probe run, so lookups never stop early at a hole.
+     *
+     * @param hole The slot that was emptied.
+     */
+    private void shiftBack(int hole) {
+        int i = (hole + 1) & mask;
+        while (table[i] != 0) {
+            int id = table[i] - 1;
+            int home = hash(pool, starts[id], lengths[id]) & mask;
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                table[hole] = table[i];
+                hole = i;
+            }
+            i = (i + 1) & mask;
+        }
+        table[hole] = 0;
+    }
+
+    private void rehash(int capacity) {
+        int[] old = table;
+        table = new int[capacity];
+        mask = capacity - 1;
+        for (int entry : old) {
+            if (entry != 0) {
+                int id = entry - 1;
+                int i = hash(pool, starts[id], lengths[id]) & mask;
+                while (table[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = entry;
+            }
+        }
+    }
+
+    private static int hash(byte[] bytes, int from, int length) {
+        int h = 0;
+        for (int i = from; i < from + length; i++) {
+            h = 31 * h + bytes[i];
+        }
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
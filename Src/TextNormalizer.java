@@ -0,0 +1,56 @@
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * TextNormalizer
+ * The TextNormalizer class folds text into the form used for matching titles
+ * and authors: lower case, accents removed ("M&aacute;rquez" matches "marquez"), and
+ * runs of whitespace collapsed to a single space. Folding is done once when a
+ * title is indexed, so lookups compare plain strings.
+ */
+public final class TextNormalizer {
+
+    private TextNormalizer() { }
+
+    /**
+     * Folds text for case and accent insensitive matching.
+     *
+     * @param text The text to fold, may be {@code null}.
+     * @return The folded text, empty for {@code null}.
+     */
+    public static String fold(String text) {
+        if (text == null) {
+            return "";
+        }
+        if (!isPlainAscii(text)) {
+            // Split accented letters into letter + accent, then drop the accents
+            text = Normalizer.normalize(text, Normalizer.Form.NFD)
+                    .replaceAll("\\p{M}+", "");
+        }
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = sb.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                sb.append(' ');
+                pendingSpace = false;
+            }
+            sb.append(c);
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isPlainAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,145 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Axel Diaz | CEN 3024C Software Development | - CRN: 17125
+ * TitleIndex
+ * The TitleIndex class answers "which titles start with this text" for the
+ * title autocomplete. Titles are folded once with {@link TextNormalizer} and
+ * kept in a sorted map, so a lookup is a binary search to the first match
+ * followed by reading the next few entries, in time logarithmic in the number
+ * of titles. The same title held by several books is stored once with a count,
+ * and the index is updated in place as books are added and removed.
+ */
+public class TitleIndex {
+    private TreeMap<String, Entry> titles = new TreeMap<>();
+    private boolean stale = true;
+    private long version;
+
+    /**
+     * Adds a title, or counts one more book with it.
+     *
+     * @param title The title to add.
+     */
+    public synchronized void add(String title) {
+        if (title == null || title.isBlank()) {
+            return;
+        }
+        Entry entry = titles.computeIfAbsent(TextNormalizer.fold(title), key -> new Entry(title));
+        entry.count++;
+        version++;
+    }
+
+    /**
+     * Counts one less book with a title, dropping the title when no book has it.
+     *
+     * @param title The title to remove.
+     */
+    public synchronized void remove(String title) {
+        if (title == null) {
+            return;
+        }
+        version++;
+        String key = TextNormalizer.fold(title);
+        Entry entry = titles.get(key);
+        if (entry != null && --entry.count == 0) {
+            titles.remove(key);
+        }
+    }
+
+    /**
+     * Gets a number that changes whenever the index is changed. Take it before
+     * reading the titles for {@link #replaceWith(TitleIndex, long)}.
+     *
+     * @return The current version.
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Takes over the titles of an index built separately from every book, so
+     * lookups keep using the old titles while the new ones are being read. If
+     * this index was changed while the titles were being read, the new
+     * contents may miss that change, so the index stays marked stale and is
+     * rebuilt again on next use.
+     *
+     * @param built       The freshly built index, which must not be used afterwards.
+     * @param readVersion The version taken before the titles were read.
+     */
+    public void replaceWith(TitleIndex built, long readVersion) {
+        TreeMap<String, Entry> builtTitles;
+        synchronized (built) {
+            builtTitles = built.titles;
+        }
+        synchronized (this) {
+            boolean changedDuringRead = version != readVersion;
+            titles = builtTitles;
+            stale = changedDuringRead;
+            version++;
+        }
+    }
+
+    /**
+     * Marks the index as out of date, for changes that do not say which titles
+     * they touched, such as a bulk import.
+     */
+    public synchronized void markStale() {
+        stale = true;
+        version++;
+    }
+
+    /**
+     * Tells whether the index needs a {@link #replaceWith(TitleIndex, long)} before use.
+     *
+     * @return True if the index has never been built or was marked stale.
+     */
+    public synchronized boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * Finds the titles that start with the given text, ignoring case and accents.
+     *
+     * @param prefix The text typed so far.
+     * @param limit  The maximum number of titles to return.
+     * @return Up to {@code limit} matching titles in alphabetical order.
+     */
+    public synchronized List<String> startingWith(String prefix, int limit) {
+        List<String> matches = new ArrayList<>(limit);
+        String key = TextNormalizer.fold(prefix);
+        if (key.isEmpty()) {
+            return matches;
+        }
+        for (Map.Entry<String, Entry> e : titles.tailMap(key, true).entrySet()) {
+            if (!e.getKey().startsWith(key) || matches.size() == limit) {
+                break;
+            }
+            matches.add(e.getValue().title);
+        }
+        return matches;
+    }
+
+    /**
+     * Gets the number of distinct titles in the index.
+     *
+     * @return The number of titles.
+     */
+    public synchronized int size() {
+        return titles.size();
+    }
+
+    /**
+     * A title as first seen, and how many books have it.
+     */
+    private static final class Entry {
+        private final String title;
+        private int count;
+
+        private Entry(String title) {
+            this.title = title;
+        }
+    }
+}